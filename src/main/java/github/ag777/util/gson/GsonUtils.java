@@ -2,22 +2,39 @@ package github.ag777.util.gson;
 
 import com.google.gson.*;
 import com.google.gson.internal.LinkedTreeMap;
+import com.google.gson.internal.Streams;
 import com.google.gson.reflect.TypeToken;
 import com.google.gson.stream.JsonReader;
 import com.google.gson.stream.JsonToken;
 import com.google.gson.stream.JsonWriter;
 import github.ag777.util.gson.adapter.LocalDateTimeAdapter;
 import github.ag777.util.gson.adapter.OptionalTypeAdapterFactory;
+import github.ag777.util.gson.cbor.CborMapTypeAdapterFactory;
+import github.ag777.util.gson.cbor.CborReader;
+import github.ag777.util.gson.cbor.CborWriter;
+import github.ag777.util.gson.model.JsonArrayIterator;
+import github.ag777.util.gson.model.JsonArrayWriter;
+import github.ag777.util.gson.model.JsonLinesReader;
+import github.ag777.util.gson.model.PlainObjectWriter;
+import github.ag777.util.gson.model.SharedShapeMap;
 import github.ag777.util.gson.model.TypeFactory;
+import github.ag777.util.lang.IOUtils;
 import github.ag777.util.lang.exception.model.GsonSyntaxException;
 
-import java.io.IOException;
-import java.io.StringReader;
+import java.io.*;
 import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
+import java.util.zip.GZIPOutputStream;
+import java.util.stream.Stream;
 
 /**
  * gson统一管理类，全局保持一个gson对象
@@ -27,9 +44,14 @@ import java.util.function.Consumer;
  * <li>gson-xxx.jar</li>
  * </ul>
  * GSON更新日志:<a href="https://github.com/google/gson/blob/master/CHANGELOG.md">...</a>
+ * </p>
+ * <p>
+ * dateFormat()、serializeNulls()、registerTypeAdapter()等方法不会修改当前实例, 而是基于当前配置派生出新的实例,
+ * 相同的派生方式会复用同一个实例(及其内部已解析的TypeAdapter), 可以放心地在每次请求中调用。
+ * </p>
  *
  * @author ag777
- * @version create on 2017年05月27日,last modify at 2026年06月15日
+ * @version create on 2017年05月27日,last modify at 2026年10月19日
  */
 public class GsonUtils {
 	
@@ -38,8 +60,17 @@ public class GsonUtils {
 	private static final Type LIST_OBJECT_TYPE = new TypeToken<List<Object>>() {}.getType();
 	private static final Type LIST_MAP_STRING_OBJECT_TYPE = new TypeToken<List<Map<String, Object>>>() {}.getType();
 
+	/** 每个实例最多缓存的派生实例数 */
+	private static final int MAX_DERIVED = 64;
+	/** 流式写出时的缓冲区大小 */
+	private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
     private final GsonBuilder builder;
     private volatile Gson gson;
+	/** 二进制序列化使用的gson, 没有注册CborMapTypeAdapterFactory时在gson的基础上注册 */
+	private volatile Gson binaryGson;
+	/** 通过dateFormat()等方法派生出的实例 */
+	private final Map<List<Object>, GsonUtils> derived = new ConcurrentHashMap<>();
 	
 	private GsonUtils() {
 		builder = getDefaultBuilder();
@@ -69,7 +100,7 @@ public class GsonUtils {
 	 * @return GsonUtils
 	 */
 	public static GsonUtils def() {
-		return new GsonUtils(new GsonBuilder());
+		return new GsonUtils(new GsonBuilder().registerTypeAdapterFactory(new CborMapTypeAdapterFactory()));
 	}
 	/**
 	 * 自定义构建gson
@@ -84,23 +115,44 @@ public class GsonUtils {
 
 	/**
 	 * 修改默认的配置, 最好在程序刚加载的时候执行
+	 * <p>
+	 * 修改后之前通过dateFormat()等方法派生出的实例不受影响, 之后派生的实例基于新配置
+	 * </p>
 	 * @param builderModifier 默认的构造器修改方法
 	 */
 	public void init(Consumer<GsonBuilder> builderModifier) {
-		synchronized (GsonUtils.class) {
+		synchronized (this) {
 			builderModifier.accept(builder);
 			gson = builder.create();
+			binaryGson = null;
+			derived.clear();
 		}
 
 	}
 
+	/**
+	 * 预先解析指定类型的TypeAdapter
+	 * <p>
+	 * Gson会缓存解析过的TypeAdapter, 启动时预热可以避免首次序列化/反序列化时反射解析类结构的耗时
+	 * </p>
+	 * @param types 类型
+	 * @return self
+	 */
+	public GsonUtils warmUp(Type... types) {
+		Gson g = gson();
+		for (Type type : types) {
+			g.getAdapter(TypeToken.get(type));
+		}
+		return this;
+	}
+
 	/**
 	 * 定制时间格式
 	 * @param pattern pattern
 	 * @return GsonUtils
 	 */
 	public GsonUtils dateFormat(String pattern) {
-		return new GsonUtils(builder.setDateFormat(pattern));
+		return derive(b -> b.setDateFormat(pattern), "dateFormat", pattern);
 	}
 	
 	/**
@@ -108,7 +160,7 @@ public class GsonUtils {
 	 * @return GsonUtils
 	 */
 	public GsonUtils serializeNulls() {
-		return new GsonUtils(builder.serializeNulls());
+		return derive(GsonBuilder::serializeNulls, "serializeNulls");
 	}
 	
 	/**
@@ -116,7 +168,7 @@ public class GsonUtils {
 	 * @return GsonUtils
 	 */
 	public GsonUtils prettyPrinting() {
-		return new GsonUtils(builder.setPrettyPrinting());
+		return derive(GsonBuilder::setPrettyPrinting, "prettyPrinting");
 	}
 	
 	/**
@@ -124,9 +176,27 @@ public class GsonUtils {
 	 * @return GsonUtils
 	 */
 	public GsonUtils disableInnerClassSerialization() {
-		return new GsonUtils(builder.disableInnerClassSerialization());
+		return derive(GsonBuilder::disableInnerClassSerialization, "disableInnerClassSerialization");
 	}
 	
+	/**
+	 * 转为map(toMap、toListMap等)时, 对象读取为共享键结构的只读map
+	 * <p>
+	 * 相同键序列的对象共享同一份键数组, 每个对象只保存值数组, 键字符串也会去重,
+	 * 解析大量结构相同的记录(如几十万条记录的数组)时可以显著减少内存占用。得到的map不能修改,
+	 * 键过多或键不固定(无法共享)的对象仍读取为普通的LinkedTreeMap, 详见{@link SharedShapeMap}
+	 * </p>
+	 * @return GsonUtils
+	 */
+	public GsonUtils sharedShapeMaps() {
+		return derive(b -> {
+			MapTypeAdapter adapter = new MapTypeAdapter(true);
+			b.registerTypeAdapter(MAP_STRING_OBJECT_TYPE, adapter)
+					.registerTypeAdapter(LIST_OBJECT_TYPE, adapter)
+					.registerTypeAdapter(LIST_MAP_STRING_OBJECT_TYPE, adapter);
+		}, "sharedShapeMaps");
+	}
+
 	/**
 	 * 自定义实现序列化方法
 	 * @param baseType baseType
@@ -134,7 +204,7 @@ public class GsonUtils {
 	 * @return GsonUtils
 	 */
 	public GsonUtils registerTypeAdapter(Class<?> baseType, Object typeAdapter) {
-		return new GsonUtils(builder.registerTypeHierarchyAdapter(baseType, typeAdapter));
+		return derive(b -> b.registerTypeHierarchyAdapter(baseType, typeAdapter), "registerTypeHierarchyAdapter", baseType, typeAdapter);
 	}
 	
 	/**
@@ -144,7 +214,7 @@ public class GsonUtils {
 	 * @return GsonUtils
 	 */
 	public GsonUtils registerTypeAdapter(Type type, Object typeAdapter) {
-		return new GsonUtils(builder.registerTypeAdapter(type, typeAdapter));
+		return derive(b -> b.registerTypeAdapter(type, typeAdapter), "registerTypeAdapter", type, typeAdapter);
 	}
 	
 	/**
@@ -153,19 +223,47 @@ public class GsonUtils {
 	 * @return GsonUtils
 	 */
 	public GsonUtils registerTypeAdapterFactory(TypeAdapterFactory factory) {
-		return new GsonUtils(builder.registerTypeAdapterFactory(factory));
+		return derive(b -> b.registerTypeAdapterFactory(factory), "registerTypeAdapterFactory", factory);
 	}
 	
 	/*==================内部方法========================*/
 	private Gson gson() {
-		if (gson == null) {
-			synchronized(GsonUtils.class) {
-				if(gson == null) {
-					gson = builder.create();
+		Gson g = gson;
+		if (g == null) {
+			synchronized(this) {
+				if((g = gson) == null) {
+					gson = g = builder.create();
 				}
 			}
 		}
-		return gson;
+		return g;
+	}
+
+	/**
+	 * 在当前配置的基础上派生新的实例, 不修改当前实例
+	 * <p>
+	 * 相同的派生方式(方法名+参数, 类型适配器按实例区分)返回同一个缓存的实例, 避免每次调用都重新创建Gson并重新解析TypeAdapter
+	 * </p>
+	 * @param modifier 对复制出的builder的修改
+	 * @param key 缓存key
+	 * @return GsonUtils
+	 */
+	private GsonUtils derive(Consumer<GsonBuilder> modifier, Object... key) {
+		List<Object> cacheKey = Arrays.asList(key);
+		GsonUtils cached = derived.get(cacheKey);
+		if (cached != null) {
+			return cached;
+		}
+		GsonBuilder b = gson().newBuilder();
+		modifier.accept(b);
+		GsonUtils created = new GsonUtils(b);
+		created.gson = b.create();
+		if (derived.size() >= MAX_DERIVED) {
+			// 一般是每次都传入新的适配器实例, 不再缓存
+			return created;
+		}
+		cached = derived.putIfAbsent(cacheKey, created);
+		return cached != null ? cached : created;
 	}
 	
 	/*==================工具方法========================*/
@@ -176,6 +274,8 @@ public class GsonUtils {
 	public static GsonBuilder getDefaultBuilder() {
 		MapTypeAdapter objAdapter = new MapTypeAdapter();
 		return new GsonBuilder()
+				// 最先注册, 使之后注册的Map适配器优先, 见CborMapTypeAdapterFactory
+				.registerTypeAdapterFactory(new CborMapTypeAdapterFactory())
 				.disableHtmlEscaping()	//html标签不转义 (避免符号被转义)
 				.setDateFormat("yyyy-MM-dd HH:mm:ss")	//序列化和反序化时将时间以此形式输出
 				.registerTypeAdapterFactory(new OptionalTypeAdapterFactory())
@@ -290,6 +390,31 @@ public class GsonUtils {
 		return gson().toJson(obj, typeOfSrc);
 	}
 
+	/**
+	 * 将对象序列化后直接写出, 不生成中间的json串
+	 * <p>
+	 * 只会flush不会关闭writer, obj为null时写出null
+	 * </p>
+	 * @param obj 任意对象
+	 * @param typeOfSrc 对象的类型, 为null时取obj.getClass()
+	 * @param writer 输出
+	 * @throws IOException 写出异常
+	 */
+	public void toJson(Object obj, Type typeOfSrc, Writer writer) throws IOException {
+		Gson g = gson();
+		JsonWriter jsonWriter = g.newJsonWriter(writer);
+		if (obj == null) {
+			jsonWriter.nullValue();
+		} else {
+			try {
+				g.toJson(obj, typeOfSrc == null ? obj.getClass() : typeOfSrc, jsonWriter);
+			} catch (JsonIOException e) {
+				throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e);
+			}
+		}
+		jsonWriter.flush();
+	}
+
 	/**
 	 *
 	 * @param obj 任意对象
@@ -453,6 +578,29 @@ public class GsonUtils {
 		}
 	}
 	
+	/**
+	 * 将对象直接转换为Map/List等基本结构
+	 * <p>
+	 * 结果与toMap(toJson(obj))/toListMap(toJson(list))一致(字段命名、排除规则、注册的TypeAdapter都会生效, 数字转换规则同{@link MapTypeAdapter}),
+	 * 但不生成中间的json串也不再解析, 详见{@link PlainObjectWriter}
+	 * </p>
+	 * @param obj 任意对象
+	 * @return 对象转为LinkedTreeMap, 集合/数组转为ArrayList, 其余为String/Number/Boolean, obj为null时返回null
+	 */
+	public Object toPlainObject(Object obj) {
+		if (obj == null) {
+			return null;
+		}
+		PlainObjectWriter writer = new PlainObjectWriter();
+		try {
+			gson().toJson(obj, obj.getClass(), writer);
+		} catch (JsonIOException e) {
+			// 不涉及io, 只可能是TypeAdapter抛出的异常
+			throw new IllegalStateException(e.getCause());
+		}
+		return writer.get();
+	}
+
 	/**
 	 * 转换对象为JsonElement
 	 * 
@@ -598,15 +746,385 @@ public class GsonUtils {
 		}
 	}
 
+	/*=================流式读取============*/
+
+	/**
+	 * 逐个读取json数组的元素
+	 * <p>
+	 * 每次只解析一个元素,适合读取无法一次性载入内存的大数组,详见{@link JsonArrayIterator}。
+	 * 迭代器读完后会自动关闭reader,提前结束时需要手动关闭
+	 * </p>
+	 * @param reader 输入
+	 * @param pointer JSON Pointer(如/data/items),为null表示整个文档就是数组
+	 * @param type 元素类型
+	 * @return 迭代器
+	 * @throws IOException 读取异常
+	 * @throws JsonSyntaxException 路径不存在或不是数组
+	 */
+	public <T> JsonArrayIterator<T> iterateArray(Reader reader, String pointer, Type type) throws IOException {
+		Gson g = gson();
+		TypeAdapter<T> adapter;
+		try {
+			@SuppressWarnings("unchecked")
+			TypeAdapter<T> a = (TypeAdapter<T>) g.getAdapter(TypeToken.get(type));
+			adapter = a;
+		} catch (RuntimeException e) {
+			// 与迭代器初始化失败时一致,关闭reader
+			IOUtils.close(reader);
+			throw e;
+		}
+		return new JsonArrayIterator<>(g.newJsonReader(reader), pointer, adapter);
+	}
+
+	/**
+	 * 将json数组转为惰性求值的流,关闭流时关闭reader
+	 * @param reader 输入
+	 * @param type 元素类型
+	 * @return 流
+	 * @throws IOException 读取异常
+	 * @see #iterateArray(Reader, String, Type)
+	 */
+	public <T> Stream<T> streamArray(Reader reader, Type type) throws IOException {
+		return streamArray(reader, null, type);
+	}
+
+	/**
+	 * 将json文档中指定位置的数组转为惰性求值的流,关闭流时关闭reader
+	 * @param reader 输入
+	 * @param pointer JSON Pointer(如/data/items),为null表示整个文档就是数组
+	 * @param type 元素类型
+	 * @return 流
+	 * @throws IOException 读取异常
+	 * @see #iterateArray(Reader, String, Type)
+	 */
+	public <T> Stream<T> streamArray(Reader reader, String pointer, Type type) throws IOException {
+		JsonArrayIterator<T> iterator = iterateArray(reader, pointer, type);
+		return iterator.stream();
+	}
+
+	/**
+	 * 将json数组转为惰性求值的流(utf-8),关闭流时关闭输入流
+	 * @param in 输入流
+	 * @param pointer JSON Pointer,为null表示整个文档就是数组
+	 * @param type 元素类型
+	 * @return 流
+	 * @throws IOException 读取异常
+	 * @see #iterateArray(Reader, String, Type)
+	 */
+	public <T> Stream<T> streamArray(InputStream in, String pointer, Type type) throws IOException {
+		return streamArray(new InputStreamReader(in, StandardCharsets.UTF_8), pointer, type);
+	}
+
+	/**
+	 * 将json文件中的数组转为惰性求值的流(utf-8),关闭流时关闭文件
+	 * @param path 文件路径
+	 * @param pointer JSON Pointer,为null表示整个文档就是数组
+	 * @param type 元素类型
+	 * @return 流
+	 * @throws IOException 读取异常
+	 * @see #iterateArray(Reader, String, Type)
+	 */
+	public <T> Stream<T> streamArray(Path path, String pointer, Type type) throws IOException {
+		return streamArray(Files.newBufferedReader(path, StandardCharsets.UTF_8), pointer, type);
+	}
+
+	/**
+	 * 并行读取JSON Lines(每行一个json)文件, 详见{@link JsonLinesReader}
+	 * <pre>{@code
+	 * GsonUtils.get().jsonLines(path, Log.class).ordered(false).forEach(this::handle);
+	 * }</pre>
+	 * @param path 文件路径(utf-8)
+	 * @param type 每一行的类型
+	 * @return reader, 调用forEach开始读取
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> JsonLinesReader<T> jsonLines(Path path, Type type) {
+		return new JsonLinesReader<>(path, (TypeAdapter<T>) gson().getAdapter(TypeToken.get(type)));
+	}
+
+	/*=================流式写出============*/
+
+	/**
+	 * 将对象序列化后直接写入Appendable(如StringBuilder、Writer), 不生成中间的json串
+	 * @param obj 任意对象, 为null时写出null
+	 * @param out 输出, 不会被关闭
+	 * @throws IOException 写出异常
+	 * @see #toJson(Object, Type, Writer)
+	 */
+	public void writeJson(Object obj, Appendable out) throws IOException {
+		writeJson(obj, null, out);
+	}
+
+	/**
+	 * 将对象序列化后直接写入Appendable(如StringBuilder、Writer), 不生成中间的json串
+	 * @param obj 任意对象, 为null时写出null
+	 * @param typeOfSrc 对象的类型, 为null时取obj.getClass()
+	 * @param out 输出, 不会被关闭
+	 * @throws IOException 写出异常
+	 */
+	public void writeJson(Object obj, Type typeOfSrc, Appendable out) throws IOException {
+		toJson(obj, typeOfSrc, out instanceof Writer ? (Writer) out : Streams.writerForAppendable(out));
+	}
+
+	/**
+	 * 将对象序列化后以utf-8直接写入输出流, 不生成中间的json串
+	 * @param obj 任意对象, 为null时写出null
+	 * @param out 输出流, 只会flush不会关闭
+	 * @throws IOException 写出异常
+	 */
+	public void writeJson(Object obj, OutputStream out) throws IOException {
+		writeJson(obj, null, out, false);
+	}
+
+	/**
+	 * 将对象序列化后以utf-8直接写入输出流, 不生成中间的json串
+	 * @param obj 任意对象, 为null时写出null
+	 * @param typeOfSrc 对象的类型, 为null时取obj.getClass()
+	 * @param out 输出流, 只会flush不会关闭
+	 * @param gzip 是否以gzip格式写出
+	 * @throws IOException 写出异常
+	 */
+	public void writeJson(Object obj, Type typeOfSrc, OutputStream out, boolean gzip) throws IOException {
+		GZIPOutputStream gzipOut = gzip ? new GZIPOutputStream(out, WRITE_BUFFER_SIZE) : null;
+		Writer writer = newUtf8Writer(gzip ? gzipOut : out);
+		toJson(obj, typeOfSrc, writer);
+		if (gzipOut != null) {
+			// 写出gzip结尾但不关闭out
+			gzipOut.finish();
+		}
+		out.flush();
+	}
+
+	/**
+	 * 创建逐个写出元素的json数组writer
+	 * @param writer 输出, 关闭数组writer时关闭
+	 * @param type 元素类型, 为null时按每个元素的实际类型序列化
+	 * @return 数组writer
+	 * @throws IOException 写出异常
+	 * @see JsonArrayWriter
+	 */
+	public <T> JsonArrayWriter<T> arrayWriter(Writer writer, Type type) throws IOException {
+		Gson g = gson();
+		return new JsonArrayWriter<>(g, g.newJsonWriter(writer), type);
+	}
+
+	/**
+	 * 创建逐个写出元素的json数组writer(utf-8)
+	 * @param out 输出流, 关闭数组writer时关闭
+	 * @param type 元素类型, 为null时按每个元素的实际类型序列化
+	 * @param gzip 是否以gzip格式写出
+	 * @return 数组writer
+	 * @throws IOException 写出异常
+	 * @see JsonArrayWriter
+	 */
+	public <T> JsonArrayWriter<T> arrayWriter(OutputStream out, Type type, boolean gzip) throws IOException {
+		try {
+			return arrayWriter(newUtf8Writer(gzip ? new GZIPOutputStream(out, WRITE_BUFFER_SIZE) : out), type);
+		} catch (IOException | RuntimeException e) {
+			out.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * 创建逐个写出元素的json数组writer, 写入文件(utf-8, 覆盖已有文件)
+	 * @param path 文件路径
+	 * @param type 元素类型, 为null时按每个元素的实际类型序列化
+	 * @param gzip 是否以gzip格式写出
+	 * @return 数组writer, 关闭时关闭文件
+	 * @throws IOException 写出异常
+	 * @see JsonArrayWriter
+	 */
+	public <T> JsonArrayWriter<T> arrayWriter(Path path, Type type, boolean gzip) throws IOException {
+		return arrayWriter(Files.newOutputStream(path), type, gzip);
+	}
+
+	private static Writer newUtf8Writer(OutputStream out) {
+		return new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), WRITE_BUFFER_SIZE);
+	}
+
+	/*=================二进制序列化============*/
+
+	/**
+	 * 将对象序列化为CBOR(RFC 8949)格式的二进制数据
+	 * <p>
+	 * 与toJson使用相同的TypeAdapter(注册的适配器、命名策略、排除规则等都会生效), 只是输出格式不同:
+	 * 数字以变长整数或定长浮点写出, 重复的字段名和字符串通过stringref只写一次。
+	 * 一般比json更小, 读写也更快, 适合缓存和进程间传递。通过{@link #fromBinary(byte[], Type)}反序列化, 详见{@link CborWriter}
+	 * </p>
+	 * @param obj 任意对象
+	 * @return 二进制数据, obj为null时返回null
+	 */
+	public byte[] toBinary(Object obj) {
+		if (obj == null) {
+			return null;
+		}
+		return toBinary(obj, obj.getClass(), true);
+	}
+
+	/**
+	 * 将对象序列化为CBOR格式的二进制数据
+	 * @param obj 任意对象
+	 * @param typeOfSrc 对象的类型, 为null时取obj.getClass()
+	 * @param dedup 是否对重复的字符串去重, 数据量很小或字符串很少重复时可以关闭
+	 * @return 二进制数据, obj为null时返回null
+	 */
+	public byte[] toBinary(Object obj, Type typeOfSrc, boolean dedup) {
+		if (obj == null) {
+			return null;
+		}
+		ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+		try {
+			writeBinary(obj, typeOfSrc, out, dedup);
+		} catch (IOException e) {
+			// 写入内存不会有io异常, 只可能是序列化本身出错
+			throw new IllegalStateException("序列化失败", e);
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * 将对象以CBOR格式直接写入输出流
+	 * @param obj 任意对象, 为null时写出null
+	 * @param typeOfSrc 对象的类型, 为null时取obj.getClass()
+	 * @param out 输出流, 只会flush不会关闭
+	 * @param dedup 是否对重复的字符串去重
+	 * @throws IOException 写出异常
+	 */
+	public void writeBinary(Object obj, Type typeOfSrc, OutputStream out, boolean dedup) throws IOException {
+		CborWriter writer = new CborWriter(out, dedup);
+		if (obj == null) {
+			writer.nullValue();
+		} else {
+			try {
+				binaryGson().toJson(obj, typeOfSrc == null ? obj.getClass() : typeOfSrc, writer);
+			} catch (JsonIOException e) {
+				throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e);
+			}
+		}
+		writer.flush();
+	}
+
+	/**
+	 * 反序列化CBOR格式的二进制数据
+	 * @param bytes 二进制数据
+	 * @param classOfT 类型
+	 * @return 返回null则表示转换失败
+	 */
+	public <T> T fromBinary(byte[] bytes, Class<T> classOfT) {
+		return fromBinary(bytes, (Type) classOfT);
+	}
+
+	/**
+	 * 反序列化CBOR格式的二进制数据
+	 * @param bytes 二进制数据
+	 * @param type 类型
+	 * @return 返回null则表示转换失败
+	 */
+	public <T> T fromBinary(byte[] bytes, Type type) {
+		try {
+			return fromBinaryWithException(bytes, type);
+		} catch (Exception ex) {
+			return null;
+		}
+	}
+
+	/**
+	 * 反序列化CBOR格式的二进制数据
+	 * @param bytes 二进制数据
+	 * @param type 类型
+	 * @return 对象, bytes为null时返回null
+	 * @throws GsonSyntaxException 数据格式错误或与类型不匹配
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T fromBinaryWithException(byte[] bytes, Type type) throws GsonSyntaxException {
+		if (bytes == null || bytes.length == 0) {
+			return null;
+		}
+		try {
+			CborReader reader = new CborReader(bytes);
+			T result = binaryGson().fromJson(reader, (TypeToken<T>) TypeToken.get(type));
+			// 与fromJson(String)一致,不允许末尾有多余的数据
+			if (reader.peek() != JsonToken.END_DOCUMENT) {
+				throw new JsonSyntaxException("顶层数据项之后有多余的内容");
+			}
+			return result;
+		} catch (Exception ex) {
+			throw new GsonSyntaxException(ex);
+		}
+	}
+
+	/**
+	 * 从输入流中读取一个CBOR格式的对象, 不会关闭输入流
+	 * <p>
+	 * reader内部有缓冲, 会多读取输入流中后续的数据, 输入流中只应包含这一个对象
+	 * </p>
+	 * @param in 输入流
+	 * @param type 类型
+	 * @return 对象
+	 * @throws IOException 读取异常
+	 * @throws JsonSyntaxException 数据格式错误或与类型不匹配
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T readBinary(InputStream in, Type type) throws IOException {
+		try {
+			return binaryGson().fromJson(new CborReader(in), (TypeToken<T>) TypeToken.get(type));
+		} catch (JsonIOException e) {
+			throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e);
+		}
+	}
+
+	/**
+	 * 二进制序列化使用的gson
+	 * <p>
+	 * 默认的builder中已经注册了CborMapTypeAdapterFactory, 直接使用gson; 自定义的builder中没有注册时在gson的基础上注册,
+	 * 此时它会覆盖builder中注册的Map适配器, 如需保留可以在自定义的builder中先注册CborMapTypeAdapterFactory
+	 * </p>
+	 */
+	private Gson binaryGson() {
+		Gson g = binaryGson;
+		if (g == null) {
+			synchronized (this) {
+				g = binaryGson;
+				if (g == null) {
+					g = gson();
+					if (!CborMapTypeAdapterFactory.isRegistered(g)) {
+						g = g.newBuilder().registerTypeAdapterFactory(new CborMapTypeAdapterFactory()).create();
+					}
+					binaryGson = g;
+				}
+			}
+		}
+		return g;
+	}
+
 	/*=================辅助类============*/
 	/**
 	 * 重载json转换类,主要目的是为了防止转为map时double型变量错误地转换为long型变量
+	 * <p>
+	 * 数字的转换规则见{@link #parseNumber(String)}
+	 * </p>
+	 * <p>
+	 * sharedShape为true时, 对象读取为共享键结构的只读map({@link SharedShapeMap}), 适合解析大量结构相同的记录, 见{@link #sharedShapeMaps()}
+	 * </p>
 	 * @author ag777
-	 * Time: created at 2017/6/6. last modify at 2018/8/10.
+	 * Time: created at 2017/6/6. last modify at 2026/10/19.
 	 */
 	public static class MapTypeAdapter extends TypeAdapter<Object> {
 
 		private final TypeAdapter<Object> defaultAdapter = new Gson().getAdapter(Object.class);
+		private final boolean sharedShape;
+
+		public MapTypeAdapter() {
+			this(false);
+		}
+
+		/**
+		 * @param sharedShape 对象是否读取为{@link SharedShapeMap}, 为false时读取为LinkedTreeMap
+		 */
+		public MapTypeAdapter(boolean sharedShape) {
+			this.sharedShape = sharedShape;
+		}
 		
 		@Override
 		public Object read(JsonReader in) throws IOException {
@@ -622,6 +1140,15 @@ public class GsonUtils {
 				return list;
 
 			case BEGIN_OBJECT:
+				if (sharedShape) {
+					SharedShapeMap.Builder builder = new SharedShapeMap.Builder();
+					in.beginObject();
+					while (in.hasNext()) {
+						builder.put(SharedShapeMap.intern(in.nextName()), read(in));
+					}
+					in.endObject();
+					return builder.build();
+				}
 				Map<String, Object> map = new LinkedTreeMap<>();
 				in.beginObject();
 				while (in.hasNext()) {
@@ -634,33 +1161,7 @@ public class GsonUtils {
 				return in.nextString();
 
 			case NUMBER:
-				/*
-				 * 改写数字的处理逻辑，将数字值分为整型与浮点型。
-				 * 流程（规则）:
-				 * 1.先读取字符串，并转为为double类型
-				 * 2.如果字符串包含小数点,则直接返回double类型
-				 * 3.如果数值在int范围内，则返回int类型
-				 * 4.如果数值在long范围内，则返回long类型
-				 * 5.其余情况均返回double类型
-				 */
-				String temp = in.nextString();
-				
-				double dbNum = Double.parseDouble(temp);
-				if(temp.contains(".")) {
-					return dbNum;
-				}
-
-				// 数值在int范围内，返回int类型
-				if (dbNum <= Integer.MAX_VALUE && dbNum >= Integer.MIN_VALUE) {
-					return (int) dbNum;
-				}
-
-				// 数值在long范围内，返回long类型
-				if (dbNum <= Long.MAX_VALUE && dbNum >= Long.MIN_VALUE) {
-					return (long) dbNum;
-				}
-
-				return dbNum;
+				return parseNumber(in.nextString());
 			case BOOLEAN:
 				return in.nextBoolean();
 
@@ -673,6 +1174,91 @@ public class GsonUtils {
 			}
 		}
 
+		/**
+		 * 将json中的数字转为对应的类型
+		 * <p>
+		 * 规则:
+		 * <ul>
+		 * <li>整数: 在int范围内返回Integer, 在long范围内返回Long, 超出long范围返回BigDecimal</li>
+		 * <li>带小数点的数: 返回Double; 有效数字超过17位(double无法精确表示)或超出double范围时返回BigDecimal</li>
+		 * <li>不带小数点的科学计数法(如1e3): 值为整数时按整数处理, 否则同上</li>
+		 * </ul>
+		 * 18位以内的整数直接逐位累加得到long, 不经过double, 因此超过2^53的long也不会丢失精度
+		 * </p>
+		 * @param num json中的数字字面量
+		 * @return Integer/Long/Double/BigDecimal
+		 */
+		public static Number parseNumber(String num) {
+			int len = num.length();
+			int start = len > 0 && num.charAt(0) == '-' ? 1 : 0;
+			if (len > start && len - start <= 18) {
+				// 快速路径: 18位以内的整数一定在long范围内
+				long value = 0;
+				int i = start;
+				for (; i < len; i++) {
+					char c = num.charAt(i);
+					if (c < '0' || c > '9') {
+						break;
+					}
+					value = value * 10 + (c - '0');
+				}
+				if (i == len) {
+					return toIntOrLong(start == 1 ? -value : value);
+				}
+			}
+			return parseNumberSlow(num, start);
+		}
+
+		private static Number parseNumberSlow(String num, int start) {
+			int len = num.length();
+			boolean hasPoint = false;
+			boolean hasExponent = false;
+			int significant = 0;
+			// 有效数字之后连续的0, 后面再出现非0数字时才计入有效数字(末尾的0不影响能否用double精确表示)
+			int trailingZeros = 0;
+			for (int i = start; i < len; i++) {
+				char c = num.charAt(i);
+				if (c == '.') {
+					hasPoint = true;
+				} else if (c == 'e' || c == 'E') {
+					hasExponent = true;
+					break;
+				} else if (c >= '1' && c <= '9') {
+					significant += trailingZeros + 1;
+					trailingZeros = 0;
+				} else if (c == '0' && significant > 0) {
+					trailingZeros++;
+				}
+			}
+			if (!hasPoint && !hasExponent) {
+				// 19位及以上的整数
+				try {
+					return toIntOrLong(Long.parseLong(num));
+				} catch (NumberFormatException e) {
+					return new BigDecimal(num);
+				}
+			}
+			if (significant > 17) {
+				return new BigDecimal(num);
+			}
+			double d = Double.parseDouble(num);
+			if (Double.isInfinite(d) || d == 0 && significant > 0) {
+				// 超出double范围或下溢为0
+				return new BigDecimal(num);
+			}
+			if (!hasPoint && d == Math.rint(d) && d >= Long.MIN_VALUE && d < Long.MAX_VALUE) {
+				return toIntOrLong((long) d);
+			}
+			return d;
+		}
+
+		private static Number toIntOrLong(long value) {
+			if (value == (int) value) {
+				return (int) value;
+			}
+			return value;
+		}
+
 		@Override
 		public void write(JsonWriter out, Object value) throws IOException {
 			/*
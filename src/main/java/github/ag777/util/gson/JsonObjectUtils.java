@@ -3,14 +3,26 @@ package github.ag777.util.gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.Strictness;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import github.ag777.util.lang.exception.model.GsonSyntaxException;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * com.google.gson.JsonObject操作类
  * @author ag777＜ag777@vip.qq.com＞
- * @version 2024/12/05 10:50
+ * @version 2026/10/19 10:00
  */
 public class JsonObjectUtils {
 
@@ -913,4 +925,219 @@ public class JsonObjectUtils {
         }
         return element;
     }
+
+    /**
+     * 从json串中按路径提取单个值, 不解析整个文档
+     *
+     * @param json json串
+     * @param path 路径, 如$.data.items[0].id
+     * @return JsonElement元素，如果不存在或值为null则返回null
+     * @throws GsonSyntaxException Json语法异常
+     * @see #extractAll(Reader, String...)
+     */
+    public static JsonElement extract(String json, String path) throws GsonSyntaxException {
+        return extractAll(json, path).get(path);
+    }
+
+    /**
+     * 从json串中一次提取多个路径的值, 不解析整个文档
+     *
+     * @param json json串
+     * @param paths 路径
+     * @return 路径-值, 见{@link #extractAll(Reader, String...)}
+     * @throws GsonSyntaxException Json语法异常
+     */
+    public static Map<String, JsonElement> extractAll(String json, String... paths) throws GsonSyntaxException {
+        return extractAll(new StringReader(json), paths);
+    }
+
+    /**
+     * 流式读取json, 一次提取多个路径的值
+     * <p>
+     * 只需要从大的json中取少量字段时使用: 通过JsonReader顺序读取, 路径以外的内容直接跳过(skipValue), 不会构建成JsonElement,
+     * 所有路径都取到后不再读取文档的剩余部分。只有路径指向的值本身会被解析为JsonElement。
+     * </p>
+     * <p>
+     * 路径语法: 以$开头(可省略), 字段用.name或['name']表示, 数组下标用[index]表示, 如$.data.items[0].id、$['a.b'][1]。
+     * reader不会被关闭。
+     * </p>
+     *
+     * @param reader reader
+     * @param paths 路径
+     * @return 路径-值, 按传入的顺序排列, 路径不存在或值为null时对应的值为null
+     * @throws GsonSyntaxException Json语法异常或读取异常
+     * @throws IllegalArgumentException 路径格式错误
+     */
+    public static Map<String, JsonElement> extractAll(Reader reader, String... paths) throws GsonSyntaxException {
+        Map<String, JsonElement> result = new LinkedHashMap<>(paths.length * 2);
+        PathNode root = new PathNode();
+        int count = 0;
+        for (String path : paths) {
+            if (result.containsKey(path)) {
+                continue;
+            }
+            result.put(path, null);
+            PathNode node = root;
+            for (Object segment : parsePath(path)) {
+                node = node.child(segment);
+            }
+            if (node.targets.isEmpty()) {
+                count++;
+            }
+            node.targets.add(path);
+        }
+        JsonReader jsonReader = new JsonReader(reader);
+        jsonReader.setStrictness(Strictness.LENIENT);
+        try {
+            new PathExtractor(jsonReader, result, count).read(root);
+        } catch (IOException | RuntimeException e) {
+            throw new GsonSyntaxException(e);
+        }
+        return result;
+    }
+
+    /**
+     * 解析路径为字段名(String)和下标(Integer)组成的列表
+     */
+    private static List<Object> parsePath(String path) {
+        List<Object> segments = new ArrayList<>();
+        String p;
+        if (path.startsWith("$")) {
+            p = path.substring(1);
+        } else {
+            // 省略了开头的$.
+            p = path.startsWith(".") || path.startsWith("[") ? path : "." + path;
+        }
+        int i = 0;
+        int len = p.length();
+        while (i < len) {
+            char c = p.charAt(i);
+            if (c == '.') {
+                int end = i + 1;
+                while (end < len && p.charAt(end) != '.' && p.charAt(end) != '[') {
+                    end++;
+                }
+                if (end == i + 1) {
+                    throw new IllegalArgumentException("路径格式错误: " + path);
+                }
+                segments.add(p.substring(i + 1, end));
+                i = end;
+            } else if (c == '[') {
+                int end = p.indexOf(']', i);
+                if (end < 0) {
+                    throw new IllegalArgumentException("路径格式错误: " + path);
+                }
+                String inner = p.substring(i + 1, end).trim();
+                if (inner.length() >= 2 && (inner.charAt(0) == '\'' || inner.charAt(0) == '"')) {
+                    segments.add(inner.substring(1, inner.length() - 1));
+                } else {
+                    try {
+                        segments.add(Integer.parseInt(inner));
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("路径格式错误: " + path, e);
+                    }
+                }
+                i = end + 1;
+            } else {
+                throw new IllegalArgumentException("路径格式错误: " + path);
+            }
+        }
+        return segments;
+    }
+
+    /**
+     * 路径树的节点, 多个路径共享相同的前缀
+     */
+    private static class PathNode {
+        final Map<Object, PathNode> children = new HashMap<>(4);
+        final List<String> targets = new ArrayList<>(1);
+
+        PathNode child(Object segment) {
+            return children.computeIfAbsent(segment, k -> new PathNode());
+        }
+    }
+
+    /**
+     * 按路径树读取json
+     */
+    private static class PathExtractor {
+        private final JsonReader reader;
+        private final Map<String, JsonElement> result;
+        /** 还未取到的路径数 */
+        private int remaining;
+
+        PathExtractor(JsonReader reader, Map<String, JsonElement> result, int remaining) {
+            this.reader = reader;
+            this.result = result;
+            this.remaining = remaining;
+        }
+
+        /**
+         * 读取当前值, 所有路径都取到后直接返回, 不再读取剩余部分
+         */
+        void read(PathNode node) throws IOException {
+            if (!node.targets.isEmpty()) {
+                // 路径指向的值, 更深的路径从该值中取
+                JsonElement element = JsonParser.parseReader(reader);
+                collect(node, element);
+                return;
+            }
+            JsonToken token = reader.peek();
+            if (token == JsonToken.BEGIN_OBJECT) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    PathNode child = node.children.get(reader.nextName());
+                    if (child == null) {
+                        reader.skipValue();
+                        continue;
+                    }
+                    read(child);
+                    if (remaining == 0) {
+                        return;
+                    }
+                }
+                reader.endObject();
+            } else if (token == JsonToken.BEGIN_ARRAY) {
+                reader.beginArray();
+                for (int i = 0; reader.hasNext(); i++) {
+                    PathNode child = node.children.get(i);
+                    if (child == null) {
+                        reader.skipValue();
+                        continue;
+                    }
+                    read(child);
+                    if (remaining == 0) {
+                        return;
+                    }
+                }
+                reader.endArray();
+            } else {
+                reader.skipValue();
+            }
+        }
+
+        private void collect(PathNode node, JsonElement element) {
+            if (!node.targets.isEmpty()) {
+                if (element != null && !element.isJsonNull()) {
+                    for (String target : node.targets) {
+                        result.put(target, element);
+                    }
+                }
+                remaining--;
+                // 避免重复的键再次计数
+                node.targets.clear();
+            }
+            for (Map.Entry<Object, PathNode> entry : node.children.entrySet()) {
+                JsonElement child = null;
+                if (element != null && entry.getKey() instanceof String && element.isJsonObject()) {
+                    child = element.getAsJsonObject().get((String) entry.getKey());
+                } else if (element != null && entry.getKey() instanceof Integer && element.isJsonArray()) {
+                    int index = (Integer) entry.getKey();
+                    JsonArray array = element.getAsJsonArray();
+                    child = index < array.size() ? array.get(index) : null;
+                }
+                collect(entry.getValue(), child);
+            }
+        }
+    }
 }
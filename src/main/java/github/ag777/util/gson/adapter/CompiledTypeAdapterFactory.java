@@ -0,0 +1,367 @@
+package github.ag777.util.gson.adapter;
+
+import com.google.gson.*;
+import com.google.gson.annotations.JsonAdapter;
+import com.google.gson.annotations.SerializedName;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.*;
+import java.util.*;
+
+/**
+ * 为指定的类生成专用的序列化适配器, 替代gson基于反射的默认实现
+ * <p>
+ * 首次使用某个类时解析一次字段, 之后写出时:
+ * <ul>
+ * <li>通过MethodHandle读取字段, 不再经过Field.get的访问检查</li>
+ * <li>int/long/boolean/String字段(使用gson内置适配器时)直接调用JsonWriter对应的方法, 不装箱</li>
+ * <li>字段的适配器预先确定, 不再每次按运行时类型查找</li>
+ * </ul>
+ * 反序列化仍交给gson的反射实现: 实测预先计算字段名映射并不比gson快, 而实例的创建方式(InstanceCreator等)只有gson能完全复现。
+ * </p>
+ * <p>
+ * 输出与gson的反射实现完全一致: 写出哪些字段、字段名及顺序不是自行推断的, 而是生成时让gson的反射实现对该类的实例试写一次(serializeNulls)得到的,
+ * 因此排除规则(transient、@Expose、版本、ExclusionStrategy等)、命名策略、{@link SerializedName}都与gson相同。
+ * </p>
+ * <p>
+ * 无法保证与gson一致时返回null, 由gson的反射实现处理: 未在构造函数中指定的类、泛型类型、record、枚举、抽象类、非静态内部类、
+ * 类或字段带有{@link JsonAdapter}注解、字段类型包含类型变量、同名字段、
+ * 字段声明为可以有子类的类型(如Object、接口、非final的类, 此时gson按运行时类型选择适配器)。
+ * 声明为List&lt;T&gt;等参数化类型的字段与gson一样始终使用声明类型的适配器。
+ * 该工厂需要在该类的其它适配器之前注册(后注册的优先), 否则会覆盖它们。
+ * </p>
+ *
+ * <pre>{@code
+ * GsonUtils gson = GsonUtils.get().registerTypeAdapterFactory(
+ *         new CompiledTypeAdapterFactory(OrderDTO.class, UserDTO.class));
+ * }</pre>
+ *
+ * @author ag777 <837915770@vip.qq.com>
+ * @version 2026/10/19
+ */
+public class CompiledTypeAdapterFactory implements TypeAdapterFactory {
+
+	/** gson内置的适配器, 用于判断基本类型和String是否可以走快速路径 */
+	private static final Gson DEFAULT_GSON = new Gson();
+	/** 基本类型对应的包装类型 */
+	private static final Map<Class<?>, Class<?>> WRAPPERS = Map.of(
+			int.class, Integer.class, long.class, Long.class, double.class, Double.class, float.class, Float.class,
+			short.class, Short.class, byte.class, Byte.class, char.class, Character.class, boolean.class, Boolean.class);
+	/** 试写期间不生成适配器, 直接使用gson的实现 */
+	private static final ThreadLocal<Boolean> PROBING = new ThreadLocal<>();
+
+	private final Set<Class<?>> classes;
+
+	/**
+	 * @param classes 需要生成专用适配器的类
+	 */
+	public CompiledTypeAdapterFactory(Class<?>... classes) {
+		this.classes = Set.of(classes);
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+		Class<? super T> raw = type.getRawType();
+		if (type.getType() != raw || !classes.contains(raw) || PROBING.get() != null || !isSupportedClass(raw)) {
+			return null;
+		}
+		TypeAdapter<T> delegate = gson.getDelegateAdapter(this, type);
+		try {
+			return (TypeAdapter<T>) compile(gson, raw, (TypeAdapter<Object>) delegate);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			// 无法访问、试写失败等情况交给反射实现
+			return null;
+		}
+	}
+
+	private static boolean isSupportedClass(Class<?> raw) {
+		int mod = raw.getModifiers();
+		if (raw.isInterface() || raw.isRecord() || raw.isEnum() || raw.isArray() || raw.isPrimitive()
+				|| Modifier.isAbstract(mod) || raw.isMemberClass() && !Modifier.isStatic(mod)
+				|| raw.isAnonymousClass() || raw.isLocalClass() || raw.isAnnotationPresent(JsonAdapter.class)) {
+			return false;
+		}
+		for (Class<?> c = raw; c != Object.class; c = c.getSuperclass()) {
+			if (c.getTypeParameters().length > 0 || c.getName().startsWith("java.")) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private TypeAdapter<Object> compile(Gson gson, Class<?> raw, TypeAdapter<Object> delegate) throws ReflectiveOperationException {
+		MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(raw, MethodHandles.lookup());
+		Map<String, Field> byName = new HashMap<>();
+		for (Class<?> c = raw; c != Object.class; c = c.getSuperclass()) {
+			for (Field field : c.getDeclaredFields()) {
+				if (!Modifier.isStatic(field.getModifiers()) && !field.isSynthetic()
+						&& byName.putIfAbsent(fieldName(gson, field), field) != null) {
+					// 同名字段(如子类隐藏了父类的字段)由排除规则决定使用哪个, 交给gson
+					return null;
+				}
+			}
+		}
+
+		// 试写: 由gson决定写出哪些字段、字段名及顺序, 值为null的字段同样写出
+		Object instance = delegate.fromJsonTree(new JsonObject());
+		JsonElement written;
+		PROBING.set(Boolean.TRUE);
+		try {
+			for (Field field : byName.values()) {
+				if (lookup.unreflectGetter(field).invoke(instance) == instance) {
+					// gson不会写出指向自身的字段, 试写的结果不完整
+					return null;
+				}
+			}
+			// 复制出的gson中也注册了该工厂, 试写期间不生成适配器
+			Gson nullsGson = gson.newBuilder().serializeNulls().create();
+			written = JsonParser.parseString(nullsGson.toJson(instance, raw));
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new ReflectiveOperationException(e);
+		} finally {
+			PROBING.remove();
+		}
+		if (!written.isJsonObject()) {
+			return null;
+		}
+
+		List<Slot> slots = new ArrayList<>();
+		for (String name : written.getAsJsonObject().keySet()) {
+			Field field = byName.get(name);
+			if (field == null || !isSupportedField(field)) {
+				return null;
+			}
+			slots.add(Slot.of(gson, lookup, field, name));
+		}
+		return new CompiledAdapter(delegate, slots.toArray(new Slot[0]));
+	}
+
+	/**
+	 * 与gson的反射实现一致: 有{@link SerializedName}时取其value, 否则取命名策略的结果
+	 */
+	private static String fieldName(Gson gson, Field field) {
+		SerializedName annotation = field.getAnnotation(SerializedName.class);
+		return annotation != null ? annotation.value() : gson.fieldNamingStrategy().translateName(field);
+	}
+
+	/**
+	 * 字段是否可以由生成的适配器写出
+	 * <p>
+	 * gson写出字段时, 声明类型为Class的字段按运行时类型选择适配器(运行时类型的适配器是反射实现而声明类型不是时例外),
+	 * 只有声明类型不可能有子类时才能确定使用哪个适配器
+	 * </p>
+	 */
+	private static boolean isSupportedField(Field field) {
+		Type type = field.getGenericType();
+		if (field.isAnnotationPresent(JsonAdapter.class) || hasTypeVariable(type)) {
+			return false;
+		}
+		if (!(type instanceof Class)) {
+			// 参数化类型和泛型数组始终使用声明类型的适配器
+			return true;
+		}
+		Class<?> c = (Class<?>) type;
+		while (c.isArray()) {
+			c = c.getComponentType();
+		}
+		return c.isPrimitive() || Modifier.isFinal(c.getModifiers());
+	}
+
+	private static boolean hasTypeVariable(Type type) {
+		if (type instanceof Class) {
+			return false;
+		}
+		if (type instanceof ParameterizedType) {
+			for (Type arg : ((ParameterizedType) type).getActualTypeArguments()) {
+				if (hasTypeVariable(arg)) {
+					return true;
+				}
+			}
+			return false;
+		}
+		if (type instanceof GenericArrayType) {
+			return hasTypeVariable(((GenericArrayType) type).getGenericComponentType());
+		}
+		if (type instanceof WildcardType) {
+			WildcardType wildcard = (WildcardType) type;
+			for (Type bound : wildcard.getUpperBounds()) {
+				if (hasTypeVariable(bound)) {
+					return true;
+				}
+			}
+			for (Type bound : wildcard.getLowerBounds()) {
+				if (hasTypeVariable(bound)) {
+					return true;
+				}
+			}
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * 生成的适配器
+	 */
+	private static class CompiledAdapter extends TypeAdapter<Object> {
+
+		/** gson的反射实现, 用于反序列化 */
+		private final TypeAdapter<Object> delegate;
+		private final Slot[] slots;
+
+		CompiledAdapter(TypeAdapter<Object> delegate, Slot[] slots) {
+			this.delegate = delegate;
+			this.slots = slots;
+		}
+
+		@Override
+		public void write(JsonWriter out, Object value) throws IOException {
+			if (value == null) {
+				out.nullValue();
+				return;
+			}
+			out.beginObject();
+			try {
+				for (Slot slot : slots) {
+					slot.write(out, value);
+				}
+			} catch (IOException | RuntimeException | Error e) {
+				throw e;
+			} catch (Throwable e) {
+				throw new JsonIOException(e);
+			}
+			out.endObject();
+		}
+
+		@Override
+		public Object read(JsonReader in) throws IOException {
+			return delegate.read(in);
+		}
+	}
+
+	/**
+	 * 单个字段的写出
+	 */
+	private abstract static class Slot {
+		final String name;
+		final MethodHandle getter;
+
+		Slot(String name, MethodHandle getter) {
+			this.name = name;
+			this.getter = getter;
+		}
+
+		abstract void write(JsonWriter out, Object instance) throws Throwable;
+
+		static Slot of(Gson gson, MethodHandles.Lookup lookup, Field field, String name) throws IllegalAccessException {
+			Class<?> type = field.getType();
+			MethodHandle getter = lookup.unreflectGetter(field);
+			if (isBuiltIn(gson, type)) {
+				Class<?> handleType = type.isPrimitive() ? type : Object.class;
+				getter = getter.asType(MethodType.methodType(handleType, Object.class));
+				if (type == int.class) {
+					return new IntSlot(name, getter);
+				}
+				if (type == long.class) {
+					return new LongSlot(name, getter);
+				}
+				if (type == boolean.class) {
+					return new BooleanSlot(name, getter);
+				}
+				if (type == String.class) {
+					return new StringSlot(name, getter);
+				}
+			}
+			return new ObjectSlot(gson, name, lookup.unreflectGetter(field).asType(MethodType.methodType(Object.class, Object.class)), field);
+		}
+
+		/**
+		 * 写出时使用的是否为gson内置的适配器(基本类型的值按装箱后的类型选择适配器)
+		 */
+		private static boolean isBuiltIn(Gson gson, Class<?> type) {
+			Class<?> wrapped = WRAPPERS.getOrDefault(type, type);
+			return gson.getAdapter(wrapped) == DEFAULT_GSON.getAdapter(wrapped);
+		}
+	}
+
+	private static final class IntSlot extends Slot {
+		IntSlot(String name, MethodHandle getter) {
+			super(name, getter);
+		}
+
+		@Override
+		void write(JsonWriter out, Object instance) throws Throwable {
+			out.name(name);
+			out.value((long) (int) getter.invokeExact(instance));
+		}
+	}
+
+	private static final class LongSlot extends Slot {
+		LongSlot(String name, MethodHandle getter) {
+			super(name, getter);
+		}
+
+		@Override
+		void write(JsonWriter out, Object instance) throws Throwable {
+			out.name(name);
+			out.value((long) getter.invokeExact(instance));
+		}
+	}
+
+	private static final class BooleanSlot extends Slot {
+		BooleanSlot(String name, MethodHandle getter) {
+			super(name, getter);
+		}
+
+		@Override
+		void write(JsonWriter out, Object instance) throws Throwable {
+			out.name(name);
+			out.value((boolean) getter.invokeExact(instance));
+		}
+	}
+
+	private static final class StringSlot extends Slot {
+		StringSlot(String name, MethodHandle getter) {
+			super(name, getter);
+		}
+
+		@Override
+		void write(JsonWriter out, Object instance) throws Throwable {
+			out.name(name);
+			out.value((String) (Object) getter.invokeExact(instance));
+		}
+	}
+
+	private static final class ObjectSlot extends Slot {
+		private final TypeAdapter<Object> adapter;
+
+		@SuppressWarnings("unchecked")
+		ObjectSlot(Gson gson, String name, MethodHandle getter, Field field) {
+			super(name, getter);
+			Class<?> type = field.getType();
+			// 与gson一致, 基本类型的值按装箱后的类型选择适配器, 其余使用声明类型的适配器
+			this.adapter = type.isPrimitive()
+					? (TypeAdapter<Object>) gson.getAdapter(WRAPPERS.get(type))
+					: (TypeAdapter<Object>) gson.getAdapter(TypeToken.get(field.getGenericType()));
+		}
+
+		@Override
+		void write(JsonWriter out, Object instance) throws Throwable {
+			Object value = (Object) getter.invokeExact(instance);
+			if (value == instance) {
+				// 与gson一致, 跳过指向自身的字段
+				return;
+			}
+			out.name(name);
+			adapter.write(out, value);
+		}
+	}
+}
@@ -0,0 +1,160 @@
+package github.ag777.util.gson.cbor;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * 使Map类型可以从{@link CborReader}中读取
+ * <p>
+ * gson内置的Map适配器在读取键时会直接修改JsonReader的内部状态, 对JsonReader的子类无效。
+ * 该工厂为所有Map类型提供适配器: 写出和从普通JsonReader读取时交给排在它之后的适配器(一般是gson内置的Map适配器);
+ * 从CborReader读取对象形式的map时, 先由该适配器将空的json对象转为对应类型的空map(构造方式与gson一致, 注册的InstanceCreator同样生效),
+ * 再逐个读取键值对。
+ * </p>
+ * <p>
+ * gson中后注册的适配器优先, 因此<b>需要在注册其它Map适配器之前注册该工厂</b>, 之后注册的Map适配器(如GsonUtils中Map&lt;String, Object&gt;的适配器)
+ * 会覆盖它, 这些适配器需要只通过JsonReader的公开方法读取。通过registerTypeHierarchyAdapter注册的Map适配器排在所有工厂之后,
+ * 从CborReader读取时只用于构造空map。
+ * </p>
+ *
+ * <pre>{@code
+ * Gson gson = new GsonBuilder()
+ *         .registerTypeAdapterFactory(new CborMapTypeAdapterFactory())
+ *         .registerTypeAdapter(...)
+ *         .create();
+ * }</pre>
+ *
+ * @author ag777 <837915770@vip.qq.com>
+ * @version 2026/10/19
+ */
+public class CborMapTypeAdapterFactory implements TypeAdapterFactory {
+
+    /** 用于检测是否已注册的Map类型, 不会被其它适配器专门处理 */
+    private static final TypeToken<ProbeMap> PROBE = TypeToken.get(ProbeMap.class);
+
+    /**
+     * @param gson gson
+     * @return gson中Map类型是否由该工厂处理(没有被之后注册的覆盖所有Map类型的适配器替代)
+     */
+    public static boolean isRegistered(Gson gson) {
+        TypeAdapter<?> adapter = gson.getAdapter(PROBE);
+        return adapter instanceof Adapter;
+    }
+
+    @Override
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+        if (!Map.class.isAssignableFrom(type.getRawType())) {
+            return null;
+        }
+        TypeAdapter<T> delegate = gson.getDelegateAdapter(this, type);
+        Type[] keyAndValue = keyAndValueTypes(type.getType());
+        TypeAdapter<Object> keyAdapter = (TypeAdapter<Object>) gson.getAdapter(TypeToken.get(keyAndValue[0]));
+        TypeAdapter<Object> valueAdapter = (TypeAdapter<Object>) gson.getAdapter(TypeToken.get(keyAndValue[1]));
+        return (TypeAdapter<T>) new Adapter((TypeAdapter) delegate, keyAdapter, valueAdapter);
+    }
+
+    /**
+     * 获取Map类型的键和值的类型
+     * <p>
+     * 沿父类型查找Map&lt;K, V&gt;, 父类型中的类型变量替换为子类型的实际参数, 无法确定时为Object。Properties与gson一致按字符串处理
+     * </p>
+     */
+    private static Type[] keyAndValueTypes(Type type) {
+        if (type == Properties.class) {
+            return new Type[]{String.class, String.class};
+        }
+        Type[] found = mapTypeArguments(type);
+        for (int i = 0; i < found.length; i++) {
+            if (found[i] instanceof TypeVariable) {
+                found[i] = Object.class;
+            }
+        }
+        return found;
+    }
+
+    private static Type[] mapTypeArguments(Type type) {
+        Class<?> raw = TypeToken.get(type).getRawType();
+        Type[] args = type instanceof ParameterizedType ? ((ParameterizedType) type).getActualTypeArguments() : null;
+        if (raw == Map.class) {
+            return args != null ? args.clone() : new Type[]{Object.class, Object.class};
+        }
+        List<Type> supertypes = new ArrayList<>();
+        supertypes.add(raw.getGenericSuperclass());
+        supertypes.addAll(List.of(raw.getGenericInterfaces()));
+        for (Type supertype : supertypes) {
+            if (supertype == null || !Map.class.isAssignableFrom(TypeToken.get(supertype).getRawType())) {
+                continue;
+            }
+            Type[] found = mapTypeArguments(supertype);
+            TypeVariable<?>[] variables = raw.getTypeParameters();
+            for (int i = 0; i < found.length; i++) {
+                for (int j = 0; j < variables.length; j++) {
+                    if (variables[j].equals(found[i])) {
+                        found[i] = args != null ? args[j] : Object.class;
+                    }
+                }
+            }
+            return found;
+        }
+        return new Type[]{Object.class, Object.class};
+    }
+
+    private static class ProbeMap extends HashMap<Object, Object> {
+    }
+
+    private static class Adapter extends TypeAdapter<Map<Object, Object>> {
+        private final TypeAdapter<Map<Object, Object>> delegate;
+        private final TypeAdapter<Object> keyAdapter;
+        private final TypeAdapter<Object> valueAdapter;
+
+        Adapter(TypeAdapter<Map<Object, Object>> delegate, TypeAdapter<Object> keyAdapter, TypeAdapter<Object> valueAdapter) {
+            this.delegate = delegate;
+            this.keyAdapter = keyAdapter;
+            this.valueAdapter = valueAdapter;
+        }
+
+        @Override
+        public void write(JsonWriter out, Map<Object, Object> value) throws IOException {
+            delegate.write(out, value);
+        }
+
+        @Override
+        public Map<Object, Object> read(JsonReader in) throws IOException {
+            if (!(in instanceof CborReader) || in.peek() != JsonToken.BEGIN_OBJECT) {
+                // null以及数组形式(complexMapKeySerialization)的map不涉及内部状态
+                return delegate.read(in);
+            }
+            CborReader reader = (CborReader) in;
+            Map<Object, Object> map = delegate.fromJsonTree(new JsonObject());
+            reader.beginObject();
+            while (reader.hasNext()) {
+                reader.promoteNameToValue();
+                Object key = keyAdapter.read(reader);
+                Object replaced = map.put(key, valueAdapter.read(reader));
+                if (replaced != null) {
+                    throw new JsonSyntaxException("duplicate key: " + key);
+                }
+            }
+            reader.endObject();
+            return map;
+        }
+    }
+}
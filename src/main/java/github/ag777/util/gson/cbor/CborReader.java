@@ -0,0 +1,708 @@
+package github.ag777.util.gson.cbor;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 读取CBOR(RFC 8949)格式数据的JsonReader
+ * <p>
+ * 将CBOR数据项映射为json的token, 使gson的TypeAdapter可以直接从二进制数据中反序列化对象。支持:
+ * <ul>
+ *     <li>定长和不定长的array/map/text string</li>
+ *     <li>整数、half/float/double、bignum(tag 2/3)、decimal fraction(tag 4)</li>
+ *     <li>stringref扩展(tag 256/25)</li>
+ *     <li>整数类型的map键(转为字符串), 其它未知的tag会被忽略</li>
+ * </ul>
+ * 不支持byte string(json中没有对应的类型)。读取由{@link CborWriter}写出的数据时, float类型的数字转为字符串的结果与json一致。
+ * </p>
+ * <p>
+ * gson内置的Map适配器依赖JsonReader的内部状态, 无法直接用于该reader, 需要在gson中注册{@link CborMapTypeAdapterFactory},
+ * 一般通过{@code GsonUtils.fromBinary}调用即可。
+ * </p>
+ *
+ * @author ag777 <837915770@vip.qq.com>
+ * @version 2026/10/19
+ */
+public class CborReader extends JsonReader {
+
+    private static final Reader UNREADABLE_READER = new Reader() {
+        @Override
+        public int read(char[] buffer, int offset, int count) {
+            throw new AssertionError();
+        }
+
+        @Override
+        public void close() {
+            throw new AssertionError();
+        }
+    };
+
+    private static final int KIND_LONG = 0;
+    private static final int KIND_FLOAT = 1;
+    private static final int KIND_DOUBLE = 2;
+    private static final int KIND_BIG = 3;
+
+    private final InputStream in;
+    private byte[] buf;
+    private int pos;
+    private int limit;
+
+    /** stringref表(text string为String, byte string为byte[]), 为null表示数据中没有启用stringref */
+    private List<Object> strings;
+
+    /** 容器栈: 剩余的元素个数(map为键值对数), -1表示不定长 */
+    private long[] remaining = new long[32];
+    private boolean[] maps = new boolean[32];
+    /** map中下一个是否为键 */
+    private boolean[] expectName = new boolean[32];
+    private int depth;
+    private boolean documentDone;
+
+    private JsonToken peeked;
+    private boolean promoted;
+    private String peekedString;
+    private boolean peekedBoolean;
+    private long peekedLong;
+    private double peekedDouble;
+    private BigDecimal peekedBig;
+    private int numberKind;
+    private long peekedLength;
+
+    /**
+     * @param bytes 数据
+     */
+    public CborReader(byte[] bytes) {
+        this(bytes, 0, bytes.length);
+    }
+
+    /**
+     * @param bytes 数据
+     * @param offset 起始位置
+     * @param length 长度
+     */
+    public CborReader(byte[] bytes, int offset, int length) {
+        super(UNREADABLE_READER);
+        this.in = null;
+        this.buf = bytes;
+        this.pos = offset;
+        this.limit = offset + length;
+    }
+
+    /**
+     * @param in 输入流, 关闭时一并关闭
+     */
+    public CborReader(InputStream in) {
+        super(UNREADABLE_READER);
+        this.in = in;
+        this.buf = new byte[8192];
+    }
+
+    @Override
+    public void beginArray() throws IOException {
+        expect(JsonToken.BEGIN_ARRAY);
+        peeked = null;
+        push(false, peekedLength);
+    }
+
+    @Override
+    public void endArray() throws IOException {
+        expect(JsonToken.END_ARRAY);
+        endContainer();
+    }
+
+    @Override
+    public void beginObject() throws IOException {
+        expect(JsonToken.BEGIN_OBJECT);
+        peeked = null;
+        push(true, peekedLength);
+    }
+
+    @Override
+    public void endObject() throws IOException {
+        expect(JsonToken.END_OBJECT);
+        endContainer();
+    }
+
+    @Override
+    public boolean hasNext() throws IOException {
+        JsonToken token = peek();
+        return token != JsonToken.END_OBJECT && token != JsonToken.END_ARRAY && token != JsonToken.END_DOCUMENT;
+    }
+
+    @Override
+    public JsonToken peek() throws IOException {
+        if (peeked != null) {
+            return peeked;
+        }
+        if (depth == 0) {
+            if (documentDone) {
+                if (!exhausted()) {
+                    // 与严格模式的JsonReader一致, 不允许多个顶层数据项
+                    throw syntaxError("顶层数据项之后有多余的内容");
+                }
+                return peeked = JsonToken.END_DOCUMENT;
+            }
+            return peeked = decodeItem();
+        }
+        int top = depth - 1;
+        if (remaining[top] == 0 || remaining[top] < 0 && peekByte() == CborWriter.BREAK) {
+            return peeked = maps[top] ? JsonToken.END_OBJECT : JsonToken.END_ARRAY;
+        }
+        JsonToken token = decodeItem();
+        if (maps[top] && expectName[top]) {
+            if (token == JsonToken.NUMBER) {
+                peekedString = numberToString();
+            } else if (token != JsonToken.STRING) {
+                throw syntaxError("map的键只支持字符串和整数, 实际为" + token);
+            }
+            token = promoted ? JsonToken.STRING : JsonToken.NAME;
+        }
+        return peeked = token;
+    }
+
+    @Override
+    public String nextName() throws IOException {
+        expect(JsonToken.NAME);
+        String name = peekedString;
+        consumed();
+        return name;
+    }
+
+    @Override
+    public String nextString() throws IOException {
+        JsonToken token = peek();
+        String value;
+        if (token == JsonToken.STRING) {
+            value = peekedString;
+        } else if (token == JsonToken.NUMBER) {
+            value = numberToString();
+        } else {
+            throw unexpected("a string", token);
+        }
+        consumed();
+        return value;
+    }
+
+    @Override
+    public boolean nextBoolean() throws IOException {
+        expect(JsonToken.BOOLEAN);
+        boolean value = peekedBoolean;
+        consumed();
+        return value;
+    }
+
+    @Override
+    public void nextNull() throws IOException {
+        expect(JsonToken.NULL);
+        consumed();
+    }
+
+    @Override
+    public double nextDouble() throws IOException {
+        JsonToken token = peek();
+        double value;
+        if (token == JsonToken.NUMBER) {
+            value = switch (numberKind) {
+                case KIND_LONG -> peekedLong;
+                case KIND_BIG -> peekedBig.doubleValue();
+                default -> peekedDouble;
+            };
+        } else if (token == JsonToken.STRING) {
+            value = Double.parseDouble(peekedString);
+        } else {
+            throw unexpected("a double", token);
+        }
+        consumed();
+        return value;
+    }
+
+    @Override
+    public long nextLong() throws IOException {
+        JsonToken token = peek();
+        long value;
+        if (token == JsonToken.NUMBER && numberKind == KIND_LONG) {
+            value = peekedLong;
+        } else if (token == JsonToken.NUMBER || token == JsonToken.STRING) {
+            String text = token == JsonToken.STRING ? peekedString : numberToString();
+            try {
+                value = new BigDecimal(text).longValueExact();
+            } catch (ArithmeticException e) {
+                throw new NumberFormatException("Expected a long but was " + text);
+            }
+        } else {
+            throw unexpected("a long", token);
+        }
+        consumed();
+        return value;
+    }
+
+    @Override
+    public int nextInt() throws IOException {
+        JsonToken token = peek();
+        long value;
+        if (token == JsonToken.NUMBER && numberKind == KIND_LONG) {
+            value = peekedLong;
+        } else if (token == JsonToken.NUMBER || token == JsonToken.STRING) {
+            String text = token == JsonToken.STRING ? peekedString : numberToString();
+            try {
+                value = new BigDecimal(text).longValueExact();
+            } catch (ArithmeticException e) {
+                throw new NumberFormatException("Expected an int but was " + text);
+            }
+        } else {
+            throw unexpected("an int", token);
+        }
+        if (value != (int) value) {
+            throw new NumberFormatException("Expected an int but was " + value);
+        }
+        consumed();
+        return (int) value;
+    }
+
+    @Override
+    public void skipValue() throws IOException {
+        int count = 0;
+        do {
+            switch (peek()) {
+                case BEGIN_ARRAY -> {
+                    beginArray();
+                    count++;
+                }
+                case BEGIN_OBJECT -> {
+                    beginObject();
+                    count++;
+                }
+                case END_ARRAY -> {
+                    endArray();
+                    count--;
+                }
+                case END_OBJECT -> {
+                    endObject();
+                    count--;
+                }
+                case END_DOCUMENT -> {
+                    return;
+                }
+                default -> consumed();
+            }
+        } while (count > 0);
+    }
+
+    @Override
+    public void close() throws IOException {
+        peeked = null;
+        depth = 0;
+        documentDone = true;
+        if (in != null) {
+            in.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "CborReader at byte " + pos;
+    }
+
+    /**
+     * 将当前的map键作为值读取(供map的键适配器使用)
+     */
+    void promoteNameToValue() throws IOException {
+        expect(JsonToken.NAME);
+        peeked = JsonToken.STRING;
+        promoted = true;
+    }
+
+    private void expect(JsonToken expected) throws IOException {
+        JsonToken token = peek();
+        if (token != expected) {
+            throw unexpected(expected.name(), token);
+        }
+    }
+
+    private IllegalStateException unexpected(String expected, JsonToken actual) {
+        return new IllegalStateException("Expected " + expected + " but was " + actual + " at byte " + pos);
+    }
+
+    private MalformedJsonException syntaxError(String message) {
+        return new MalformedJsonException(message + " at byte " + pos);
+    }
+
+    private void push(boolean map, long length) {
+        if (depth == remaining.length) {
+            remaining = Arrays.copyOf(remaining, depth * 2);
+            maps = Arrays.copyOf(maps, depth * 2);
+            expectName = Arrays.copyOf(expectName, depth * 2);
+        }
+        remaining[depth] = length;
+        maps[depth] = map;
+        expectName[depth] = true;
+        depth++;
+    }
+
+    private void endContainer() throws IOException {
+        if (remaining[depth - 1] < 0) {
+            // 不定长容器的结束符
+            pos++;
+        }
+        depth--;
+        peeked = null;
+        afterValue();
+    }
+
+    /**
+     * 消费当前的键或值
+     */
+    private void consumed() {
+        peeked = null;
+        promoted = false;
+        int top = depth - 1;
+        if (depth > 0 && maps[top] && expectName[top]) {
+            expectName[top] = false;
+        } else {
+            afterValue();
+        }
+    }
+
+    private void afterValue() {
+        if (depth == 0) {
+            documentDone = true;
+            return;
+        }
+        int top = depth - 1;
+        if (maps[top]) {
+            expectName[top] = true;
+        }
+        if (remaining[top] > 0) {
+            remaining[top]--;
+        }
+    }
+
+    private String numberToString() {
+        return switch (numberKind) {
+            case KIND_LONG -> Long.toString(peekedLong);
+            case KIND_FLOAT -> Float.toString((float) peekedDouble);
+            case KIND_DOUBLE -> Double.toString(peekedDouble);
+            default -> peekedBig.toString();
+        };
+    }
+
+    /**
+     * 读取一个数据项的头部(标量会读取完整的值), 返回对应的token
+     */
+    private JsonToken decodeItem() throws IOException {
+        int initial = readByte();
+        int major = initial >>> 5;
+        int info = initial & 0x1f;
+        switch (major) {
+            case 0, 1 -> {
+                long n = readArgument(info);
+                if (n >= 0) {
+                    numberKind = KIND_LONG;
+                    peekedLong = major == 0 ? n : -1 - n;
+                } else {
+                    // 超出long范围的无符号数
+                    BigInteger unsigned = new BigInteger(Long.toUnsignedString(n));
+                    numberKind = KIND_BIG;
+                    peekedBig = new BigDecimal(major == 0 ? unsigned : unsigned.negate().subtract(BigInteger.ONE));
+                }
+                return JsonToken.NUMBER;
+            }
+            case 3 -> {
+                peekedString = readText(info);
+                return JsonToken.STRING;
+            }
+            case 4, 5 -> {
+                peekedLength = info == 31 ? -1 : readLength(info);
+                return major == 4 ? JsonToken.BEGIN_ARRAY : JsonToken.BEGIN_OBJECT;
+            }
+            case 6 -> {
+                return decodeTagged(readArgument(info));
+            }
+            case 7 -> {
+                return decodeSimple(info);
+            }
+            default -> throw syntaxError("不支持的CBOR类型: " + major);
+        }
+    }
+
+    private JsonToken decodeTagged(long tag) throws IOException {
+        if (tag == CborWriter.TAG_STRINGREF_NAMESPACE) {
+            if (depth > 0) {
+                throw syntaxError("不支持嵌套的stringref命名空间");
+            }
+            strings = new ArrayList<>();
+            return decodeItem();
+        }
+        if (tag == CborWriter.TAG_STRINGREF) {
+            Object value = readStringRef();
+            if (!(value instanceof String)) {
+                throw syntaxError("不支持的CBOR类型: byte string");
+            }
+            peekedString = (String) value;
+            return JsonToken.STRING;
+        }
+        if (tag == CborWriter.TAG_POSITIVE_BIGNUM || tag == CborWriter.TAG_NEGATIVE_BIGNUM) {
+            numberKind = KIND_BIG;
+            peekedBig = new BigDecimal(readBignum(tag));
+            return JsonToken.NUMBER;
+        }
+        if (tag == CborWriter.TAG_DECIMAL_FRACTION) {
+            if (readByte() != 0x82) {
+                throw syntaxError("decimal fraction应为两个元素的数组");
+            }
+            if (decodeItem() != JsonToken.NUMBER || numberKind != KIND_LONG) {
+                throw syntaxError("decimal fraction的指数应为整数");
+            }
+            long exponent = peekedLong;
+            if (decodeItem() != JsonToken.NUMBER || numberKind == KIND_FLOAT || numberKind == KIND_DOUBLE) {
+                throw syntaxError("decimal fraction的尾数应为整数");
+            }
+            BigInteger mantissa = numberKind == KIND_LONG ? BigInteger.valueOf(peekedLong) : peekedBig.toBigIntegerExact();
+            numberKind = KIND_BIG;
+            peekedBig = new BigDecimal(mantissa, Math.toIntExact(-exponent));
+            return JsonToken.NUMBER;
+        }
+        // 其它tag只是语义上的标注, 直接读取其内容
+        return decodeItem();
+    }
+
+    /**
+     * 读取stringref(tag 25)的内容并返回引用的字符串(String或byte[])
+     */
+    private Object readStringRef() throws IOException {
+        int initial = readByte();
+        long index = readArgument(initial & 0x1f);
+        if (strings == null || initial >>> 5 != 0 || index >= strings.size()) {
+            throw syntaxError("无效的stringref: " + index);
+        }
+        return strings.get((int) index);
+    }
+
+    private BigInteger readBignum(long tag) throws IOException {
+        int initial = readByte();
+        byte[] bytes;
+        if (initial >>> 5 == 6 && readArgument(initial & 0x1f) == CborWriter.TAG_STRINGREF) {
+            Object value = readStringRef();
+            if (!(value instanceof byte[])) {
+                throw syntaxError("bignum的内容应为byte string");
+            }
+            bytes = (byte[]) value;
+        } else if (initial >>> 5 == 2) {
+            long length = readLength(initial & 0x1f);
+            bytes = readBytes(length);
+            // byte string与text string共用stringref表, 否则其它实现写出的下标会错位
+            if (strings != null && length >= CborWriter.minRefLength(strings.size())) {
+                strings.add(bytes);
+            }
+        } else {
+            throw syntaxError("bignum的内容应为byte string");
+        }
+        BigInteger value = new BigInteger(1, bytes);
+        return tag == CborWriter.TAG_POSITIVE_BIGNUM ? value : value.negate().subtract(BigInteger.ONE);
+    }
+
+    private JsonToken decodeSimple(int info) throws IOException {
+        switch (info) {
+            case 20, 21 -> {
+                peekedBoolean = info == 21;
+                return JsonToken.BOOLEAN;
+            }
+            case 22, 23 -> {
+                // null和undefined
+                return JsonToken.NULL;
+            }
+            case 25 -> {
+                numberKind = KIND_DOUBLE;
+                peekedDouble = Float.float16ToFloat((short) readUnsigned(2));
+                return JsonToken.NUMBER;
+            }
+            case 26 -> {
+                numberKind = KIND_FLOAT;
+                peekedDouble = Float.intBitsToFloat((int) readUnsigned(4));
+                return JsonToken.NUMBER;
+            }
+            case 27 -> {
+                numberKind = KIND_DOUBLE;
+                peekedDouble = Double.longBitsToDouble(readUnsigned(8));
+                return JsonToken.NUMBER;
+            }
+            default -> throw syntaxError("不支持的CBOR简单值: " + info);
+        }
+    }
+
+    private String readText(int info) throws IOException {
+        if (info == 31) {
+            // 不定长字符串由多个定长片段组成, 不加入stringref表
+            StringBuilder sb = new StringBuilder();
+            while (peekByte() != CborWriter.BREAK) {
+                int initial = readByte();
+                if (initial >>> 5 != 3 || (initial & 0x1f) == 31) {
+                    throw syntaxError("无效的不定长字符串");
+                }
+                sb.append(readUtf8(readLength(initial & 0x1f)));
+            }
+            pos++;
+            return sb.toString();
+        }
+        long length = readLength(info);
+        String value = readUtf8(length);
+        if (strings != null && length >= CborWriter.minRefLength(strings.size())) {
+            strings.add(value);
+        }
+        return value;
+    }
+
+    private String readUtf8(long length) throws IOException {
+        if (length <= buf.length) {
+            require((int) length);
+            String value = new String(buf, pos, (int) length, StandardCharsets.UTF_8);
+            pos += (int) length;
+            return value;
+        }
+        return new String(readBytes(length), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 读取字符串/容器的长度
+     * <p>
+     * 长度来自数据本身, 不可信: 8字节的参数超过long范围时为负数, 直接拒绝
+     * </p>
+     */
+    private long readLength(int info) throws IOException {
+        long length = readArgument(info);
+        if (length < 0) {
+            throw syntaxError("数据过长: " + Long.toUnsignedString(length));
+        }
+        return length;
+    }
+
+    /**
+     * 读取指定长度的字节
+     * <p>
+     * 长度来自数据本身, 不能按长度预先分配: 字节数组输入时长度超过剩余字节直接拒绝,
+     * 输入流则随实际读到的数据分段扩容, 数据不足时抛出EOFException
+     * </p>
+     */
+    private byte[] readBytes(long length) throws IOException {
+        if (length > Integer.MAX_VALUE - 8) {
+            throw syntaxError("数据过长: " + length);
+        }
+        if (in == null) {
+            if (length > limit - pos) {
+                throw new EOFException("End of input: 需要" + length + "字节, 剩余" + (limit - pos) + "字节");
+            }
+            byte[] bytes = Arrays.copyOfRange(buf, pos, pos + (int) length);
+            pos += (int) length;
+            return bytes;
+        }
+        byte[] bytes = new byte[(int) Math.min(length, buf.length)];
+        int copied = 0;
+        while (copied < length) {
+            if (copied == bytes.length) {
+                bytes = Arrays.copyOf(bytes, (int) Math.min(length, (long) bytes.length * 2));
+            }
+            if (pos < limit) {
+                int n = Math.min(limit - pos, bytes.length - copied);
+                System.arraycopy(buf, pos, bytes, copied, n);
+                pos += n;
+                copied += n;
+                continue;
+            }
+            int n = in.read(bytes, copied, bytes.length - copied);
+            if (n < 0) {
+                throw new EOFException("End of input");
+            }
+            copied += n;
+        }
+        return bytes;
+    }
+
+    /**
+     * 读取头部的参数: 0~23直接取值, 24~27分别读取1/2/4/8字节
+     */
+    private long readArgument(int info) throws IOException {
+        if (info < 24) {
+            return info;
+        }
+        return switch (info) {
+            case 24 -> readUnsigned(1);
+            case 25 -> readUnsigned(2);
+            case 26 -> readUnsigned(4);
+            case 27 -> readUnsigned(8);
+            default -> throw syntaxError("无效的CBOR参数: " + info);
+        };
+    }
+
+    private long readUnsigned(int bytes) throws IOException {
+        require(bytes);
+        long value = 0;
+        for (int i = 0; i < bytes; i++) {
+            value = value << 8 | (buf[pos++] & 0xff);
+        }
+        return value;
+    }
+
+    private int readByte() throws IOException {
+        require(1);
+        return buf[pos++] & 0xff;
+    }
+
+    private int peekByte() throws IOException {
+        require(1);
+        return buf[pos] & 0xff;
+    }
+
+    /**
+     * @return 是否已经没有可读的字节
+     */
+    private boolean exhausted() throws IOException {
+        if (pos < limit) {
+            return false;
+        }
+        if (in == null) {
+            return true;
+        }
+        pos = 0;
+        limit = 0;
+        int read = in.read(buf, 0, buf.length);
+        if (read <= 0) {
+            return true;
+        }
+        limit = read;
+        return false;
+    }
+
+    /**
+     * 保证缓冲区中至少有n个字节
+     */
+    private void require(int n) throws IOException {
+        if (limit - pos >= n) {
+            return;
+        }
+        if (in == null) {
+            throw new EOFException("End of input");
+        }
+        System.arraycopy(buf, pos, buf, 0, limit - pos);
+        limit -= pos;
+        pos = 0;
+        while (limit < n) {
+            int read = in.read(buf, limit, buf.length - limit);
+            if (read < 0) {
+                throw new EOFException("End of input");
+            }
+            limit += read;
+        }
+    }
+}
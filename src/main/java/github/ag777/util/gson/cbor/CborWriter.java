@@ -0,0 +1,461 @@
+package github.ag777.util.gson.cbor;
+
+import com.google.gson.JsonParser;
+import com.google.gson.Strictness;
+import com.google.gson.internal.Streams;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 以CBOR(RFC 8949)格式写出的JsonWriter
+ * <p>
+ * 配合{@code Gson.toJson(Object, Type, JsonWriter)}使用, 对象结构仍由gson的TypeAdapter决定(注册的适配器、命名策略、排除规则都会生效),
+ * 只是输出从json文本换成了二进制:
+ * <ul>
+ *     <li>对象/数组使用不定长map/array(0xbf/0x9f ... 0xff), 不需要预先知道元素个数</li>
+ *     <li>整数按大小使用1~9字节的变长编码, float写为4字节, double写为8字节</li>
+ *     <li>超出long/double精度的数字写为decimal fraction(tag 4)/bignum(tag 2/3), 不会丢失精度</li>
+ *     <li>开启dedup时使用stringref扩展(tag 256/25), 重复出现的字段名和字符串只写一次, 之后以下标引用</li>
+ * </ul>
+ * 写出的数据可以由{@link CborReader}或其它支持对应标签的CBOR实现读取。
+ * </p>
+ *
+ * <pre>{@code
+ * try (CborWriter writer = new CborWriter(out, true)) {
+ *     gson.toJson(user, User.class, writer);
+ * }
+ * }</pre>
+ *
+ * @author ag777 <837915770@vip.qq.com>
+ * @version 2026/10/19
+ */
+public class CborWriter extends JsonWriter {
+
+    private static final Writer UNWRITABLE_WRITER = new Writer() {
+        @Override
+        public void write(char[] buffer, int offset, int counter) {
+            throw new AssertionError();
+        }
+
+        @Override
+        public void flush() {
+            throw new AssertionError();
+        }
+
+        @Override
+        public void close() {
+            throw new AssertionError();
+        }
+    };
+
+    static final int MAJOR_UNSIGNED = 0;
+    static final int MAJOR_NEGATIVE = 1;
+    static final int MAJOR_TEXT = 3;
+    static final int MAJOR_TAG = 6;
+    static final int BEGIN_INDEFINITE_ARRAY = 0x9f;
+    static final int BEGIN_INDEFINITE_MAP = 0xbf;
+    static final int BREAK = 0xff;
+    static final int FALSE = 0xf4;
+    static final int TRUE = 0xf5;
+    static final int NULL = 0xf6;
+    static final int FLOAT32 = 0xfa;
+    static final int FLOAT64 = 0xfb;
+    static final int TAG_POSITIVE_BIGNUM = 2;
+    static final int TAG_NEGATIVE_BIGNUM = 3;
+    static final int TAG_DECIMAL_FRACTION = 4;
+    static final int TAG_STRINGREF = 25;
+    static final int TAG_STRINGREF_NAMESPACE = 256;
+
+    private final OutputStream out;
+    private final byte[] buf = new byte[8192];
+    private int pos;
+    /** stringref表, 为null表示不去重 */
+    private final Map<String, Integer> strings;
+    /** stringref表的大小, byte string也会占用下标 */
+    private int refCount;
+    /** 当前所在的容器是否为对象, 下标为深度 */
+    private boolean[] objects = new boolean[32];
+    private int depth;
+    private String deferredName;
+    private boolean started;
+
+    /**
+     * @param out 输出流, 关闭时一并关闭
+     * @param dedup 是否对重复的字符串去重(stringref)
+     */
+    public CborWriter(OutputStream out, boolean dedup) {
+        super(UNWRITABLE_WRITER);
+        this.out = out;
+        this.strings = dedup ? new HashMap<>() : null;
+    }
+
+    @Override
+    public JsonWriter beginArray() throws IOException {
+        beforeValue();
+        push(false);
+        writeByte(BEGIN_INDEFINITE_ARRAY);
+        return this;
+    }
+
+    @Override
+    public JsonWriter endArray() throws IOException {
+        pop(false);
+        writeByte(BREAK);
+        return this;
+    }
+
+    @Override
+    public JsonWriter beginObject() throws IOException {
+        beforeValue();
+        push(true);
+        writeByte(BEGIN_INDEFINITE_MAP);
+        return this;
+    }
+
+    @Override
+    public JsonWriter endObject() throws IOException {
+        pop(true);
+        writeByte(BREAK);
+        return this;
+    }
+
+    @Override
+    public JsonWriter name(String name) throws IOException {
+        if (name == null) {
+            throw new NullPointerException("name == null");
+        }
+        if (depth == 0 || !objects[depth - 1] || deferredName != null) {
+            throw new IllegalStateException("Please begin an object before writing a name.");
+        }
+        deferredName = name;
+        return this;
+    }
+
+    @Override
+    public JsonWriter value(String value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        }
+        beforeValue();
+        writeString(value);
+        return this;
+    }
+
+    @Override
+    public JsonWriter jsonValue(String value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        }
+        JsonReader reader = new JsonReader(new StringReader(value));
+        reader.setStrictness(Strictness.LENIENT);
+        Streams.write(JsonParser.parseReader(reader), this);
+        return this;
+    }
+
+    @Override
+    public JsonWriter nullValue() throws IOException {
+        if (deferredName != null && !getSerializeNulls()) {
+            deferredName = null;
+            return this;
+        }
+        beforeValue();
+        writeByte(NULL);
+        return this;
+    }
+
+    @Override
+    public JsonWriter value(boolean value) throws IOException {
+        beforeValue();
+        writeByte(value ? TRUE : FALSE);
+        return this;
+    }
+
+    @Override
+    public JsonWriter value(Boolean value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        }
+        return value(value.booleanValue());
+    }
+
+    @Override
+    public JsonWriter value(float value) throws IOException {
+        checkFinite(value);
+        beforeValue();
+        writeFloat(value);
+        return this;
+    }
+
+    @Override
+    public JsonWriter value(double value) throws IOException {
+        checkFinite(value);
+        beforeValue();
+        writeDouble(value);
+        return this;
+    }
+
+    @Override
+    public JsonWriter value(long value) throws IOException {
+        beforeValue();
+        writeLong(value);
+        return this;
+    }
+
+    @Override
+    public JsonWriter value(Number value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        }
+        if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte
+                || value instanceof AtomicInteger || value instanceof AtomicLong) {
+            return value(value.longValue());
+        }
+        if (value instanceof Double) {
+            return value(value.doubleValue());
+        }
+        if (value instanceof Float) {
+            return value(value.floatValue());
+        }
+        beforeValue();
+        writeDecimal(value instanceof BigDecimal ? (BigDecimal) value : toBigDecimal(value));
+        return this;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.write(buf, 0, pos);
+        pos = 0;
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        out.close();
+        if (depth > 0) {
+            throw new IOException("Incomplete document");
+        }
+    }
+
+    private static BigDecimal toBigDecimal(Number value) {
+        if (value instanceof BigInteger) {
+            return new BigDecimal((BigInteger) value);
+        }
+        // LazilyParsedNumber等
+        try {
+            return new BigDecimal(value.toString());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("无法写出的数字: " + value, e);
+        }
+    }
+
+    private void checkFinite(double value) {
+        if (getStrictness() != Strictness.LENIENT && (Double.isNaN(value) || Double.isInfinite(value))) {
+            throw new IllegalArgumentException("JSON forbids NaN and infinities: " + value);
+        }
+    }
+
+    private void push(boolean object) {
+        if (depth == objects.length) {
+            boolean[] grown = new boolean[depth * 2];
+            System.arraycopy(objects, 0, grown, 0, depth);
+            objects = grown;
+        }
+        objects[depth++] = object;
+    }
+
+    private void pop(boolean object) {
+        if (depth == 0 || objects[depth - 1] != object || deferredName != null) {
+            throw new IllegalStateException("Nesting problem.");
+        }
+        depth--;
+    }
+
+    /**
+     * 写出值之前的检查, 写出延迟的字段名
+     */
+    private void beforeValue() throws IOException {
+        if (!started) {
+            started = true;
+            if (strings != null) {
+                writeHead(MAJOR_TAG, TAG_STRINGREF_NAMESPACE);
+            }
+        } else if (depth == 0) {
+            throw new IllegalStateException("JSON must have only one top-level value.");
+        }
+        if (depth > 0 && objects[depth - 1]) {
+            if (deferredName == null) {
+                throw new IllegalStateException("Nesting problem.");
+            }
+            String name = deferredName;
+            deferredName = null;
+            writeString(name);
+        }
+    }
+
+    private void writeString(String value) throws IOException {
+        if (strings != null) {
+            Integer index = strings.get(value);
+            if (index != null) {
+                writeHead(MAJOR_TAG, TAG_STRINGREF);
+                writeHead(MAJOR_UNSIGNED, index);
+                return;
+            }
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeHead(MAJOR_TEXT, bytes.length);
+        writeBytes(bytes);
+        if (strings != null && bytes.length >= minRefLength(refCount)) {
+            strings.put(value, refCount++);
+        }
+    }
+
+    /**
+     * stringref规定的可以加入表中的最短长度, 短于该长度时引用不会比原字符串更短
+     * @param size 当前表的大小
+     * @return 字节数
+     */
+    static int minRefLength(long size) {
+        if (size < 24) {
+            return 3;
+        }
+        if (size < 256) {
+            return 4;
+        }
+        if (size < 65536) {
+            return 5;
+        }
+        if (size < 4294967296L) {
+            return 7;
+        }
+        return 11;
+    }
+
+    private void writeLong(long value) throws IOException {
+        if (value >= 0) {
+            writeHead(MAJOR_UNSIGNED, value);
+        } else {
+            writeHead(MAJOR_NEGATIVE, -1 - value);
+        }
+    }
+
+    private void writeFloat(float value) throws IOException {
+        ensure(5);
+        buf[pos++] = (byte) FLOAT32;
+        putInt(Float.floatToIntBits(value));
+    }
+
+    private void writeDouble(double value) throws IOException {
+        // 即使float可以精确表示也不缩短, 否则读取时无法区分float和double, 转为字符串的结果会不同
+        ensure(9);
+        buf[pos++] = (byte) FLOAT64;
+        long bits = Double.doubleToLongBits(value);
+        putInt((int) (bits >>> 32));
+        putInt((int) bits);
+    }
+
+    /**
+     * 写出任意精度的数字, 能用long表示的整数直接写出, 否则写为decimal fraction: 4([exponent, mantissa])
+     */
+    private void writeDecimal(BigDecimal value) throws IOException {
+        BigInteger mantissa = value.unscaledValue();
+        int exponent = -value.scale();
+        if (exponent == 0 && mantissa.bitLength() < 64) {
+            // 保留scale, 只有scale为0时才写为整数
+            writeLong(mantissa.longValue());
+            return;
+        }
+        writeHead(MAJOR_TAG, TAG_DECIMAL_FRACTION);
+        writeHead(4, 2);
+        writeLong(exponent);
+        if (mantissa.bitLength() < 64) {
+            writeLong(mantissa.longValue());
+        } else if (mantissa.signum() >= 0) {
+            writeHead(MAJOR_TAG, TAG_POSITIVE_BIGNUM);
+            writeByteString(mantissa.toByteArray());
+        } else {
+            writeHead(MAJOR_TAG, TAG_NEGATIVE_BIGNUM);
+            writeByteString(mantissa.negate().subtract(BigInteger.ONE).toByteArray());
+        }
+    }
+
+    /**
+     * 写出byte string, stringref规定byte string与text string共用一张表, 足够长时同样要占用下标(这里不引用它)
+     */
+    private void writeByteString(byte[] bytes) throws IOException {
+        writeHead(2, bytes.length);
+        writeBytes(bytes);
+        if (strings != null && bytes.length >= minRefLength(refCount)) {
+            refCount++;
+        }
+    }
+
+    /**
+     * 写出数据项的头部: 3位主类型+变长的参数(0~23直接写在头部, 否则使用1/2/4/8字节)
+     */
+    private void writeHead(int major, long value) throws IOException {
+        ensure(9);
+        int type = major << 5;
+        if (value < 24) {
+            buf[pos++] = (byte) (type | value);
+        } else if (value < 0x100) {
+            buf[pos++] = (byte) (type | 24);
+            buf[pos++] = (byte) value;
+        } else if (value < 0x10000) {
+            buf[pos++] = (byte) (type | 25);
+            buf[pos++] = (byte) (value >>> 8);
+            buf[pos++] = (byte) value;
+        } else if (value < 0x100000000L) {
+            buf[pos++] = (byte) (type | 26);
+            putInt((int) value);
+        } else {
+            buf[pos++] = (byte) (type | 27);
+            putInt((int) (value >>> 32));
+            putInt((int) value);
+        }
+    }
+
+    private void putInt(int value) {
+        buf[pos++] = (byte) (value >>> 24);
+        buf[pos++] = (byte) (value >>> 16);
+        buf[pos++] = (byte) (value >>> 8);
+        buf[pos++] = (byte) value;
+    }
+
+    private void writeByte(int b) throws IOException {
+        ensure(1);
+        buf[pos++] = (byte) b;
+    }
+
+    private void writeBytes(byte[] bytes) throws IOException {
+        if (bytes.length > buf.length - pos) {
+            out.write(buf, 0, pos);
+            pos = 0;
+            if (bytes.length > buf.length) {
+                out.write(bytes);
+                return;
+            }
+        }
+        System.arraycopy(bytes, 0, buf, pos, bytes.length);
+        pos += bytes.length;
+    }
+
+    private void ensure(int n) throws IOException {
+        if (buf.length - pos < n) {
+            out.write(buf, 0, pos);
+            pos = 0;
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package github.ag777.util.gson.model;
+
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * 逐个读取json数组元素的迭代器
+ * <p>
+ * 基于同一个JsonReader顺序读取, 每次{@link #next()}只解析一个元素, 内存占用只与单个元素的大小有关, 适合读取超大的json数组。
+ * 可以通过JSON Pointer(RFC 6901, 如/data/items)指定文档内的数组, 路径之前的内容会被跳过而不会解析成对象,
+ * 数组读完后不再读取文档的剩余部分。
+ * </p>
+ * <p>
+ * 读取过程中的io异常和格式异常分别以{@link JsonIOException}和{@link JsonSyntaxException}抛出。
+ * 使用完毕(包括提前结束)需要调用{@link #close()}关闭底层的输入流, 通过{@link #stream()}使用时关闭Stream即可。
+ * </p>
+ *
+ * <pre>{@code
+ * try (Stream<User> users = GsonUtils.get().streamArray(Paths.get("users.json"), "/data", User.class)) {
+ *     users.filter(User::isActive).forEach(this::save);
+ * }
+ * }</pre>
+ *
+ * @author ag777 <837915770@vip.qq.com>
+ * @version 2026/10/19
+ */
+public class JsonArrayIterator<T> implements Iterator<T>, Closeable {
+
+    private final JsonReader reader;
+    private final TypeAdapter<T> adapter;
+    private boolean finished;
+
+    /**
+     * 定位到数组并读取数组的开头
+     * @param reader reader
+     * @param pointer JSON Pointer, 为null或空串表示整个文档就是数组
+     * @param adapter 元素的解析器
+     * @throws IOException 读取异常
+     * @throws JsonSyntaxException 路径不存在或不是数组
+     */
+    public JsonArrayIterator(JsonReader reader, String pointer, TypeAdapter<T> adapter) throws IOException {
+        this.reader = reader;
+        this.adapter = adapter;
+        try {
+            locate(pointer);
+            if (reader.peek() == JsonToken.NULL) {
+                // 值为null时视为空数组
+                reader.nextNull();
+                finished = true;
+            } else {
+                reader.beginArray();
+            }
+        } catch (IllegalStateException | MalformedJsonException e) {
+            closeQuietly();
+            throw new JsonSyntaxException(e);
+        } catch (IOException | RuntimeException e) {
+            closeQuietly();
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (finished) {
+            return false;
+        }
+        try {
+            if (reader.hasNext()) {
+                return true;
+            }
+            reader.endArray();
+            closeReader();
+            return false;
+        } catch (MalformedJsonException | IllegalStateException e) {
+            throw new JsonSyntaxException(e);
+        } catch (IOException e) {
+            throw new JsonIOException(e);
+        }
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        try {
+            return adapter.read(reader);
+        } catch (MalformedJsonException | IllegalStateException e) {
+            throw new JsonSyntaxException(e);
+        } catch (IOException e) {
+            throw new JsonIOException(e);
+        }
+    }
+
+    /**
+     * @return 顺序流, 关闭流时关闭底层输入
+     */
+    public Stream<T> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED), false)
+                .onClose(this::closeQuietly);
+    }
+
+    @Override
+    public void close() throws IOException {
+        closeReader();
+    }
+
+    /**
+     * 构造方法中也会调用, 因此不能是可重写的方法
+     */
+    private void closeReader() throws IOException {
+        finished = true;
+        reader.close();
+    }
+
+    private void closeQuietly() {
+        try {
+            closeReader();
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * 按JSON Pointer逐级跳过无关的内容, 停在目标值之前
+     */
+    private void locate(String pointer) throws IOException {
+        if (pointer == null || pointer.isEmpty()) {
+            return;
+        }
+        if (pointer.charAt(0) != '/') {
+            throw new JsonSyntaxException("JSON Pointer必须以/开头: " + pointer);
+        }
+        int from = 1;
+        while (from <= pointer.length()) {
+            int to = pointer.indexOf('/', from);
+            if (to < 0) {
+                to = pointer.length();
+            }
+            String token = pointer.substring(from, to).replace("~1", "/").replace("~0", "~");
+            if (!enter(token)) {
+                throw new JsonSyntaxException("路径不存在: " + pointer.substring(0, to));
+            }
+            from = to + 1;
+        }
+    }
+
+    /**
+     * 进入当前值的某个字段或下标
+     * @return 是否找到
+     */
+    private boolean enter(String token) throws IOException {
+        JsonToken type = reader.peek();
+        if (type == JsonToken.BEGIN_OBJECT) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (reader.nextName().equals(token)) {
+                    return true;
+                }
+                reader.skipValue();
+            }
+            return false;
+        }
+        if (type == JsonToken.BEGIN_ARRAY) {
+            int index;
+            try {
+                index = Integer.parseInt(token);
+            } catch (NumberFormatException e) {
+                return false;
+            }
+            reader.beginArray();
+            for (int i = 0; i < index; i++) {
+                if (!reader.hasNext()) {
+                    return false;
+                }
+                reader.skipValue();
+            }
+            return reader.hasNext();
+        }
+        return false;
+    }
+}
@@ -0,0 +1,150 @@
+package github.ag777.util.gson.model;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonIOException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * 逐个写出json数组元素
+ * <p>
+ * 与{@link JsonArrayIterator}相对, 元素序列化后直接写入底层输出, 不会生成整个数组的json串, 内存占用只与单个元素的大小有关,
+ * 适合导出大量数据。创建时写出数组的开头, {@link #close()}时写出结尾并关闭底层输出, 没有写入任何元素时输出[]。
+ * </p>
+ * <p>
+ * 非线程安全。元素类型为null时按每个元素的实际类型序列化。
+ * </p>
+ *
+ * <pre>{@code
+ * try (JsonArrayWriter<User> writer = GsonUtils.get().arrayWriter(Paths.get("users.json.gz"), User.class, true)) {
+ *     writer.writeAll(userDao.streamAll());
+ * }
+ * }</pre>
+ *
+ * @author ag777 <837915770@vip.qq.com>
+ * @version 2026/10/19
+ */
+public class JsonArrayWriter<T> implements Closeable, Flushable {
+
+    private final Gson gson;
+    private final JsonWriter writer;
+    private final TypeAdapter<T> adapter;
+    private Class<?> lastClass;
+    private TypeAdapter<Object> lastAdapter;
+    private long count;
+    private boolean closed;
+
+    /**
+     * 写出数组的开头
+     * @param gson gson
+     * @param writer writer, 关闭时一并关闭
+     * @param type 元素类型, 为null时按每个元素的实际类型序列化
+     * @throws IOException 写出异常
+     */
+    @SuppressWarnings("unchecked")
+    public JsonArrayWriter(Gson gson, JsonWriter writer, Type type) throws IOException {
+        this.gson = gson;
+        this.writer = writer;
+        this.adapter = type == null ? null : (TypeAdapter<T>) gson.getAdapter(TypeToken.get(type));
+        try {
+            writer.beginArray();
+        } catch (IOException | RuntimeException e) {
+            writer.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 写出一个元素
+     * @param element 元素, 可以为null
+     * @return self
+     * @throws IOException 写出异常
+     */
+    public JsonArrayWriter<T> write(T element) throws IOException {
+        if (closed) {
+            throw new IllegalStateException("writer已关闭");
+        }
+        try {
+            if (element == null) {
+                writer.nullValue();
+            } else if (adapter != null) {
+                adapter.write(writer, element);
+            } else {
+                adapterOf(element.getClass()).write(writer, element);
+            }
+        } catch (JsonIOException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e);
+        }
+        count++;
+        return this;
+    }
+
+    /**
+     * 写出迭代器中剩余的所有元素
+     * @param iterator 迭代器
+     * @return self
+     * @throws IOException 写出异常
+     */
+    public JsonArrayWriter<T> writeAll(Iterator<? extends T> iterator) throws IOException {
+        while (iterator.hasNext()) {
+            write(iterator.next());
+        }
+        return this;
+    }
+
+    /**
+     * 写出流中的所有元素, 不会关闭流
+     * @param stream 流, 需要是顺序流
+     * @return self
+     * @throws IOException 写出异常
+     */
+    public JsonArrayWriter<T> writeAll(Stream<? extends T> stream) throws IOException {
+        return writeAll(stream.sequential().iterator());
+    }
+
+    /**
+     * @return 已写出的元素个数
+     */
+    public long count() {
+        return count;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    /**
+     * 写出数组的结尾并关闭底层输出(gzip时同时写出gzip的结尾), 重复调用无效果
+     * @throws IOException 写出异常
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            writer.endArray();
+        } finally {
+            writer.close();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private TypeAdapter<Object> adapterOf(Class<?> clazz) {
+        if (clazz != lastClass) {
+            lastAdapter = (TypeAdapter<Object>) gson.getAdapter(clazz);
+            lastClass = clazz;
+        }
+        return lastAdapter;
+    }
+}
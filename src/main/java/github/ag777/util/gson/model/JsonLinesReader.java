@@ -0,0 +1,344 @@
+package github.ag777.util.gson.model;
+
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.Strictness;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 并行读取JSON Lines(每行一个json)文件
+ * <p>
+ * 按chunkSize将文件切分为以换行符对齐的分块, 每个分块在线程池中按位置读取并逐行反序列化为对象,
+ * 再在调用线程中按顺序(ordered)或按完成顺序交给consumer。同时处理中的分块数有上限(并行度的2倍), 内存占用与文件大小无关。
+ * </p>
+ * <p>
+ * consumer总是在调用{@link #forEach(Consumer)}的线程中执行, 不需要线程安全。空行会被跳过,
+ * 解析失败的行默认抛出异常(包含该行在文件中的字节偏移), 开启skipErrors后跳过并计数。
+ * </p>
+ *
+ * <pre>{@code
+ * JsonLinesReader.Stats stats = GsonUtils.get().jsonLines(Paths.get("access.log.jsonl"), AccessLog.class)
+ *         .ordered(false)
+ *         .onProgress(s -> log.info("{} 行/秒", s.linesPerSecond()))
+ *         .forEach(this::handle);
+ * }</pre>
+ *
+ * @author ag777 <837915770@vip.qq.com>
+ * @version 2026/10/19
+ */
+public class JsonLinesReader<T> {
+
+    /** 默认分块大小 */
+    public static final int DEFAULT_CHUNK_SIZE = 1024 * 1024;
+    /** 查找换行符时每次读取的字节数 */
+    private static final int SCAN_SIZE = 64 * 1024;
+
+    private final Path path;
+    private final TypeAdapter<T> adapter;
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+    private ExecutorService pool = ForkJoinPool.commonPool();
+    private int parallelism = ForkJoinPool.commonPool().getParallelism();
+    private boolean ordered = true;
+    private boolean skipErrors;
+    private Consumer<Stats> progressListener;
+
+    /**
+     * @param path 文件路径(utf-8)
+     * @param adapter 每一行的解析器
+     */
+    public JsonLinesReader(Path path, TypeAdapter<T> adapter) {
+        this.path = path;
+        this.adapter = adapter;
+    }
+
+    /**
+     * @param chunkSize 分块大小(字节), 默认1MB, 实际分块会延长到下一个换行符; 同时处理中的分块解析出的对象都会驻留在内存中, 不宜过大
+     * @return self
+     */
+    public JsonLinesReader<T> chunkSize(int chunkSize) {
+        this.chunkSize = Math.max(1, chunkSize);
+        return this;
+    }
+
+    /**
+     * @param pool 解析分块的线程池, 默认ForkJoinPool.commonPool()
+     * @param parallelism 并行度, 同时处理中的分块数为其2倍
+     * @return self
+     */
+    public JsonLinesReader<T> pool(ExecutorService pool, int parallelism) {
+        this.pool = pool;
+        this.parallelism = Math.max(1, parallelism);
+        return this;
+    }
+
+    /**
+     * @param ordered 是否按文件中的顺序交给consumer, 默认true; 为false时先解析完的分块先交付, 吞吐更稳定
+     * @return self
+     */
+    public JsonLinesReader<T> ordered(boolean ordered) {
+        this.ordered = ordered;
+        return this;
+    }
+
+    /**
+     * @param skipErrors 是否跳过解析失败的行, 默认false
+     * @return self
+     */
+    public JsonLinesReader<T> skipErrors(boolean skipErrors) {
+        this.skipErrors = skipErrors;
+        return this;
+    }
+
+    /**
+     * @param progressListener 每交付一个分块回调一次当前的统计, 在调用线程中执行
+     * @return self
+     */
+    public JsonLinesReader<T> onProgress(Consumer<Stats> progressListener) {
+        this.progressListener = progressListener;
+        return this;
+    }
+
+    /**
+     * 读取整个文件, 读完或出错后返回
+     * @param consumer 对象的处理, 在当前线程中执行
+     * @return 统计
+     * @throws IOException 读取异常
+     * @throws JsonSyntaxException 某一行解析失败(未开启skipErrors时)
+     */
+    public Stats forEach(Consumer<? super T> consumer) throws IOException {
+        long start = System.nanoTime();
+        Counter counter = new Counter();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            BlockingQueue<CompletableFuture<Chunk<T>>> completed = new LinkedBlockingQueue<>();
+            Deque<CompletableFuture<Chunk<T>>> pending = new ArrayDeque<>();
+            int window = parallelism * 2;
+            long next = 0;
+            try {
+                while (next < size || !pending.isEmpty()) {
+                    while (next < size && pending.size() < window) {
+                        long from = next;
+                        long to = nextLineStart(channel, Math.min(size, from + chunkSize), size);
+                        CompletableFuture<Chunk<T>> future = CompletableFuture.supplyAsync(() -> parse(channel, from, to), pool);
+                        if (!ordered) {
+                            future.whenComplete((r, e) -> completed.add(future));
+                        }
+                        pending.add(future);
+                        next = to;
+                    }
+                    CompletableFuture<Chunk<T>> done;
+                    if (ordered) {
+                        done = pending.poll();
+                    } else {
+                        done = completed.take();
+                        pending.remove(done);
+                    }
+                    Chunk<T> chunk = join(done);
+                    for (T item : chunk.items) {
+                        consumer.accept(item);
+                    }
+                    counter.add(chunk);
+                    if (progressListener != null) {
+                        progressListener.accept(counter.toStats(System.nanoTime() - start));
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("读取被中断", e);
+            } finally {
+                for (CompletableFuture<Chunk<T>> future : pending) {
+                    future.cancel(false);
+                }
+            }
+        }
+        return counter.toStats(System.nanoTime() - start);
+    }
+
+    private static <T> Chunk<T> join(CompletableFuture<Chunk<T>> future) throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) cause).getCause();
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * 找到from(含)之后第一个换行符的下一个位置, 没有时返回文件末尾
+     */
+    private static long nextLineStart(FileChannel channel, long from, long size) throws IOException {
+        if (from >= size) {
+            return size;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_SIZE);
+        long position = from - 1;
+        while (position < size) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    /**
+     * 解析[from, to)范围内的行
+     */
+    private Chunk<T> parse(FileChannel channel, long from, long to) {
+        long length = to - from;
+        if (length > Integer.MAX_VALUE - 8) {
+            throw new JsonSyntaxException("单行过长, 偏移" + from);
+        }
+        byte[] bytes = new byte[(int) length];
+        try {
+            // 按位置读取, 多个线程可以同时读取同一个channel
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, from + buffer.position()) < 0) {
+                    throw new EOFException("文件在读取过程中被截断, 偏移" + (from + buffer.position()));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        List<T> items = new ArrayList<>();
+        long errors = 0;
+        int lineStart = 0;
+        if (from == 0 && bytes.length >= 3 && (bytes[0] & 0xff) == 0xef && (bytes[1] & 0xff) == 0xbb && (bytes[2] & 0xff) == 0xbf) {
+            // utf-8 bom
+            lineStart = 3;
+        }
+        while (lineStart < bytes.length) {
+            int lineEnd = lineStart;
+            while (lineEnd < bytes.length && bytes[lineEnd] != '\n') {
+                lineEnd++;
+            }
+            int end = lineEnd > lineStart && bytes[lineEnd - 1] == '\r' ? lineEnd - 1 : lineEnd;
+            if (!isBlank(bytes, lineStart, end)) {
+                try {
+                    // 与Gson.fromJson(String)一致: 宽松模式读取, 但一行只能有一个json
+                    JsonReader reader = new JsonReader(new StringReader(new String(bytes, lineStart, end - lineStart, StandardCharsets.UTF_8)));
+                    reader.setStrictness(Strictness.LENIENT);
+                    T item = adapter.read(reader);
+                    if (reader.peek() != JsonToken.END_DOCUMENT) {
+                        throw new JsonSyntaxException("一行中包含多个json");
+                    }
+                    items.add(item);
+                } catch (IOException | RuntimeException e) {
+                    if (!skipErrors) {
+                        throw new JsonSyntaxException("第" + (from + lineStart) + "字节处的行解析失败", e);
+                    }
+                    errors++;
+                }
+            }
+            lineStart = lineEnd + 1;
+        }
+        return new Chunk<>(items, errors, length);
+    }
+
+    private static boolean isBlank(byte[] bytes, int from, int to) {
+        for (int i = from; i < to; i++) {
+            byte b = bytes[i];
+            if (b != ' ' && b != '\t' && b != '\r') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private record Chunk<T>(List<T> items, long errors, long bytes) {
+    }
+
+    /**
+     * 只在调用线程中修改
+     */
+    private static class Counter {
+        private long lines;
+        private long errors;
+        private long bytes;
+        private long chunks;
+
+        void add(Chunk<?> chunk) {
+            lines += chunk.items.size();
+            errors += chunk.errors;
+            bytes += chunk.bytes;
+            chunks++;
+        }
+
+        Stats toStats(long elapsedNanos) {
+            return new Stats(lines, errors, bytes, chunks, elapsedNanos);
+        }
+    }
+
+    /**
+     * 读取统计
+     * @param lines 已交付的对象数
+     * @param errors 跳过的解析失败的行数
+     * @param bytes 已处理的字节数
+     * @param chunks 已处理的分块数
+     * @param elapsedNanos 耗时
+     */
+    public record Stats(long lines, long errors, long bytes, long chunks, long elapsedNanos) {
+
+        /**
+         * @return 每秒处理的行数
+         */
+        public double linesPerSecond() {
+            return elapsedNanos <= 0 ? 0 : lines * 1e9 / elapsedNanos;
+        }
+
+        /**
+         * @return 每秒处理的MB数
+         */
+        public double mbPerSecond() {
+            return elapsedNanos <= 0 ? 0 : bytes * 1e9 / elapsedNanos / (1024 * 1024);
+        }
+
+        /**
+         * @param unit 时间单位
+         * @return 耗时
+         */
+        public long elapsed(TimeUnit unit) {
+            return unit.convert(elapsedNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package github.ag777.util.gson.model;
+
+import com.google.gson.Strictness;
+import com.google.gson.internal.LinkedTreeMap;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import github.ag777.util.gson.GsonUtils;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 将gson的序列化结果直接构建为Map/List等基本结构的JsonWriter
+ * <p>
+ * 配合{@code Gson.toJson(Object, Type, JsonWriter)}使用, 对象图的遍历仍由gson完成(按类缓存的字段、命名策略、排除规则、
+ * 注册的TypeAdapter都会生效), 但不生成json串, 也不需要再解析一次。
+ * 构建的结果与将json串通过{@link GsonUtils.MapTypeAdapter}解析得到的一致:
+ * 对象为LinkedTreeMap(保持字段顺序), 数组为ArrayList, 数字按{@link GsonUtils.MapTypeAdapter#parseNumber(String)}的规则转换。
+ * </p>
+ *
+ * <pre>{@code
+ * PlainObjectWriter writer = new PlainObjectWriter();
+ * gson.toJson(user, User.class, writer);
+ * Map<String, Object> map = (Map<String, Object>) writer.get();
+ * }</pre>
+ *
+ * @author ag777 <837915770@vip.qq.com>
+ * @version 2026/10/19
+ */
+public class PlainObjectWriter extends JsonWriter {
+
+    private static final Writer UNWRITABLE_WRITER = new Writer() {
+        @Override
+        public void write(char[] buffer, int offset, int counter) {
+            throw new AssertionError();
+        }
+
+        @Override
+        public void flush() {
+            throw new AssertionError();
+        }
+
+        @Override
+        public void close() {
+            throw new AssertionError();
+        }
+    };
+
+    /** 未闭合的对象和数组 */
+    private final List<Object> stack = new ArrayList<>();
+    private String pendingName;
+    private Object product;
+    private boolean hasProduct;
+
+    public PlainObjectWriter() {
+        super(UNWRITABLE_WRITER);
+    }
+
+    /**
+     * @return 构建的结果, Map/List/String/Number/Boolean或null
+     * @throws IllegalStateException 还未写完
+     */
+    public Object get() {
+        if (!stack.isEmpty() || !hasProduct) {
+            throw new IllegalStateException("json未写完");
+        }
+        return product;
+    }
+
+    @Override
+    public JsonWriter beginArray() throws IOException {
+        List<Object> list = new ArrayList<>();
+        put(list);
+        stack.add(list);
+        return this;
+    }
+
+    @Override
+    public JsonWriter endArray() throws IOException {
+        if (stack.isEmpty() || pendingName != null || !(peek() instanceof List)) {
+            throw new IllegalStateException();
+        }
+        stack.remove(stack.size() - 1);
+        return this;
+    }
+
+    @Override
+    public JsonWriter beginObject() throws IOException {
+        Map<String, Object> map = new LinkedTreeMap<>();
+        put(map);
+        stack.add(map);
+        return this;
+    }
+
+    @Override
+    public JsonWriter endObject() throws IOException {
+        if (stack.isEmpty() || pendingName != null || !(peek() instanceof Map)) {
+            throw new IllegalStateException();
+        }
+        stack.remove(stack.size() - 1);
+        return this;
+    }
+
+    @Override
+    public JsonWriter name(String name) throws IOException {
+        if (name == null) {
+            throw new NullPointerException("name == null");
+        }
+        if (stack.isEmpty() || pendingName != null || !(peek() instanceof Map)) {
+            throw new IllegalStateException("Please begin an object before writing a name.");
+        }
+        pendingName = name;
+        return this;
+    }
+
+    @Override
+    public JsonWriter value(String value) throws IOException {
+        put(value);
+        return this;
+    }
+
+    @Override
+    public JsonWriter jsonValue(String value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        }
+        JsonReader reader = new JsonReader(new StringReader(value));
+        reader.setStrictness(Strictness.LENIENT);
+        put(new GsonUtils.MapTypeAdapter().read(reader));
+        return this;
+    }
+
+    @Override
+    public JsonWriter nullValue() throws IOException {
+        put(null);
+        return this;
+    }
+
+    @Override
+    public JsonWriter value(boolean value) throws IOException {
+        put(value);
+        return this;
+    }
+
+    @Override
+    public JsonWriter value(Boolean value) throws IOException {
+        put(value);
+        return this;
+    }
+
+    @Override
+    public JsonWriter value(float value) throws IOException {
+        checkFinite(value);
+        put(GsonUtils.MapTypeAdapter.parseNumber(Float.toString(value)));
+        return this;
+    }
+
+    @Override
+    public JsonWriter value(double value) throws IOException {
+        checkFinite(value);
+        // Double.toString的结果不会超过17位有效数字, 按parseNumber的规则一定得到Double
+        put(value);
+        return this;
+    }
+
+    @Override
+    public JsonWriter value(long value) throws IOException {
+        put(value == (int) value ? (Object) (int) value : (Object) value);
+        return this;
+    }
+
+    @Override
+    public JsonWriter value(Number value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        }
+        if (value instanceof Double || value instanceof Float) {
+            checkFinite(value.doubleValue());
+        }
+        put(GsonUtils.MapTypeAdapter.parseNumber(value.toString()));
+        return this;
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!stack.isEmpty()) {
+            throw new IOException("Incomplete document");
+        }
+    }
+
+    private Object peek() {
+        return stack.get(stack.size() - 1);
+    }
+
+    private void checkFinite(double value) {
+        if (getStrictness() != Strictness.LENIENT && (Double.isNaN(value) || Double.isInfinite(value))) {
+            throw new IllegalArgumentException("JSON forbids NaN and infinities: " + value);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void put(Object value) {
+        if (pendingName != null) {
+            if (value != null || getSerializeNulls()) {
+                ((Map<String, Object>) peek()).put(pendingName, value);
+            }
+            pendingName = null;
+        } else if (stack.isEmpty()) {
+            if (hasProduct) {
+                throw new IllegalStateException("JSON must have only one top-level value.");
+            }
+            product = value;
+            hasProduct = true;
+        } else if (peek() instanceof List) {
+            ((List<Object>) peek()).add(value);
+        } else {
+            throw new IllegalStateException();
+        }
+    }
+}
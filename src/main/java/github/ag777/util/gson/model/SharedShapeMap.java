@@ -0,0 +1,278 @@
+package github.ag777.util.gson.model;
+
+import com.google.gson.internal.LinkedTreeMap;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 共享键结构的只读map
+ * <p>
+ * 解析由大量结构相同的对象组成的json(如记录数组)时, 每个对象都创建LinkedTreeMap会为每个键值对分配一个树节点, 并各自持有一份键的字符串。
+ * 该map将对象拆分为两部分:
+ * <ul>
+ *     <li>{@link Shape}: 按顺序排列的键, 相同键序列的对象共享同一个Shape(通过键的转移关系全局复用)</li>
+ *     <li>值数组: 每个对象只持有一个与键一一对应的Object[]</li>
+ * </ul>
+ * 键会经过{@link #intern(String)}去重。Shape的键数、总数和每个Shape的分支数都有上限, 超出时(如键是动态的id)
+ * {@link Builder}改为构建普通的LinkedTreeMap, 不再为其创建Shape, 因此缓存的Shape占用的内存有上限。
+ * </p>
+ * <p>
+ * SharedShapeMap是只读的, 修改会抛出UnsupportedOperationException, 需要修改时复制一份, 如{@code new LinkedHashMap<>(map)}。
+ * 键的顺序与json中的顺序一致, 重复的键以后出现的值为准。
+ * </p>
+ *
+ * <pre>{@code
+ * SharedShapeMap.Builder builder = new SharedShapeMap.Builder();
+ * builder.put("id", 1).put("name", "a");
+ * Map<String, Object> map = builder.build();
+ * }</pre>
+ *
+ * @author ag777 <837915770@vip.qq.com>
+ * @version 2026/10/19
+ */
+public final class SharedShapeMap extends AbstractMap<String, Object> {
+
+    /** 键去重表的大小, 2的幂 */
+    private static final int INTERN_TABLE_SIZE = 4096;
+    /** 全局最多缓存的Shape数 */
+    private static final int MAX_SHAPES = 65536;
+    /** 单个Shape最多缓存的分支数 */
+    private static final int MAX_TRANSITIONS = 64;
+    /** 共享的Shape最多包含的键数, 键更多的对象通常不是固定结构的记录 */
+    private static final int MAX_SHAPE_KEYS = 32;
+    /** 键数超过该值时使用哈希表查找, 否则顺序比较 */
+    private static final int LINEAR_SEARCH_LIMIT = 8;
+
+    private static final String[] INTERNED = new String[INTERN_TABLE_SIZE];
+    private static final AtomicInteger SHAPE_COUNT = new AtomicInteger();
+    private static final Shape EMPTY = new Shape(new String[0]);
+
+    private final Shape shape;
+    private final Object[] values;
+    private Set<Entry<String, Object>> entrySet;
+
+    private SharedShapeMap(Shape shape, Object[] values) {
+        this.shape = shape;
+        this.values = values;
+    }
+
+    /**
+     * 键去重
+     * <p>
+     * 固定大小的哈希表, 冲突时直接替换, 因此内存占用有上限, 对于反复出现的少量键效果最好。线程安全(只替换不可变的引用)
+     * </p>
+     * @param key 键
+     * @return 与key相等的字符串, 优先返回之前出现过的实例
+     */
+    public static String intern(String key) {
+        int i = key.hashCode() & (INTERN_TABLE_SIZE - 1);
+        String cached = INTERNED[i];
+        if (cached != null && cached.equals(key)) {
+            return cached;
+        }
+        INTERNED[i] = key;
+        return key;
+    }
+
+    @Override
+    public int size() {
+        return values.length;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return values.length == 0;
+    }
+
+    @Override
+    public Object get(Object key) {
+        int i = key instanceof String ? shape.indexOf((String) key) : -1;
+        return i < 0 ? null : values[i];
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key instanceof String && shape.indexOf((String) key) >= 0;
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        Set<Entry<String, Object>> set = entrySet;
+        if (set == null) {
+            entrySet = set = new AbstractSet<>() {
+                @Override
+                public Iterator<Entry<String, Object>> iterator() {
+                    return new Iterator<>() {
+                        private int index;
+
+                        @Override
+                        public boolean hasNext() {
+                            return index < values.length;
+                        }
+
+                        @Override
+                        public Entry<String, Object> next() {
+                            if (index >= values.length) {
+                                throw new NoSuchElementException();
+                            }
+                            int i = index++;
+                            return new SimpleImmutableEntry<>(shape.keys[i], values[i]);
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return values.length;
+                }
+            };
+        }
+        return set;
+    }
+
+    /**
+     * 有序的键集合, 不可变
+     */
+    public static final class Shape {
+        private final String[] keys;
+        private final Map<String, Shape> transitions = new ConcurrentHashMap<>(4);
+        private volatile Map<String, Integer> index;
+
+        private Shape(String[] keys) {
+            this.keys = keys;
+        }
+
+        /**
+         * @param key 键
+         * @return 键的位置, 不存在时返回-1
+         */
+        int indexOf(String key) {
+            String[] keys = this.keys;
+            if (keys.length <= LINEAR_SEARCH_LIMIT) {
+                return linearIndexOf(key);
+            }
+            Map<String, Integer> map = index;
+            if (map == null) {
+                map = new HashMap<>(keys.length * 2);
+                for (int i = 0; i < keys.length; i++) {
+                    map.put(keys[i], i);
+                }
+                index = map;
+            }
+            Integer i = map.get(key);
+            return i == null ? -1 : i;
+        }
+
+        /**
+         * 顺序查找, 不会创建索引, 构建过程中的Shape只使用该方法
+         * @param key 键
+         * @return 键的位置, 不存在时返回-1
+         */
+        int linearIndexOf(String key) {
+            String[] keys = this.keys;
+            for (int i = 0; i < keys.length; i++) {
+                // 键一般经过去重, 大多数情况下引用相等
+                if (keys[i] == key) {
+                    return i;
+                }
+            }
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i].equals(key)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * @param key 键, 不能已经存在
+         * @return 在末尾追加键之后的Shape, 超出上限无法共享时返回null
+         */
+        Shape with(String key) {
+            Shape next = transitions.get(key);
+            if (next != null) {
+                return next;
+            }
+            if (keys.length >= MAX_SHAPE_KEYS || transitions.size() >= MAX_TRANSITIONS || SHAPE_COUNT.get() >= MAX_SHAPES) {
+                // 键过多或组合过多, 不再共享
+                return null;
+            }
+            String[] nextKeys = Arrays.copyOf(keys, keys.length + 1);
+            nextKeys[keys.length] = key;
+            Shape created = new Shape(nextKeys);
+            next = transitions.putIfAbsent(key, created);
+            if (next != null) {
+                return next;
+            }
+            SHAPE_COUNT.incrementAndGet();
+            return created;
+        }
+    }
+
+    /**
+     * 按顺序添加键值对, 构建SharedShapeMap, 非线程安全
+     * <p>
+     * 键数超过共享上限或Shape无法共享时, 改为构建普通的LinkedTreeMap
+     * </p>
+     */
+    public static final class Builder {
+        private Shape shape = EMPTY;
+        private Object[] values = new Object[8];
+        private int size;
+        /** 无法共享时使用的普通map, 不为null后不再使用shape和values */
+        private Map<String, Object> fallback;
+
+        /**
+         * @param key 键, 建议先经过{@link #intern(String)}
+         * @param value 值
+         * @return self
+         */
+        public Builder put(String key, Object value) {
+            if (fallback != null) {
+                fallback.put(key, value);
+                return this;
+            }
+            int i = shape.linearIndexOf(key);
+            if (i >= 0) {
+                values[i] = value;
+                return this;
+            }
+            Shape next = shape.with(key);
+            if (next == null) {
+                fallback = new LinkedTreeMap<>();
+                for (int j = 0; j < size; j++) {
+                    fallback.put(shape.keys[j], values[j]);
+                }
+                fallback.put(key, value);
+                shape = null;
+                values = null;
+                return this;
+            }
+            shape = next;
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+            return this;
+        }
+
+        /**
+         * @return 只读的SharedShapeMap, 无法共享时为普通的LinkedTreeMap; 之后不应再调用该builder
+         */
+        public Map<String, Object> build() {
+            if (fallback != null) {
+                return fallback;
+            }
+            return new SharedShapeMap(shape, size == values.length ? values : Arrays.copyOf(values, size));
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package github.ag777.util.http;
+
+import github.ag777.util.http.model.MyCall;
+import okhttp3.Call;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * 批量http请求执行器
+ * <p>
+ * 对一批输入(比如上千个id)逐个构造请求并发执行, 同时进行中的请求数不超过{@link #maxInFlight(int)}。
+ * 输入以流的方式按需读取, 不会一次性创建所有请求。结果可以按输入顺序交付, 也可以按完成顺序交付(类似{@link github.ag777.util.lang.thread.CompletionServiceHelper}),
+ * 交付回调始终在调用线程中执行, 无需考虑线程安全。
+ * </p>
+ * <p>
+ * 单个请求失败(构造请求或处理响应时抛出异常)不会中断整批, 异常记录在对应的{@link Result}中。
+ * 回调抛出异常、调用线程被中断或请求中抛出Error(如OutOfMemoryError)时, 会取消所有进行中的请求, Error会在调用线程中重新抛出。
+ * </p>
+ * <p>
+ * 请求默认在虚拟线程中同步执行, 因此不受OkHttp的Dispatcher对单个host的并发限制(默认5)影响, 并发度完全由maxInFlight控制。
+ * </p>
+ *
+ * <pre>{@code
+ * List<HttpBatch.Result<Long, Map<String, Object>>> results = HttpBatch.forMap(
+ *         (Long id) -> HttpUtils.getByClient(null, url, Map.of("id", id), null, null))
+ *     .maxInFlight(32)
+ *     .execute(ids.stream());
+ * for (HttpBatch.Result<Long, Map<String, Object>> result : results) {
+ *     if (result.isSuccess()) {
+ *         ...
+ *     }
+ * }
+ * }</pre>
+ *
+ * @param <I> 输入类型
+ * @param <R> 结果类型
+ * @author ag777 <837915770@vip.qq.com>
+ * @version 2026/10/19
+ */
+public class HttpBatch<I, R> {
+
+    private final Function<I, Call> callFactory;
+    private final CallHandler<R> handler;
+    private int maxInFlight = 16;
+    private ExecutorService executor;
+
+    /**
+     * @param callFactory 根据输入构造请求, 一般使用{@link HttpUtils}中的xxxByClient方法, client传null即使用共享的client
+     * @param handler 处理请求并转换结果
+     */
+    public HttpBatch(Function<I, Call> callFactory, CallHandler<R> handler) {
+        this.callFactory = Objects.requireNonNull(callFactory, "callFactory不能为空");
+        this.handler = Objects.requireNonNull(handler, "handler不能为空");
+    }
+
+    /**
+     * 结果转为map的批量执行器, 不论接口返回是否是200都去解析返回, 与{@link HttpEasy#getForMap(String, Map, Map)}一致
+     * @param callFactory 根据输入构造请求
+     * @return 批量执行器
+     * @param <I> 输入类型
+     */
+    public static <I> HttpBatch<I, Map<String, Object>> forMap(Function<I, Call> callFactory) {
+        return new HttpBatch<>(callFactory, call -> call.executeForMapForce().orElse(null));
+    }
+
+    /**
+     * 结果为字符串的批量执行器, 不论接口返回是否是200都去获取返回字符串
+     * @param callFactory 根据输入构造请求
+     * @return 批量执行器
+     * @param <I> 输入类型
+     */
+    public static <I> HttpBatch<I, String> forStr(Function<I, Call> callFactory) {
+        return new HttpBatch<>(callFactory, call -> call.executeForStrForce().orElse(null));
+    }
+
+    /**
+     * @param maxInFlight 同时进行中的最大请求数, 默认16
+     * @return self
+     */
+    public HttpBatch<I, R> maxInFlight(int maxInFlight) {
+        if (maxInFlight <= 0) {
+            throw new IllegalArgumentException("maxInFlight必须大于0");
+        }
+        this.maxInFlight = maxInFlight;
+        return this;
+    }
+
+    /**
+     * @param executor 执行请求的线程池, 默认每次执行时创建一个虚拟线程池并在结束时关闭; 外部传入的线程池不会被关闭
+     * @return self
+     */
+    public HttpBatch<I, R> executor(ExecutorService executor) {
+        this.executor = executor;
+        return this;
+    }
+
+    /**
+     * 执行并按输入顺序返回所有结果
+     * @param inputs 输入
+     * @return 结果列表, 与输入一一对应
+     * @throws InterruptedException 等待时被中断
+     */
+    public List<Result<I, R>> execute(Stream<I> inputs) throws InterruptedException {
+        List<Result<I, R>> results = new ArrayList<>();
+        executeOrdered(inputs, results::add);
+        return results;
+    }
+
+    /**
+     * 执行并按输入顺序交付结果
+     * <p>
+     * 等待交付的结果也计入进行中的请求数, 前面的请求较慢时不会无限制地继续发出后续请求
+     * </p>
+     * @param inputs 输入
+     * @param consumer 结果回调, 在调用线程中执行
+     * @throws InterruptedException 等待时被中断
+     */
+    public void executeOrdered(Stream<I> inputs, Consumer<Result<I, R>> consumer) throws InterruptedException {
+        run(inputs, consumer, true);
+    }
+
+    /**
+     * 执行并按完成顺序交付结果
+     * @param inputs 输入
+     * @param consumer 结果回调, 在调用线程中执行
+     * @throws InterruptedException 等待时被中断
+     */
+    public void executeUnordered(Stream<I> inputs, Consumer<Result<I, R>> consumer) throws InterruptedException {
+        run(inputs, consumer, false);
+    }
+
+    private void run(Stream<I> inputs, Consumer<Result<I, R>> consumer, boolean ordered) throws InterruptedException {
+        Objects.requireNonNull(consumer, "consumer不能为空");
+        ExecutorService pool = executor != null ? executor : Executors.newVirtualThreadPerTaskExecutor();
+        Run run = new Run(pool, consumer, ordered);
+        try (inputs) {
+            Iterator<I> it = inputs.iterator();
+            int index = 0;
+            while (it.hasNext()) {
+                while (run.outstanding >= maxInFlight) {
+                    run.awaitOne();
+                }
+                run.submit(index++, it.next());
+            }
+            while (run.outstanding > 0) {
+                run.awaitOne();
+            }
+        } catch (InterruptedException | RuntimeException | Error e) {
+            run.cancelAll();
+            throw e;
+        } finally {
+            if (pool != executor) {
+                pool.shutdown();
+            }
+        }
+    }
+
+    /**
+     * 单次批量执行的状态, 除completed和calls外只在调用线程中访问
+     */
+    private class Run {
+        private final ExecutorService pool;
+        private final Consumer<Result<I, R>> consumer;
+        private final boolean ordered;
+        private final BlockingQueue<Result<I, R>> completed = new LinkedBlockingQueue<>();
+        private final Map<Integer, Call> calls = new ConcurrentHashMap<>();
+        /** 按顺序交付时, 已完成但还不能交付的结果 */
+        private final Map<Integer, Result<I, R>> pending = new HashMap<>();
+        private int nextIndex;
+        private int outstanding;
+
+        Run(ExecutorService pool, Consumer<Result<I, R>> consumer, boolean ordered) {
+            this.pool = pool;
+            this.consumer = consumer;
+            this.ordered = ordered;
+        }
+
+        void submit(int index, I input) {
+            outstanding++;
+            Call call;
+            try {
+                call = callFactory.apply(input);
+            } catch (Exception e) {
+                completed.add(new Result<>(index, input, null, e));
+                return;
+            }
+            calls.put(index, call);
+            try {
+                pool.execute(() -> {
+                    Result<I, R> result;
+                    try {
+                        result = new Result<>(index, input, handler.handle(new MyCall(call)), null);
+                    } catch (Exception e) {
+                        result = new Result<>(index, input, null, e);
+                    } catch (Error e) {
+                        // 交给调用线程抛出, 中断整批
+                        result = new Result<>(index, input, null, e);
+                    } finally {
+                        calls.remove(index);
+                    }
+                    completed.add(result);
+                });
+            } catch (RejectedExecutionException e) {
+                calls.remove(index);
+                completed.add(new Result<>(index, input, null, e));
+            }
+        }
+
+        void awaitOne() throws InterruptedException {
+            Result<I, R> result = completed.take();
+            if (result.error() instanceof Error) {
+                throw (Error) result.error();
+            }
+            if (!ordered) {
+                outstanding--;
+                consumer.accept(result);
+                return;
+            }
+            pending.put(result.index(), result);
+            while ((result = pending.remove(nextIndex)) != null) {
+                nextIndex++;
+                outstanding--;
+                consumer.accept(result);
+            }
+        }
+
+        void cancelAll() {
+            for (Call call : calls.values()) {
+                call.cancel();
+            }
+        }
+    }
+
+    /**
+     * 处理请求并转换结果
+     * @param <R> 结果类型
+     */
+    @FunctionalInterface
+    public interface CallHandler<R> {
+        R handle(MyCall call) throws Exception;
+    }
+
+    /**
+     * 单个请求的结果
+     * @param index 在输入中的序号, 从0开始
+     * @param input 输入
+     * @param value 结果, 失败时为null
+     * @param error 异常, 成功时为null
+     */
+    public record Result<I, R>(int index, I input, R value, Throwable error) {
+
+        /**
+         * @return 是否成功
+         */
+        public boolean isSuccess() {
+            return error == null;
+        }
+
+        /**
+         * @return 结果
+         */
+        public Optional<R> optional() {
+            return Optional.ofNullable(value);
+        }
+    }
+}
@@ -18,7 +18,7 @@ import java.util.Optional;
  * </p>
  * 
  * @author ag777
- * @version create on 2018年03月30日,last modify at 2025年08月08日
+ * @version create on 2018年03月30日,last modify at 2026年10月19日
  */
 public class HttpEasy {
 	
@@ -81,6 +81,24 @@ public class HttpEasy {
 		return callForStrForce(call);
 	}
 
+	/**
+	 * post请求向服务端发送对象(序列化为json)
+	 * <p>
+	 * 	对象直接序列化到请求流中,不需要先调用GsonUtils.toJson;不论接口返回是否是200都去获取返回字符串
+	 * </p>
+	 *
+	 * @param url url
+	 * @param body 请求体对象
+	 * @param paramMap 放在url里的参数
+	 * @param headerMap 请求头
+	 * @return 字符串
+	 * @throws IllegalArgumentException 一般为url异常，比如没有http(s):\\的前缀
+	 */
+	public static <K, V>Optional<String> postObject(String url, Object body, Map<K, V> paramMap, Map<K,V> headerMap) throws IllegalArgumentException {
+		Call call = HttpUtils.postObjectByClient(null, url, body, paramMap, headerMap, null);
+		return callForStrForce(call);
+	}
+
 	/**
 	 * post请求向服务端发送字符串
 	 * <p>
@@ -285,6 +303,24 @@ public class HttpEasy {
 		return callForStrForce(call);
 	}
 
+	/**
+	 * put请求向服务端发送对象(序列化为json)
+	 * <p>
+	 * 	不论接口返回是否是200都去获取返回字符串
+	 * </p>
+	 *
+	 * @param url url
+	 * @param body 请求体对象
+	 * @param paramMap 放在url里的参数
+	 * @param headerMap 请求头
+	 * @return 字符串
+	 * @throws IllegalArgumentException 一般为url异常，比如没有http(s):\\的前缀
+	 */
+	public static <K, V>Optional<String> putObject(String url, Object body, Map<K, V> paramMap, Map<K,V> headerMap) throws IllegalArgumentException {
+		Call call = HttpUtils.putObjectByClient(null, url, body, paramMap, headerMap, null);
+		return callForStrForce(call);
+	}
+
 	/**
 	 * put请求向服务端发送字符串
 	 * <p>
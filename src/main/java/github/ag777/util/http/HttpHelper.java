@@ -1,5 +1,6 @@
 package github.ag777.util.http;
 
+import github.ag777.util.http.model.Deadline;
 import github.ag777.util.http.model.MyCall;
 import github.ag777.util.http.model.ProgressListener;
 import okhttp3.*;
@@ -7,6 +8,7 @@ import okhttp3.*;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 有关http请求的方法类(二次封装okhttp3)
@@ -15,11 +17,12 @@ import java.util.Map;
  * </p>
  * 
  * @author ag777
- * @version create on 2018年03月30日,last modify at 2025年08月18日
+ * @version create on 2018年03月30日,last modify at 2026年10月19日
  */
 public class HttpHelper {
 
 	private static HttpHelper mInstance = null;
+	private static volatile OkHttpClient mSingleFlightClient;
 
 	public static HttpHelper getInstance() {
 		if (mInstance == null) {
@@ -34,6 +37,8 @@ public class HttpHelper {
 	
 	private final OkHttpClient client;
 	private final Object tag;
+	/** 每个请求的超时时间, 0表示使用client的配置 */
+	private final long callTimeoutNanos;
 
 
 
@@ -47,11 +52,16 @@ public class HttpHelper {
 	 * @param tag 请求的统一tag,用于请求分组管理,可以传null
 	 */
 	public HttpHelper(OkHttpClient client, Object tag) {
+		this(client, tag, 0);
+	}
+
+	private HttpHelper(OkHttpClient client, Object tag, long callTimeoutNanos) {
 		if(client == null) {
 			client = HttpUtils.client();
 		}
 		this.client = client;
 		this.tag = tag;
+		this.callTimeoutNanos = callTimeoutNanos;
 	}
 
 	/**
@@ -87,6 +97,54 @@ public class HttpHelper {
 		return new HttpHelper(null, tag);
 	}
 
+	/**
+	 * 返回合并相同并发请求的HttpHelper
+	 * <p>
+	 * 相同的GET/HEAD请求(url+参数+请求头均相同)同时进行时只发出一次，其余请求共享同一份响应。
+	 * 所有通过该方法获取的HttpHelper共用同一个client(与HttpUtils.client()共享连接池)，因此不同tag之间的相同请求也会合并
+	 * </p>
+	 * @param tag tag
+	 * @return HttpHelper
+	 */
+	public static HttpHelper singleFlight(Object tag) {
+		if (mSingleFlightClient == null) {
+			synchronized (HttpHelper.class) {
+				if (mSingleFlightClient == null) {
+					mSingleFlightClient = HttpUtils.builderWithSingleFlight(HttpUtils.client().newBuilder()).build();
+				}
+			}
+		}
+		return new HttpHelper(mSingleFlightClient, tag);
+	}
+
+	/**
+	 * 返回每个请求都带超时时间的HttpHelper
+	 * <p>
+	 * 超时从请求发出开始计时,覆盖整个调用过程(含重试),通过Call.timeout()实现,与当前对象共用同一个client。
+	 * 单个请求可以通过{@link MyCall#timeout(long, TimeUnit)}/{@link MyCall#deadline(Deadline)}进一步缩短,
+	 * 当前线程绑定了截止时间(见{@link Deadline#bind()})时取较早的一个
+	 * </p>
+	 * @param timeout 超时时长,小于等于0表示不设置
+	 * @param unit 时间单位
+	 * @return HttpHelper
+	 */
+	public HttpHelper withTimeout(long timeout, TimeUnit unit) {
+		return new HttpHelper(client, tag, unit.toNanos(Math.max(0, timeout)));
+	}
+
+	/**
+	 * 返回使用不同读取超时的HttpHelper
+	 * <p>
+	 * 通过client.newBuilder()派生新的client,与原client共用连接池和线程池,不需要通过{@link HttpUtils#readTimeout}重新构建
+	 * </p>
+	 * @param timeout 读取超时
+	 * @param unit 时间单位
+	 * @return HttpHelper
+	 */
+	public HttpHelper withReadTimeout(long timeout, TimeUnit unit) {
+		return new HttpHelper(client.newBuilder().readTimeout(timeout, unit).build(), tag, callTimeoutNanos);
+	}
+
 	/**
 	 * 关闭所有请求
 	 */
@@ -109,7 +167,15 @@ public class HttpHelper {
 	 */
 	public MyCall fetch(Request request) throws IllegalArgumentException {
 		Call call = HttpUtils.call(request, client);
-		return new MyCall(call);
+		return newCall(call);
+	}
+
+	private MyCall newCall(Call call) {
+		MyCall myCall = new MyCall(call);
+		if (callTimeoutNanos > 0) {
+			myCall.timeout(callTimeoutNanos, TimeUnit.NANOSECONDS);
+		}
+		return myCall;
 	}
 
 	/*===================其他方法===========================*/
@@ -133,7 +199,7 @@ public class HttpHelper {
 	
 	public <K, V> MyCall get(String url, Map<K, V> paramMap, Map<K,V> headerMap) throws IllegalArgumentException {
 		Call call = HttpUtils.getByClient(client, url, paramMap, headerMap, tag);
-		return new MyCall(call);
+		return newCall(call);
 	}
 	
 	/**
@@ -145,24 +211,38 @@ public class HttpHelper {
 	 */
 	public MyCall get(String url, Headers headers) throws IllegalArgumentException {
 		Call call = HttpUtils.getByClient(client, url, headers, tag);
-		return new MyCall(call);
+		return newCall(call);
 	}
 	
 	/**===================POST请求===========================*/
 	
 	public <K,V> MyCall postJson(String url, String json, Map<K, V> paramMap, Map<K,V> headerMap) throws IllegalArgumentException {
 		Call call = HttpUtils.postJsonByClient(client, url, json, paramMap, headerMap, tag);
-		return new MyCall(call);
+		return newCall(call);
+	}
+
+	/**
+	 * post请求,将对象直接序列化为json请求体,不生成中间的json串
+	 * @param url url
+	 * @param body 请求体对象
+	 * @param paramMap 放在url里的参数
+	 * @param headerMap headerMap
+	 * @return MyCall
+	 * @throws IllegalArgumentException 一般为url异常，比如没有http(s):\\的前缀
+	 */
+	public <K,V> MyCall postObject(String url, Object body, Map<K, V> paramMap, Map<K,V> headerMap) throws IllegalArgumentException {
+		Call call = HttpUtils.postObjectByClient(client, url, body, paramMap, headerMap, tag);
+		return newCall(call);
 	}
 
 	public <K,V> MyCall postText(String url, String text, Map<K, V> paramMap, Map<K,V> headerMap) throws IllegalArgumentException {
 		Call call = HttpUtils.postTextByClient(client, url, text, paramMap, headerMap, tag);
-		return new MyCall(call);
+		return newCall(call);
 	}
 	
 	public <K,V> MyCall post(String url, Map<K, V> paramMap, Map<K,V> headerMap) throws IllegalArgumentException {
 		Call call = HttpUtils.postByClient(client, url, paramMap, headerMap, tag);
-		return new MyCall(call);
+		return newCall(call);
 	}
 	
 	/**
@@ -175,7 +255,7 @@ public class HttpHelper {
 	 */
 	public MyCall post(String url, RequestBody body, Headers headers) throws IllegalArgumentException {
 		Call call = HttpUtils.postByClient(client, url, body, headers, tag);
-		return new MyCall(call);
+		return newCall(call);
 	}
 
 	/*===================DELETE请求===========================*/
@@ -189,7 +269,7 @@ public class HttpHelper {
 	 */
 	public <K,V> MyCall delete(String url, Map<K, V> paramMap, Map<K,V> headerMap) throws IllegalArgumentException {
 		Call call = HttpUtils.deleteByClient(client, url, paramMap, headerMap, tag);
-		return new MyCall(call);
+		return newCall(call);
 	}
 
 	/**
@@ -205,7 +285,7 @@ public class HttpHelper {
 	 */
 	public <K,V> MyCall deleteJson(String url, String json, Map<K, V> paramMap, Map<K,V> headerMap) throws IllegalArgumentException {
 	    Call call = HttpUtils.deleteJsonByClient(client, url, json, paramMap, headerMap, tag);
-	    return new MyCall(call);
+	    return newCall(call);
 	}
 
 	/**
@@ -221,19 +301,33 @@ public class HttpHelper {
 	 */
 	public <K,V> MyCall deleteText(String url, String text, Map<K, V> paramMap, Map<K,V> headerMap) throws IllegalArgumentException {
 	    Call call = HttpUtils.deleteTextByClient(client, url, text, paramMap, headerMap, tag);
-	    return new MyCall(call);
+	    return newCall(call);
 	}
 	
 	/**===================PUT请求===========================*/
 
 	public <K,V> MyCall putJson(String url, String json, Map<K, V> paramMap, Map<K,V> headerMap) throws IllegalArgumentException {
 		Call call = HttpUtils.putJsonByClient(client, url, json, paramMap, headerMap, tag);
-		return new MyCall(call);
+		return newCall(call);
+	}
+
+	/**
+	 * put请求,将对象直接序列化为json请求体,不生成中间的json串
+	 * @param url url
+	 * @param body 请求体对象
+	 * @param paramMap 放在url里的参数
+	 * @param headerMap headerMap
+	 * @return MyCall
+	 * @throws IllegalArgumentException 一般为url异常，比如没有http(s):\\的前缀
+	 */
+	public <K,V> MyCall putObject(String url, Object body, Map<K, V> paramMap, Map<K,V> headerMap) throws IllegalArgumentException {
+		Call call = HttpUtils.putObjectByClient(client, url, body, paramMap, headerMap, tag);
+		return newCall(call);
 	}
 
 	public <K,V> MyCall putText(String url, String text, Map<K, V> paramMap, Map<K,V> headerMap) throws IllegalArgumentException {
 		Call call = HttpUtils.putTextByClient(client, url, text, paramMap, headerMap, tag);
-		return new MyCall(call);
+		return newCall(call);
 	}
 
 	/**
@@ -246,7 +340,7 @@ public class HttpHelper {
 	 */
 	public <K,V> MyCall put(String url, Map<K, V> paramMap, Map<K,V> headerMap) throws IllegalArgumentException {
 		Call call = HttpUtils.putByClient(client, url, paramMap, headerMap, tag);
-		return new MyCall(call);
+		return newCall(call);
 	}
 
 	/*===================HEAD请求===========================*/
@@ -260,7 +354,7 @@ public class HttpHelper {
 	 */
 	public <K,V> MyCall head(String url, Map<K, V> paramMap, Map<K, V> headerMap) throws IllegalArgumentException {
 		Call call = HttpUtils.headByClient(client, url, paramMap, headerMap, tag);
-		return new MyCall(call);
+		return newCall(call);
 	}
 
 	/*===================文件上传下载=========================== */
@@ -277,7 +371,7 @@ public class HttpHelper {
 	 */
     public <K, V> MyCall downLoad(String url, Map<K, V> paramMap, Map<K,V> headerMap) throws IllegalArgumentException {
         Call call = HttpUtils.getByClient(this.client, url, paramMap, headerMap, tag);
-        return new MyCall(call);
+        return newCall(call);
     }
 	
 	/**
@@ -293,7 +387,7 @@ public class HttpHelper {
 	 */
 	public <K, V> MyCall postMultiFiles(String url, String fileKey, File[] files, Map<K, V> params, Map<K, V> headerMap) throws IllegalArgumentException, FileNotFoundException {
 		Call call = HttpUtils.postMultiFilesByClient(client, url, fileKey, files, params, headerMap, tag);
-		return new MyCall(call);
+		return newCall(call);
 	}
 
 	/**
@@ -311,7 +405,7 @@ public class HttpHelper {
     public <K, V> MyCall postMultiFiles(String url, String fileKey, File[] files, Map<K, V> params,
             Map<K, V> headerMap, ProgressListener listener) throws IllegalArgumentException, FileNotFoundException {
 		Call call = HttpUtils.postMultiFilesByClient(client, url, fileKey, files, params, headerMap, tag, listener);
-		return new MyCall(call);
+		return newCall(call);
 	}
 	
 	/**
@@ -327,7 +421,7 @@ public class HttpHelper {
 	 */
 	public <K, V> MyCall postMultiFiles(String url, String fileKey, Map<File, String> fileMap, Map<K, V> params, Map<K, V> headerMap) throws IllegalArgumentException, FileNotFoundException {
 		Call call = HttpUtils.postMultiFilesByClient(client, url, fileMap, fileKey, params, headerMap, tag);
-		return new MyCall(call);
+		return newCall(call);
 	}
 
 	/**
@@ -345,6 +439,6 @@ public class HttpHelper {
     public <K, V> MyCall postMultiFiles(String url, String fileKey, Map<File, String> fileMap, Map<K, V> params,
             Map<K, V> headerMap, ProgressListener listener) throws IllegalArgumentException, FileNotFoundException {
 		Call call = HttpUtils.postMultiFilesByClient(client, url, fileMap, fileKey, params, headerMap, tag, listener);
-		return new MyCall(call);
+		return newCall(call);
 	}
 }
\ No newline at end of file
@@ -4,8 +4,12 @@ import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import github.ag777.util.file.FileUtils;
 import github.ag777.util.gson.GsonUtils;
+import github.ag777.util.http.dns.CachingDns;
+import github.ag777.util.http.interceptor.CacheInterceptor;
+import github.ag777.util.http.interceptor.CompressionInterceptor;
+import github.ag777.util.http.interceptor.SingleFlightInterceptor;
+import github.ag777.util.http.metrics.HttpMetrics;
 import github.ag777.util.http.model.*;
-import github.ag777.util.lang.ObjectUtils;
 import github.ag777.util.lang.StringUtils;
 import github.ag777.util.lang.collection.ArrayUtils;
 import github.ag777.util.lang.collection.ListUtils;
@@ -16,13 +20,10 @@ import okhttp3.Request.Builder;
 
 import javax.net.ssl.X509TrustManager;
 import java.io.*;
-import java.lang.reflect.Array;
 import java.lang.reflect.Type;
 import java.net.InetSocketAddress;
 import java.net.Proxy;
 import java.net.SocketTimeoutException;
-import java.net.URLEncoder;
-import java.nio.charset.StandardCharsets;
 import java.security.KeyManagementException;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
@@ -53,7 +54,7 @@ import java.util.concurrent.TimeUnit;
  * </ul>
  *
  * @author ag777
- * @version 最后修改于 2025年08月18日
+ * @version 最后修改于 2026年10月19日
  */
 public class HttpUtils {
 	
@@ -271,6 +272,95 @@ public class HttpUtils {
 		return builder.cookieJar(new MyCookieJar());
 	}
 
+	/**
+	 * 构造带响应缓存的okhttpBuilder
+	 * <p>
+	 * 内存缓存作为应用拦截器在最外层, 未命中时再走OkHttp自带的磁盘缓存
+	 * </p>
+	 * @param builder builder
+	 * @param memoryCache 内存缓存, 为null则不使用内存缓存
+	 * @param directory 磁盘缓存目录, 为null则不使用磁盘缓存
+	 * @param maxDiskSize 磁盘缓存最大字节数
+	 * @return OkHttpClient.Builder
+	 */
+	public static OkHttpClient.Builder builderWithCache(OkHttpClient.Builder builder, CacheInterceptor memoryCache, File directory, long maxDiskSize) {
+		if(builder == null) {
+			builder = defaultBuilder();
+		}
+		if(memoryCache != null) {
+			builder.addInterceptor(memoryCache);
+		}
+		if(directory != null) {
+			builder.cache(new Cache(directory, maxDiskSize));
+		}
+		return builder;
+	}
+
+	/**
+	 * 构造合并相同并发请求的okhttpBuilder
+	 * <p>
+	 * 相同的GET/HEAD请求同时进行时只发出一次，其余请求共享同一份响应，详见{@link SingleFlightInterceptor}
+	 * </p>
+	 * @param builder builder
+	 * @return OkHttpClient.Builder
+	 */
+	public static OkHttpClient.Builder builderWithSingleFlight(OkHttpClient.Builder builder) {
+		if(builder == null) {
+			builder = defaultBuilder();
+		}
+		return builder.addInterceptor(new SingleFlightInterceptor());
+	}
+
+	/**
+	 * 构造带指标采集的okhttpBuilder
+	 * <p>
+	 * 按路由记录dns、建连、tls握手、请求/响应各阶段耗时以及连接复用率和上下行字节数,
+	 * 会替换builder上已有的EventListener
+	 * </p>
+	 * @param builder builder
+	 * @param metrics 指标采集器
+	 * @return OkHttpClient.Builder
+	 */
+	public static OkHttpClient.Builder builderWithMetrics(OkHttpClient.Builder builder, HttpMetrics metrics) {
+		if(builder == null) {
+			builder = defaultBuilder();
+		}
+		return builder.eventListenerFactory(metrics);
+	}
+
+	/**
+	 * 构造使用指定域名解析的okhttpBuilder
+	 * <p>
+	 * 一般配合{@link CachingDns}使用, 避免每次建立新连接都重新解析域名
+	 * </p>
+	 * @param builder builder
+	 * @param dns 域名解析
+	 * @param fastFallback 是否并行尝试ipv6/ipv4地址建连(happy eyeballs), 先连上的胜出
+	 * @return OkHttpClient.Builder
+	 */
+	public static OkHttpClient.Builder builderWithDns(OkHttpClient.Builder builder, Dns dns, boolean fastFallback) {
+		if(builder == null) {
+			builder = defaultBuilder();
+		}
+		return builder.dns(dns).fastFallback(fastFallback);
+	}
+
+	/**
+	 * 构造带压缩的okhttpBuilder
+	 * <p>
+	 * 请求体超过阈值时压缩后发送, 并协商、解压gzip/br/zstd编码的响应体
+	 * </p>
+	 * @param builder builder
+	 * @param compression 压缩拦截器, 为null则使用默认配置(gzip, 1KB以上压缩)
+	 * @return OkHttpClient.Builder
+	 */
+	public static OkHttpClient.Builder builderWithCompression(OkHttpClient.Builder builder, CompressionInterceptor compression) {
+		if(builder == null) {
+			builder = defaultBuilder();
+		}
+		return builder.addInterceptor(compression != null ? compression : new CompressionInterceptor());
+	}
+
 	/**
 	 * 构造带代理的okhttpBuilder
 	 * @param builder builder
@@ -437,6 +527,24 @@ public class HttpUtils {
 		return postByClient(client, getGetUrl(url, paramMap), requestBody, getHeaders(headerMap), tag);
 	}
 
+	/**
+	 * post请求,将对象序列化为json作为请求体
+	 * <p>
+	 * 发送时直接序列化到请求流中,不生成中间的json串,见{@link JsonRequestBody}
+	 * </p>
+	 * @param client client
+	 * @param url url
+	 * @param body 请求体对象,会通过GsonUtils.get()序列化
+	 * @param paramMap 放在url里的参数
+	 * @param headerMap headerMap
+	 * @param tag tag
+	 * @return Call
+	 * @throws IllegalArgumentException 一般为url异常，比如没有http(s):\\的前缀
+	 */
+	public static <K,V>Call postObjectByClient(OkHttpClient client, String url, Object body, Map<K, V> paramMap, Map<K,V> headerMap, Object tag) throws IllegalArgumentException {
+		return postByClient(client, getGetUrl(url, paramMap), new JsonRequestBody(body), getHeaders(headerMap), tag);
+	}
+
 	/**
 	 * 发送 POST 请求，发送文本数据
 	 *
@@ -652,6 +760,22 @@ public class HttpUtils {
 		return putByClient(client, getGetUrl(url, paramMap), requestBody, getHeaders(headerMap), tag);
 	}
 
+	/**
+	 * put请求,将对象序列化为json作为请求体
+	 * @param client client
+	 * @param url url
+	 * @param body 请求体对象,会通过GsonUtils.get()序列化
+	 * @param paramMap 放在url里的参数
+	 * @param headerMap headerMap
+	 * @param tag tag
+	 * @return Call
+	 * @throws IllegalArgumentException 一般为url异常，比如没有http(s):\\的前缀
+	 * @see #postObjectByClient
+	 */
+	public static <K,V>Call putObjectByClient(OkHttpClient client, String url, Object body, Map<K, V> paramMap, Map<K,V> headerMap, Object tag) throws IllegalArgumentException {
+		return putByClient(client, getGetUrl(url, paramMap), new JsonRequestBody(body), getHeaders(headerMap), tag);
+	}
+
 	/**
 	 * put请求
 	 *
@@ -734,14 +858,37 @@ public class HttpUtils {
 	
 	/**
 	 * 发送请求并得到返回
+	 * <p>
+	 * 发送前将请求tag及当前线程绑定的截止时间(见{@link Deadline})设置到call上
+	 * </p>
 	 * @param call call
 	 * @return Response
 	 * @throws SocketTimeoutException 一般为连不上接口
 	 * @throws IOException 其他异常
 	 */
 	public static Response execute(Call call) throws SocketTimeoutException, IOException {
+		Deadline.applyTo(call, null);
 		return call.execute();
 	}
+
+	/**
+	 * 异步发送请求
+	 * <p>
+	 * 与{@link #execute(Call)}一样,发送前将请求tag及当前线程绑定的截止时间(见{@link Deadline})设置到call上,
+	 * 截止时间在提交时确定,之后在Dispatcher的线程中执行也不会丢失。已超过截止时间时直接回调onFailure
+	 * </p>
+	 * @param call call
+	 * @param callback 回调,在Dispatcher的线程中执行
+	 */
+	public static void enqueue(Call call, Callback callback) {
+		try {
+			Deadline.applyTo(call, null);
+		} catch (Deadline.DeadlineExceededException e) {
+			callback.onFailure(call, e);
+			return;
+		}
+		call.enqueue(callback);
+	}
 	
 	/**
 	 * 从返回体重获取返回码
@@ -1194,19 +1341,18 @@ public class HttpUtils {
 	 * @return url
 	 */
 	private static <K, V>String getGetUrl(String url, Map<K, V> params) {
-		if(params == null || StringUtils.isBlank(url)) {
+		if(MapUtils.isEmpty(params) || StringUtils.isBlank(url)) {
 			return url;
 		}
-		String paramStr = getParamStr(params, false);	//get请求不错encode测试也没出现问题
-
-		if(!paramStr.isEmpty()) {
-			return url+"?"+paramStr;
+		StringBuilder sb = new StringBuilder(url.length() + params.size() * 16).append(url);
+		int baseLength = sb.length();
+		sb.append(url.indexOf('?') == -1 ? '?' : '&');
+		if(!FormEncoder.appendParams(sb, params, false)) {	//get请求不错encode测试也没出现问题
+			sb.setLength(baseLength);
 		}
-		return url;
+		return sb.toString();
 	}
 
-
-
 	/**
 	 * 通过参数构建请求体
 	 * <p>
@@ -1218,9 +1364,8 @@ public class HttpUtils {
 	 * @return 请求体
 	 */
 	private static <K,V>RequestBody getRequestBody(Map<K, V> params) {
-		String paramStr = getParamStr(params, true);
-		if(!paramStr.isEmpty()) {
-			return RequestBody.create(paramStr,  FORM_CONTENT_TYPE);
+		if(!MapUtils.isEmpty(params)) {
+			return new FormRequestBody(params);
 		}
 		return  new FormBody.Builder().build();
 	}
@@ -1313,67 +1458,5 @@ public class HttpUtils {
 			}
 		}
 	}
-	
-	/**
-	 * 
-	 * @param params 参数表
-	 * @return 拼接处的参数字符串
-	 */
-	private static <K, V> String getParamStr(Map<K, V> params, boolean needEncode) {
-		if(params == null) {
-			return "";
-		}
-		StringBuilder sb = null;
-		for (K k : params.keySet()) {
-			if (sb == null) {
-				sb = new StringBuilder();
-			} else {
-				sb.append('&');
-			}
-			V value = params.get(k);
-			if (value == null) {
-				sb.append(k).append('=');
-			} else if (ObjectUtils.isArray(value)) { // 数组
-				int length = Array.getLength(value);
-				for (int i = 0; i < length; i++) {
-					Object item = Array.get(value, i);
-					sb.append(k).append('=').append(encode(item, needEncode)).append('&');
-				}
-				sb.setLength(sb.length() - 1);    //不论列表是否为空都需要删除最后一个&号
-			} else if (value instanceof Collection) { // 列表
-				for (Object item : ((Collection<?>) value)) {
-					sb.append(k).append('=').append(encode(item, needEncode)).append('&');
-				}
-				sb.setLength(sb.length() - 1);    //不论列表是否为空都需要删除最后一个&号
-			} else { // 其余的通通转String,后续可加分支拓展
-				sb.append(k).append('=').append(encode(value, needEncode));
-			}
-		}
-		return StringUtils.emptyIfNull(sb);
-	}
-	
-	/**
-	 * @param value 值
-	 * @param needEncode 是否需要encode操作
-	 * @return urlEncode后的串(null会被置空)
-	 */
-	private static String encode(Object value, boolean needEncode) {
-		if(value == null) {
-			return "";
-		}
-		String v = value.toString();
-		if(v.isEmpty()) {
-			return "";
-		}
-		if(!needEncode) {
-			return v;
-		}
-		try {	//application/x-www-form-urlencoded 模式下，需要对参数进行encode转义，否则接收方会丢失部分数据(比如&号)
-			return URLEncoder.encode(v, StandardCharsets.UTF_8.toString());
-		} catch (UnsupportedEncodingException e) {
-			System.err.println("[HttpUtils]UnsupportedEncodingException:"+e.getMessage());
-		}
-		return v;
-	}
-	
+
 }
\ No newline at end of file
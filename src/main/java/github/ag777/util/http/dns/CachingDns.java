@@ -0,0 +1,322 @@
+package github.ag777.util.http.dns;
+
+import github.ag777.util.http.metrics.HttpMetrics;
+import okhttp3.Dns;
+
+import java.net.Inet4Address;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 带缓存的域名解析
+ * <p>
+ * 包装一个{@link Dns}(默认{@link Dns#SYSTEM}), 按host缓存解析结果:
+ * <ul>
+ *     <li>成功的结果缓存ttl时长, 失败的结果缓存negativeTtl时长(期间直接抛出UnknownHostException, 不再重复解析)</li>
+ *     <li>命中缓存且距离过期不足refreshBefore时, 在虚拟线程中后台刷新, 当前请求直接使用旧结果</li>
+ *     <li>缓存过期后重新解析失败时, 过期不超过maxStale的旧结果仍然可以使用</li>
+ *     <li>同一host同时只会有一次解析, 其它请求等待该次解析的结果</li>
+ *     <li>可以调整ipv4/ipv6地址的顺序, 见{@link AddressOrder}</li>
+ * </ul>
+ * OkHttp会按返回的顺序依次尝试连接, 配合{@code OkHttpClient.Builder.fastFallback(true)}(见{@code HttpUtils.builderWithDns})
+ * 则会交替ipv6/ipv4地址并行建连(happy eyeballs), 哪个先连上用哪个, ipv6不通时不会卡住。
+ * </p>
+ * <p>
+ * 传入{@link HttpMetrics}时, 在{@link HttpMetrics#dns(String)}中按host记录真正发起的解析耗时({@link HttpMetrics#DNS_RESOLVE})和缓存命中、未命中、失败、后台刷新的次数。
+ * </p>
+ *
+ * <pre>{@code
+ * CachingDns dns = new CachingDns()
+ *         .ttl(5, TimeUnit.MINUTES)
+ *         .order(CachingDns.AddressOrder.IPV4_FIRST)
+ *         .metrics(metrics);
+ * OkHttpClient client = HttpUtils.builderWithDns(null, dns, true).build();
+ * }</pre>
+ *
+ * @author ag777 <837915770@vip.qq.com>
+ * @version 2026/10/19
+ */
+public class CachingDns implements Dns {
+
+    private final Dns delegate;
+    private final Map<String, Entry> cache = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<Entry>> resolving = new ConcurrentHashMap<>();
+
+    private long ttlNanos = TimeUnit.MINUTES.toNanos(1);
+    private long negativeTtlNanos = TimeUnit.SECONDS.toNanos(5);
+    private long refreshBeforeNanos = TimeUnit.SECONDS.toNanos(10);
+    private long maxStaleNanos = 0;
+    private AddressOrder order = AddressOrder.SYSTEM;
+    private HttpMetrics metrics;
+
+    public CachingDns() {
+        this(Dns.SYSTEM);
+    }
+
+    /**
+     * @param delegate 实际进行解析的Dns
+     */
+    public CachingDns(Dns delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * @param ttl 解析成功的结果缓存时长, 默认1分钟
+     * @param unit 时间单位
+     * @return self
+     */
+    public CachingDns ttl(long ttl, TimeUnit unit) {
+        this.ttlNanos = unit.toNanos(Math.max(0, ttl));
+        return this;
+    }
+
+    /**
+     * @param negativeTtl 解析失败的结果缓存时长, 默认5秒, 0表示不缓存失败
+     * @param unit 时间单位
+     * @return self
+     */
+    public CachingDns negativeTtl(long negativeTtl, TimeUnit unit) {
+        this.negativeTtlNanos = unit.toNanos(Math.max(0, negativeTtl));
+        return this;
+    }
+
+    /**
+     * @param refreshBefore 距离过期不足该时长时后台刷新, 默认10秒, 0表示不提前刷新
+     * @param unit 时间单位
+     * @return self
+     */
+    public CachingDns refreshBefore(long refreshBefore, TimeUnit unit) {
+        this.refreshBeforeNanos = unit.toNanos(Math.max(0, refreshBefore));
+        return this;
+    }
+
+    /**
+     * @param maxStale 重新解析失败时, 允许继续使用过期多久的旧结果, 默认0
+     * @param unit 时间单位
+     * @return self
+     */
+    public CachingDns maxStale(long maxStale, TimeUnit unit) {
+        this.maxStaleNanos = unit.toNanos(Math.max(0, maxStale));
+        return this;
+    }
+
+    /**
+     * @param order 地址排序方式, 默认保持系统返回的顺序
+     * @return self
+     */
+    public CachingDns order(AddressOrder order) {
+        this.order = order;
+        cache.clear();
+        return this;
+    }
+
+    /**
+     * @param metrics 记录解析耗时和缓存命中情况, 可以为null
+     * @return self
+     */
+    public CachingDns metrics(HttpMetrics metrics) {
+        this.metrics = metrics;
+        return this;
+    }
+
+    /**
+     * 移除某个host的缓存
+     * @param hostname host
+     */
+    public void invalidate(String hostname) {
+        cache.remove(hostname.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * 清空缓存
+     */
+    public void clear() {
+        cache.clear();
+    }
+
+    /**
+     * @return 缓存的host数(含失败的结果)
+     */
+    public int size() {
+        return cache.size();
+    }
+
+    @Override
+    public List<InetAddress> lookup(String hostname) throws UnknownHostException {
+        String host = hostname.toLowerCase(Locale.ROOT);
+        long now = System.nanoTime();
+        Entry entry = cache.get(host);
+        if (entry != null && now - entry.expireAt < 0) {
+            count(host, HttpMetrics.DNS_CACHE_HITS);
+            if (entry.addresses != null && refreshBeforeNanos > 0 && entry.expireAt - now < refreshBeforeNanos) {
+                refreshAsync(host);
+            }
+            return entry.get(hostname);
+        }
+        count(host, HttpMetrics.DNS_CACHE_MISSES);
+        return resolveShared(host).get(hostname);
+    }
+
+    private void refreshAsync(String host) {
+        if (resolving.containsKey(host)) {
+            return;
+        }
+        count(host, HttpMetrics.DNS_REFRESHES);
+        Thread.ofVirtual().name("dns-refresh-" + host).start(() -> resolveShared(host));
+    }
+
+    /**
+     * 同一host同时只解析一次
+     */
+    private Entry resolveShared(String host) {
+        CompletableFuture<Entry> future = new CompletableFuture<>();
+        CompletableFuture<Entry> existing = resolving.putIfAbsent(host, future);
+        if (existing != null) {
+            try {
+                return existing.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return Entry.failed(new UnknownHostException(host + ": 等待解析被中断"), System.nanoTime());
+            } catch (ExecutionException e) {
+                return Entry.failed(new UnknownHostException(host + ": " + e.getCause()), System.nanoTime());
+            }
+        }
+        try {
+            Entry entry = resolve(host);
+            future.complete(entry);
+            return entry;
+        } catch (RuntimeException | Error e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            resolving.remove(host, future);
+        }
+    }
+
+    private Entry resolve(String host) {
+        long start = System.nanoTime();
+        Entry entry;
+        try {
+            List<InetAddress> addresses = delegate.lookup(host);
+            if (addresses == null || addresses.isEmpty()) {
+                throw new UnknownHostException(host + ": 未解析到地址");
+            }
+            long expireAt = start + ttlNanos;
+            entry = new Entry(Collections.unmodifiableList(order.sort(addresses)), null, expireAt, expireAt + maxStaleNanos);
+        } catch (UnknownHostException e) {
+            count(host, HttpMetrics.DNS_FAILURES);
+            entry = onFailure(cache.get(host), e, start);
+        }
+        if (metrics != null) {
+            metrics.dns(host).record(HttpMetrics.DNS_RESOLVE, System.nanoTime() - start);
+        }
+        if (entry.expireAt - start > 0) {
+            cache.put(host, entry);
+        } else {
+            cache.remove(host);
+        }
+        return entry;
+    }
+
+    /**
+     * 解析失败时: 旧结果仍然有效(后台刷新)或过期未超过maxStale时继续使用旧结果, 否则缓存失败结果
+     */
+    private Entry onFailure(Entry old, UnknownHostException e, long now) {
+        if (old != null && old.addresses != null && now - old.staleUntil < 0) {
+            long expireAt = Math.max(old.expireAt, Math.min(now + negativeTtlNanos, old.staleUntil));
+            return new Entry(old.addresses, null, expireAt, old.staleUntil);
+        }
+        return Entry.failed(e, now + negativeTtlNanos);
+    }
+
+    private void count(String host, String name) {
+        if (metrics != null) {
+            metrics.dns(host).add(name, 1);
+        }
+    }
+
+    /**
+     * 缓存项, addresses为null时表示解析失败
+     * @param expireAt 过期时间
+     * @param staleUntil 解析失败时旧结果最多可以用到的时间
+     */
+    private record Entry(List<InetAddress> addresses, UnknownHostException error, long expireAt, long staleUntil) {
+
+        static Entry failed(UnknownHostException error, long expireAt) {
+            return new Entry(null, error, expireAt, expireAt);
+        }
+
+        List<InetAddress> get(String hostname) throws UnknownHostException {
+            if (addresses != null) {
+                return addresses;
+            }
+            UnknownHostException e = new UnknownHostException(hostname);
+            e.initCause(error);
+            throw e;
+        }
+    }
+
+    /**
+     * 地址排序方式
+     */
+    public enum AddressOrder {
+        /** 保持原顺序 */
+        SYSTEM,
+        /** ipv4在前 */
+        IPV4_FIRST,
+        /** ipv6在前 */
+        IPV6_FIRST,
+        /** 只保留ipv4, 没有ipv4地址时保持原样 */
+        IPV4_ONLY,
+        /** 从ipv4开始交替排列ipv4和ipv6(RFC 8305) */
+        INTERLEAVE;
+
+        List<InetAddress> sort(List<InetAddress> addresses) {
+            if (this == SYSTEM || addresses.size() < 2) {
+                return new ArrayList<>(addresses);
+            }
+            List<InetAddress> v4 = new ArrayList<>(addresses.size());
+            List<InetAddress> v6 = new ArrayList<>(addresses.size());
+            for (InetAddress address : addresses) {
+                if (address instanceof Inet6Address) {
+                    v6.add(address);
+                } else if (address instanceof Inet4Address) {
+                    v4.add(address);
+                }
+            }
+            List<InetAddress> list = new ArrayList<>(addresses.size());
+            switch (this) {
+                case IPV4_FIRST -> {
+                    list.addAll(v4);
+                    list.addAll(v6);
+                }
+                case IPV6_FIRST -> {
+                    list.addAll(v6);
+                    list.addAll(v4);
+                }
+                case IPV4_ONLY -> list.addAll(v4.isEmpty() ? v6 : v4);
+                default -> {
+                    for (int i = 0; i < Math.max(v4.size(), v6.size()); i++) {
+                        if (i < v4.size()) {
+                            list.add(v4.get(i));
+                        }
+                        if (i < v6.size()) {
+                            list.add(v6.get(i));
+                        }
+                    }
+                }
+            }
+            return list;
+        }
+    }
+}
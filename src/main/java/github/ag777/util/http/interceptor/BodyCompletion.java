@@ -0,0 +1,75 @@
+package github.ag777.util.http.interceptor;
+
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.ForwardingSource;
+import okio.Okio;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * 在响应体读取完毕、被关闭或读取失败时回调一次
+ * <p>
+ * 拦截器拿到响应时只收到了响应头, 需要把响应体的下载过程也计入并发名额、耗时等统计时使用。
+ * 没有响应体的响应(HEAD、204、304、长度为0)立即回调。调用方必须关闭响应(OkHttp本身也要求如此), 否则不会回调。
+ * </p>
+ *
+ * @author ag777 <837915770@vip.qq.com>
+ * @version 2026/10/19
+ */
+final class BodyCompletion {
+
+    private BodyCompletion() {
+    }
+
+    /**
+     * @param response 响应
+     * @param onComplete 回调, 参数为读取响应体时抛出的异常, 正常读完或关闭时为null
+     * @return 包装了响应体的响应
+     */
+    static Response wrap(Response response, Consumer<IOException> onComplete) {
+        ResponseBody body = response.body();
+        int code = response.code();
+        if ("HEAD".equals(response.request().method()) || code == 204 || code == 304 || body.contentLength() == 0) {
+            onComplete.accept(null);
+            return response;
+        }
+        AtomicBoolean done = new AtomicBoolean();
+        Consumer<IOException> once = e -> {
+            if (done.compareAndSet(false, true)) {
+                onComplete.accept(e);
+            }
+        };
+        ForwardingSource source = new ForwardingSource(body.source()) {
+            @Override
+            public long read(Buffer sink, long byteCount) throws IOException {
+                long read;
+                try {
+                    read = super.read(sink, byteCount);
+                } catch (IOException e) {
+                    once.accept(e);
+                    throw e;
+                }
+                if (read == -1) {
+                    once.accept(null);
+                }
+                return read;
+            }
+
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    once.accept(null);
+                }
+            }
+        };
+        return response.newBuilder()
+                .body(ResponseBody.create(Okio.buffer(source), body.contentType(), body.contentLength()))
+                .build();
+    }
+}
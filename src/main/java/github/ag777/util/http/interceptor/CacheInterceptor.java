@@ -0,0 +1,425 @@
+package github.ag777.util.http.interceptor;
+
+import github.ag777.util.lang.IOUtils;
+import okhttp3.*;
+import okio.BufferedSource;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 内存级http响应缓存拦截器
+ * <p>
+ * 按照http缓存语义缓存GET请求的响应(LRU淘汰, 按字节数限制总大小):
+ * <ul>
+ *     <li>遵循Cache-Control(no-store、no-cache、max-age、must-revalidate、max-stale)以及Expires</li>
+ *     <li>没有过期时间但有Last-Modified时, 按(Date - Last-Modified)的10%估算有效期</li>
+ *     <li>缓存过期后带上If-None-Match/If-Modified-Since重新验证, 服务端返回304时直接使用缓存的响应体</li>
+ *     <li>同一url的POST/PUT/DELETE等请求成功后会使缓存失效</li>
+ * </ul>
+ * 单次请求可以通过请求头{@code Cache-Control: max-stale=60}或者{@link #maxStale(Request.Builder, long, TimeUnit)}
+ * 允许使用过期不超过一定时间的缓存。
+ * 如需磁盘缓存, 可配合OkHttp自带的{@link Cache}使用, 见{@link github.ag777.util.http.HttpUtils#builderWithCache}, 内存未命中时会继续走磁盘缓存。
+ * </p>
+ *
+ * <pre>{@code
+ * CacheInterceptor cache = new CacheInterceptor(32 * 1024 * 1024);
+ * OkHttpClient client = HttpUtils.builderWithCache(null, cache, new File("/tmp/http-cache"), 256 * 1024 * 1024).build();
+ * System.out.println(cache.stats());
+ * }</pre>
+ *
+ * @author ag777 <837915770@vip.qq.com>
+ * @version 2026/10/19
+ */
+public class CacheInterceptor implements Interceptor {
+
+    /** 可以缓存的响应码 */
+    private static final Set<Integer> CACHEABLE_CODES = Set.of(200, 203, 300, 301, 404, 410);
+
+    private final long maxBytes;
+    private final long maxEntryBytes;
+    /** accessOrder=true, 最近访问的排在最后 */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long totalBytes;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong revalidateCount = new AtomicLong();
+    private final AtomicLong notModifiedCount = new AtomicLong();
+    private final AtomicLong storeCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    /**
+     * @param maxBytes 缓存总字节数上限, 单个响应体不超过总大小的1/8
+     */
+    public CacheInterceptor(long maxBytes) {
+        this(maxBytes, Math.max(1, maxBytes / 8));
+    }
+
+    /**
+     * @param maxBytes 缓存总字节数上限
+     * @param maxEntryBytes 单个响应体字节数上限, 超过的响应不缓存
+     */
+    public CacheInterceptor(long maxBytes, long maxEntryBytes) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("maxBytes必须大于0");
+        }
+        this.maxBytes = maxBytes;
+        this.maxEntryBytes = Math.min(maxBytes, maxEntryBytes);
+    }
+
+    /**
+     * 单次请求允许使用过期不超过maxStale的缓存
+     * @param builder 请求构造器
+     * @param maxStale 允许过期的时长
+     * @param unit 时间单位
+     * @return 请求构造器
+     */
+    public static Request.Builder maxStale(Request.Builder builder, long maxStale, TimeUnit unit) {
+        return builder.tag(MaxStale.class, new MaxStale(unit.toMillis(maxStale)));
+    }
+
+    /**
+     * 清空缓存
+     */
+    public synchronized void evictAll() {
+        entries.clear();
+        totalBytes = 0;
+    }
+
+    /**
+     * 移除url对应的缓存
+     * @param url url
+     */
+    public synchronized void remove(String url) {
+        Entry entry = entries.remove(url);
+        if (entry != null) {
+            totalBytes -= entry.body.length;
+        }
+    }
+
+    /**
+     * @return 缓存统计信息
+     */
+    public synchronized Stats stats() {
+        return new Stats(entries.size(), totalBytes, hitCount.get(), missCount.get(), revalidateCount.get(),
+                notModifiedCount.get(), storeCount.get(), evictionCount.get());
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        String key = request.url().toString();
+        if (!"GET".equals(request.method())) {
+            Response response = chain.proceed(request);
+            if (!"HEAD".equals(request.method()) && response.isSuccessful()) {
+                remove(key);
+            }
+            return response;
+        }
+
+        CacheControl requestCc = request.cacheControl();
+        if (requestCc.noStore()) {
+            return chain.proceed(request);
+        }
+
+        Entry entry = get(key);
+        if (entry != null && !entry.matchVary(request)) {
+            entry = null;
+        }
+        if (entry != null && !requestCc.noCache() && entry.isUsable(request, requestCc)) {
+            hitCount.incrementAndGet();
+            return entry.toResponse(request);
+        }
+
+        Request networkRequest = request;
+        boolean conditional = false;
+        if (entry != null && request.header("If-None-Match") == null && request.header("If-Modified-Since") == null) {
+            Request.Builder builder = request.newBuilder();
+            if (entry.etag != null) {
+                builder.header("If-None-Match", entry.etag);
+                conditional = true;
+            }
+            if (entry.lastModified != null) {
+                builder.header("If-Modified-Since", entry.lastModified);
+                conditional = true;
+            }
+            networkRequest = builder.build();
+        }
+        if (conditional) {
+            revalidateCount.incrementAndGet();
+        } else {
+            missCount.incrementAndGet();
+        }
+
+        Response response = chain.proceed(networkRequest);
+        if (conditional && response.code() == 304) {
+            notModifiedCount.incrementAndGet();
+            Entry updated = entry.revalidated(response);
+            response.close();
+            put(key, updated);
+            return updated.toResponse(request);
+        }
+        return store(key, request, response);
+    }
+
+    /**
+     * 尝试缓存响应, 响应体不超过上限时整体读入内存, 原响应体仍然可以正常读取
+     */
+    private Response store(String key, Request request, Response response) throws IOException {
+        if (!isCacheable(response)) {
+            if (response.isSuccessful()) {
+                remove(key);
+            }
+            return response;
+        }
+        ResponseBody body = response.body();
+        long contentLength = body.contentLength();
+        if (contentLength > maxEntryBytes) {
+            return response;
+        }
+        BufferedSource source = body.source();
+        byte[] bytes;
+        try {
+            if (source.request(maxEntryBytes + 1)) {
+                // 响应体超出上限
+                return response;
+            }
+            bytes = source.getBuffer().snapshot().toByteArray();
+        } catch (IOException | RuntimeException e) {
+            // 响应不会返回给调用方, 需要在这里释放连接
+            IOUtils.close(response);
+            throw e;
+        }
+        put(key, new Entry(request, response, bytes));
+        storeCount.incrementAndGet();
+        return response;
+    }
+
+    private boolean isCacheable(Response response) {
+        if (!CACHEABLE_CODES.contains(response.code())) {
+            return false;
+        }
+        CacheControl cc = response.cacheControl();
+        if (cc.noStore() || response.request().cacheControl().noStore()) {
+            return false;
+        }
+        String vary = response.header("Vary");
+        if (vary != null && vary.contains("*")) {
+            return false;
+        }
+        // 没有任何过期时间及验证信息的响应缓存了也用不上
+        return cc.maxAgeSeconds() != -1 || response.header("Expires") != null
+                || response.header("ETag") != null || response.header("Last-Modified") != null;
+    }
+
+    private synchronized Entry get(String key) {
+        return entries.get(key);
+    }
+
+    private synchronized void put(String key, Entry entry) {
+        Entry old = entries.put(key, entry);
+        if (old != null) {
+            totalBytes -= old.body.length;
+        }
+        totalBytes += entry.body.length;
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            Entry eldest = it.next().getValue();
+            it.remove();
+            totalBytes -= eldest.body.length;
+            evictionCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * 缓存条目
+     */
+    private static class Entry {
+        private final Protocol protocol;
+        private final int code;
+        private final String message;
+        private final Headers headers;
+        private final byte[] body;
+        private final MediaType mediaType;
+        /** Vary头中涉及的请求头及其取值 */
+        private final Headers varyHeaders;
+        private final String etag;
+        private final String lastModified;
+        private final long sentAt;
+        private final long receivedAt;
+        /** 有效期(毫秒) */
+        private final long freshnessMillis;
+        private final boolean mustRevalidate;
+        private final boolean noCache;
+
+        Entry(Request request, Response response, byte[] body) {
+            this(response.protocol(), response.code(), response.message(), response.headers(), body,
+                    response.body().contentType(), varyHeaders(request, response.headers()),
+                    response.sentRequestAtMillis(), response.receivedResponseAtMillis());
+        }
+
+        private Entry(Protocol protocol, int code, String message, Headers headers, byte[] body, MediaType mediaType,
+                      Headers varyHeaders, long sentAt, long receivedAt) {
+            this.protocol = protocol;
+            this.code = code;
+            this.message = message;
+            this.headers = headers;
+            this.body = body;
+            this.mediaType = mediaType;
+            this.varyHeaders = varyHeaders;
+            this.etag = headers.get("ETag");
+            this.lastModified = headers.get("Last-Modified");
+            this.sentAt = sentAt;
+            this.receivedAt = receivedAt;
+            CacheControl cc = CacheControl.parse(headers);
+            this.mustRevalidate = cc.mustRevalidate();
+            this.noCache = cc.noCache();
+            this.freshnessMillis = computeFreshness(cc, headers, receivedAt);
+        }
+
+        /**
+         * 304时合并响应头并刷新时间
+         */
+        Entry revalidated(Response notModified) {
+            Headers.Builder builder = headers.newBuilder();
+            Headers network = notModified.headers();
+            for (String name : network.names()) {
+                if (!"Content-Length".equalsIgnoreCase(name) && !"Content-Encoding".equalsIgnoreCase(name)) {
+                    builder.set(name, network.get(name));
+                }
+            }
+            return new Entry(protocol, code, message, builder.build(), body, mediaType, varyHeaders,
+                    notModified.sentRequestAtMillis(), notModified.receivedResponseAtMillis());
+        }
+
+        boolean matchVary(Request request) {
+            for (String name : varyHeaders.names()) {
+                List<String> values = request.headers(name);
+                if (values.isEmpty()) {
+                    values = List.of("");
+                }
+                if (!varyHeaders.values(name).equals(values)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        boolean isUsable(Request request, CacheControl requestCc) {
+            if (noCache) {
+                return false;
+            }
+            long age = ageMillis();
+            long freshness = freshnessMillis;
+            if (requestCc.maxAgeSeconds() != -1) {
+                freshness = Math.min(freshness, TimeUnit.SECONDS.toMillis(requestCc.maxAgeSeconds()));
+            }
+            if (requestCc.minFreshSeconds() != -1) {
+                age += TimeUnit.SECONDS.toMillis(requestCc.minFreshSeconds());
+            }
+            long maxStale = 0;
+            if (!mustRevalidate) {
+                MaxStale tag = request.tag(MaxStale.class);
+                if (tag != null) {
+                    maxStale = tag.millis;
+                } else if (requestCc.maxStaleSeconds() != -1) {
+                    maxStale = requestCc.maxStaleSeconds() == Integer.MAX_VALUE
+                            ? Long.MAX_VALUE / 2 : TimeUnit.SECONDS.toMillis(requestCc.maxStaleSeconds());
+                }
+            }
+            return age < freshness + maxStale;
+        }
+
+        Response toResponse(Request request) {
+            Response.Builder builder = new Response.Builder()
+                    .request(request)
+                    .protocol(protocol)
+                    .code(code)
+                    .message(message)
+                    .headers(headers)
+                    .body(ResponseBody.create(body, mediaType))
+                    .sentRequestAtMillis(sentAt)
+                    .receivedResponseAtMillis(receivedAt);
+            if (ageMillis() >= freshnessMillis) {
+                builder.addHeader("Warning", "110 - \"Response is stale\"");
+            }
+            return builder.build();
+        }
+
+        private long ageMillis() {
+            long age = System.currentTimeMillis() - receivedAt;
+            String ageHeader = headers.get("Age");
+            if (ageHeader != null) {
+                try {
+                    age += TimeUnit.SECONDS.toMillis(Long.parseLong(ageHeader.trim()));
+                } catch (NumberFormatException ignored) {
+                }
+            }
+            return Math.max(0, age);
+        }
+
+        private static long computeFreshness(CacheControl cc, Headers headers, long receivedAt) {
+            if (cc.maxAgeSeconds() != -1) {
+                return TimeUnit.SECONDS.toMillis(cc.maxAgeSeconds());
+            }
+            Date date = headers.getDate("Date");
+            long served = date != null ? date.getTime() : receivedAt;
+            Date expires = headers.getDate("Expires");
+            if (expires != null) {
+                return Math.max(0, expires.getTime() - served);
+            }
+            Date lastModified = headers.getDate("Last-Modified");
+            if (lastModified != null) {
+                return Math.max(0, (served - lastModified.getTime()) / 10);
+            }
+            return 0;
+        }
+
+        private static Headers varyHeaders(Request request, Headers responseHeaders) {
+            String vary = responseHeaders.get("Vary");
+            if (vary == null) {
+                return Headers.of();
+            }
+            Headers.Builder builder = new Headers.Builder();
+            for (String name : vary.split(",")) {
+                name = name.trim();
+                if (name.isEmpty()) {
+                    continue;
+                }
+                for (String value : request.headers(name)) {
+                    builder.add(name, value);
+                }
+                if (request.header(name) == null) {
+                    // 记录请求头不存在的情况
+                    builder.add(name, "");
+                }
+            }
+            return builder.build();
+        }
+    }
+
+    /**
+     * 单次请求的max-stale设置, 通过请求tag传递
+     * @param millis 允许过期的毫秒数
+     */
+    public record MaxStale(long millis) {
+    }
+
+    /**
+     * 缓存统计信息
+     * @param entryCount 缓存条目数
+     * @param totalBytes 缓存的响应体总字节数
+     * @param hitCount 直接命中缓存的次数
+     * @param missCount 未命中缓存的次数
+     * @param revalidateCount 发出验证请求的次数
+     * @param notModifiedCount 验证请求返回304的次数
+     * @param storeCount 写入缓存的次数
+     * @param evictionCount 因容量不足被淘汰的条目数
+     */
+    public record Stats(int entryCount, long totalBytes, long hitCount, long missCount, long revalidateCount,
+                        long notModifiedCount, long storeCount, long evictionCount) {
+    }
+}
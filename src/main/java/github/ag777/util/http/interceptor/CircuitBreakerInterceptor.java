@@ -0,0 +1,342 @@
+package github.ag777.util.http.interceptor;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.io.Serial;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按host隔离的熔断器拦截器
+ * <p>
+ * 对每个host维护最近n次调用结果的滑动窗口, 当失败率或慢调用率超过阈值时熔断(OPEN),
+ * 熔断期间直接抛出{@link OpenException}而不发出请求, 避免调用方线程堆积直到超时。
+ * 熔断时间过后进入半开状态(HALF_OPEN), 放行少量探测请求, 探测全部成功则恢复(CLOSED), 否则再次熔断。
+ * </p>
+ * <p>
+ * 失败的判定: 抛出IO异常(包括读取响应体时)或者响应码大于等于500。
+ * 调用结果在响应体读完、关闭或读取失败时才记录, 耗时包含下载响应体的时间, 因此调用方必须关闭响应。
+ * </p>
+ *
+ * <pre>{@code
+ * CircuitBreakerInterceptor breaker = new CircuitBreakerInterceptor()
+ *         .failureRate(0.5)
+ *         .slowCall(3000, 0.8)
+ *         .openDuration(30, TimeUnit.SECONDS);
+ * OkHttpClient client = HttpUtils.builderWithInterceptor(null, breaker).build();
+ * // 监控
+ * breaker.stats().forEach((host, stats) -> System.out.println(host + ":" + stats));
+ * }</pre>
+ *
+ * @author ag777 <837915770@vip.qq.com>
+ * @version 2026/10/19
+ */
+public class CircuitBreakerInterceptor implements Interceptor {
+
+    /**
+     * 熔断器状态
+     */
+    public enum State {
+        /** 正常 */
+        CLOSED,
+        /** 熔断 */
+        OPEN,
+        /** 半开, 放行少量探测请求 */
+        HALF_OPEN
+    }
+
+    private final Map<String, Breaker> breakers = new ConcurrentHashMap<>();
+
+    private int windowSize = 100;
+    private int minimumCalls = 20;
+    private double failureRateThreshold = 0.5;
+    private long slowCallMillis = Long.MAX_VALUE;
+    private double slowCallRateThreshold = 1;
+    private long openDurationNanos = TimeUnit.SECONDS.toNanos(30);
+    private int halfOpenCalls = 3;
+
+    /**
+     * @param windowSize 滑动窗口大小(最近多少次调用), 默认100
+     * @param minimumCalls 窗口内至少多少次调用后才计算失败率, 默认20
+     * @return self
+     */
+    public CircuitBreakerInterceptor window(int windowSize, int minimumCalls) {
+        if (windowSize <= 0) {
+            throw new IllegalArgumentException("windowSize必须大于0");
+        }
+        this.windowSize = windowSize;
+        this.minimumCalls = Math.max(1, Math.min(minimumCalls, windowSize));
+        return this;
+    }
+
+    /**
+     * @param threshold 失败率阈值, 默认0.5
+     * @return self
+     */
+    public CircuitBreakerInterceptor failureRate(double threshold) {
+        this.failureRateThreshold = threshold;
+        return this;
+    }
+
+    /**
+     * @param slowCallMillis 耗时超过多少毫秒算作慢调用
+     * @param threshold 慢调用率阈值
+     * @return self
+     */
+    public CircuitBreakerInterceptor slowCall(long slowCallMillis, double threshold) {
+        this.slowCallMillis = slowCallMillis;
+        this.slowCallRateThreshold = threshold;
+        return this;
+    }
+
+    /**
+     * @param duration 熔断持续时间, 默认30秒
+     * @param unit 时间单位
+     * @return self
+     */
+    public CircuitBreakerInterceptor openDuration(long duration, TimeUnit unit) {
+        this.openDurationNanos = unit.toNanos(duration);
+        return this;
+    }
+
+    /**
+     * @param halfOpenCalls 半开状态下放行的探测请求数, 默认3
+     * @return self
+     */
+    public CircuitBreakerInterceptor halfOpenCalls(int halfOpenCalls) {
+        this.halfOpenCalls = Math.max(1, halfOpenCalls);
+        return this;
+    }
+
+    /**
+     * @param host host
+     * @return 该host对应的熔断器状态, 还没有请求过时返回CLOSED
+     */
+    public State state(String host) {
+        Breaker breaker = breakers.get(host);
+        return breaker == null ? State.CLOSED : breaker.state();
+    }
+
+    /**
+     * 手动重置某个host的熔断器
+     * @param host host
+     */
+    public void reset(String host) {
+        breakers.remove(host);
+    }
+
+    /**
+     * @return 各host的统计信息, 用于监控
+     */
+    public Map<String, Stats> stats() {
+        if (breakers.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<String, Stats> map = new LinkedHashMap<>(breakers.size());
+        breakers.forEach((host, breaker) -> map.put(host, breaker.stats()));
+        return map;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        String host = request.url().host();
+        Breaker breaker = breakers.computeIfAbsent(host, k -> new Breaker());
+        if (!breaker.tryAcquire()) {
+            throw new OpenException(host);
+        }
+
+        long start = System.nanoTime();
+        Response response;
+        try {
+            response = chain.proceed(request);
+        } catch (IOException e) {
+            if (chain.call().isCanceled()) {
+                breaker.release();
+            } else {
+                breaker.record(false, false);
+            }
+            throw e;
+        } catch (RuntimeException e) {
+            breaker.release();
+            throw e;
+        }
+        boolean success = response.code() < 500;
+        // 响应体读完或关闭时才记录结果, 响应体下载缓慢或中断同样计入慢调用/失败
+        return BodyCompletion.wrap(response, e -> {
+            if (e != null && chain.call().isCanceled()) {
+                breaker.release();
+                return;
+            }
+            long costMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            breaker.record(success && e == null, costMillis >= slowCallMillis);
+        });
+    }
+
+    /**
+     * 单个host的熔断器
+     */
+    private class Breaker {
+        /** 窗口内每次调用的结果, bit0:失败, bit1:慢调用 */
+        private final byte[] outcomes = new byte[windowSize];
+        private int index;
+        private int count;
+        private int failures;
+        private int slows;
+
+        private State state = State.CLOSED;
+        private long openedAt;
+        private int halfOpenPermits;
+        private int halfOpenSuccess;
+
+        private final AtomicLong totalCalls = new AtomicLong();
+        private final AtomicLong totalFailures = new AtomicLong();
+        private final AtomicLong totalSlowCalls = new AtomicLong();
+        private final AtomicLong rejectedCalls = new AtomicLong();
+        private final AtomicLong openCount = new AtomicLong();
+
+        synchronized boolean tryAcquire() {
+            if (state == State.OPEN) {
+                if (System.nanoTime() - openedAt < openDurationNanos) {
+                    rejectedCalls.incrementAndGet();
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                halfOpenPermits = halfOpenCalls;
+                halfOpenSuccess = 0;
+            }
+            if (state == State.HALF_OPEN) {
+                if (halfOpenPermits <= 0) {
+                    rejectedCalls.incrementAndGet();
+                    return false;
+                }
+                halfOpenPermits--;
+            }
+            return true;
+        }
+
+        /**
+         * 请求被取消等无法判断结果的情况, 归还半开状态的探测名额
+         */
+        synchronized void release() {
+            if (state == State.HALF_OPEN) {
+                halfOpenPermits++;
+            }
+        }
+
+        synchronized void record(boolean success, boolean slow) {
+            totalCalls.incrementAndGet();
+            if (!success) {
+                totalFailures.incrementAndGet();
+            }
+            if (slow) {
+                totalSlowCalls.incrementAndGet();
+            }
+
+            if (state == State.HALF_OPEN) {
+                if (!success || slow) {
+                    open();
+                } else if (++halfOpenSuccess >= halfOpenCalls) {
+                    close();
+                }
+                return;
+            }
+            if (state == State.OPEN) {
+                // 熔断前就已发出的请求, 结果不再计入
+                return;
+            }
+
+            byte outcome = (byte) ((success ? 0 : 1) | (slow ? 2 : 0));
+            if (count == outcomes.length) {
+                byte old = outcomes[index];
+                failures -= old & 1;
+                slows -= (old >> 1) & 1;
+            } else {
+                count++;
+            }
+            outcomes[index] = outcome;
+            index = (index + 1) % outcomes.length;
+            failures += outcome & 1;
+            slows += (outcome >> 1) & 1;
+
+            if (count >= minimumCalls
+                    && (failures >= failureRateThreshold * count || slows >= slowCallRateThreshold * count)) {
+                open();
+            }
+        }
+
+        private void open() {
+            state = State.OPEN;
+            openedAt = System.nanoTime();
+            openCount.incrementAndGet();
+        }
+
+        private void close() {
+            state = State.CLOSED;
+            index = 0;
+            count = 0;
+            failures = 0;
+            slows = 0;
+        }
+
+        synchronized State state() {
+            if (state == State.OPEN && System.nanoTime() - openedAt >= openDurationNanos) {
+                return State.HALF_OPEN;
+            }
+            return state;
+        }
+
+        synchronized Stats stats() {
+            return new Stats(
+                    state(),
+                    count == 0 ? 0 : (double) failures / count,
+                    count == 0 ? 0 : (double) slows / count,
+                    totalCalls.get(),
+                    totalFailures.get(),
+                    totalSlowCalls.get(),
+                    rejectedCalls.get(),
+                    openCount.get());
+        }
+    }
+
+    /**
+     * 熔断器统计信息
+     * @param state 当前状态
+     * @param failureRate 窗口内失败率
+     * @param slowCallRate 窗口内慢调用率
+     * @param totalCalls 累计调用数
+     * @param totalFailures 累计失败数
+     * @param totalSlowCalls 累计慢调用数
+     * @param rejectedCalls 累计被熔断拒绝的请求数
+     * @param openCount 累计熔断次数
+     */
+    public record Stats(State state, double failureRate, double slowCallRate, long totalCalls, long totalFailures,
+                        long totalSlowCalls, long rejectedCalls, long openCount) {
+    }
+
+    /**
+     * 熔断期间发起请求时抛出
+     */
+    public static class OpenException extends IOException {
+        @Serial
+        private static final long serialVersionUID = -2416180253707713563L;
+
+        private final String host;
+
+        public OpenException(String host) {
+            super("熔断中, 请求被拒绝:" + host);
+            this.host = host;
+        }
+
+        public String getHost() {
+            return host;
+        }
+    }
+}
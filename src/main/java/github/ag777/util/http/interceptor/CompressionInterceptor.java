@@ -0,0 +1,341 @@
+package github.ag777.util.http.interceptor;
+
+import github.ag777.util.http.metrics.HttpMetrics;
+import okhttp3.*;
+import okio.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 请求体压缩/响应体解压拦截器
+ * <p>
+ * 请求: 请求体不小于threshold字节且没有设置Content-Encoding时, 按指定的编码压缩后发送, 压缩后没有变小则发送原文。
+ * 默认使用gzip; classpath中存在对应的库时还可以使用zstd(com.github.luben:zstd-jni)和br(com.aayushatharva.brotli4j:brotli4j),
+ * 不存在时自动退回gzip。一次性(one-shot)和双工请求体不压缩。
+ * </p>
+ * <p>
+ * 响应: 请求没有指定Accept-Encoding时, 按可用的解码器发送{@code Accept-Encoding: gzip, br, zstd},
+ * 并对返回的压缩响应体进行流式解压。此时OkHttp自带的透明gzip不会生效, 由本拦截器负责。
+ * 请求自行指定了Accept-Encoding时, 返回的编码受支持的话同样会被解压。
+ * </p>
+ * <p>
+ * 传入{@link HttpMetrics}时, 会按路由记录压缩前后的字节数, 见{@link HttpMetrics#REQUEST_UNCOMPRESSED_BYTES}等计数。
+ * </p>
+ *
+ * <pre>{@code
+ * OkHttpClient client = HttpUtils.builderWithCompression(null,
+ *         new CompressionInterceptor(metrics).encoding("zstd").threshold(4096)).build();
+ * }</pre>
+ *
+ * @author ag777 <837915770@vip.qq.com>
+ * @version 2026/10/19
+ */
+public class CompressionInterceptor implements Interceptor {
+
+    private final HttpMetrics metrics;
+    private Codec codec = Codec.GZIP;
+    private long threshold = 1024;
+    private boolean decodeResponses = true;
+
+    public CompressionInterceptor() {
+        this(null);
+    }
+
+    /**
+     * @param metrics 记录压缩效果, 可以为null
+     */
+    public CompressionInterceptor(HttpMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * @param encoding 请求体的压缩编码: gzip、zstd、br, 不可用时退回gzip
+     * @return self
+     */
+    public CompressionInterceptor encoding(String encoding) {
+        Codec c = Codec.of(encoding);
+        if (c == null) {
+            throw new IllegalArgumentException("不支持的编码:" + encoding);
+        }
+        this.codec = c.isAvailable() ? c : Codec.GZIP;
+        return this;
+    }
+
+    /**
+     * @return 实际使用的请求体压缩编码
+     */
+    public String encoding() {
+        return codec.encoding;
+    }
+
+    /**
+     * @param threshold 请求体达到多少字节才压缩, 默认1024, 传入负数则不压缩请求体
+     * @return self
+     */
+    public CompressionInterceptor threshold(long threshold) {
+        this.threshold = threshold;
+        return this;
+    }
+
+    /**
+     * @param decodeResponses 是否协商并解压响应体, 默认true
+     * @return self
+     */
+    public CompressionInterceptor decodeResponses(boolean decodeResponses) {
+        this.decodeResponses = decodeResponses;
+        return this;
+    }
+
+    /**
+     * @param encoding 编码
+     * @return 当前classpath下该编码是否可用
+     */
+    public static boolean isAvailable(String encoding) {
+        Codec c = Codec.of(encoding);
+        return c != null && c.isAvailable();
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        Request.Builder builder = null;
+
+        RequestBody body = request.body();
+        if (threshold >= 0 && body != null && request.header("Content-Encoding") == null
+                && !body.isOneShot() && !body.isDuplex()) {
+            long length = body.contentLength();
+            if (length < 0 || length >= threshold) {
+                RequestBody compressed = compress(request, body, length);
+                if (compressed != null) {
+                    builder = request.newBuilder()
+                            .header("Content-Encoding", codec.encoding)
+                            .method(request.method(), compressed);
+                }
+            }
+        }
+        if (decodeResponses && request.header("Accept-Encoding") == null) {
+            if (builder == null) {
+                builder = request.newBuilder();
+            }
+            builder.header("Accept-Encoding", Codec.acceptEncoding());
+        }
+        if (builder != null) {
+            request = builder.build();
+        }
+
+        Response response = chain.proceed(request);
+        if (!decodeResponses) {
+            return response;
+        }
+        return decode(request, response);
+    }
+
+    /**
+     * @return 压缩后的请求体, 压缩后没有变小时返回null
+     */
+    private RequestBody compress(Request request, RequestBody body, long length) throws IOException {
+        long start = System.nanoTime();
+        Buffer buffer = new Buffer();
+        CountingSink counting;
+        try (BufferedSink sink = Okio.buffer(counting = new CountingSink(codec.encoder(buffer)))) {
+            body.writeTo(sink);
+        }
+        long uncompressed = counting.count;
+        long compressed = buffer.size();
+        if (length >= 0 && compressed >= length) {
+            return null;
+        }
+        if (metrics != null) {
+            HttpMetrics.RouteMetrics route = metrics.route(HttpMetrics.routeKey(request.url()));
+            route.record(HttpMetrics.COMPRESS, System.nanoTime() - start);
+            route.add(HttpMetrics.REQUEST_UNCOMPRESSED_BYTES, uncompressed);
+            route.add(HttpMetrics.REQUEST_COMPRESSED_BYTES, compressed);
+        }
+        return RequestBody.create(buffer.readByteString(), body.contentType());
+    }
+
+    private Response decode(Request request, Response response) throws IOException {
+        Codec c = Codec.of(response.header("Content-Encoding"));
+        if (c == null || !c.isDecodable() || "HEAD".equals(request.method())
+                || response.code() == 204 || response.code() == 304) {
+            return response;
+        }
+        ResponseBody body = response.body();
+        HttpMetrics.RouteMetrics route = metrics == null ? null : metrics.route(HttpMetrics.routeKey(request.url()));
+        CountingSource raw = new CountingSource(body.source(), null, null);
+        Source decoded = new CountingSource(c.decoder(raw), route, raw);
+        return response.newBuilder()
+                .removeHeader("Content-Encoding")
+                .removeHeader("Content-Length")
+                .body(ResponseBody.create(Okio.buffer(decoded), body.contentType(), -1))
+                .build();
+    }
+
+    /**
+     * 编码
+     */
+    private enum Codec {
+        GZIP("gzip", null),
+        BROTLI("br", "com.aayushatharva.brotli4j.encoder.BrotliOutputStream",
+                "org.brotli.dec.BrotliInputStream", "com.aayushatharva.brotli4j.decoder.BrotliInputStream"),
+        ZSTD("zstd", "com.github.luben.zstd.ZstdOutputStream", "com.github.luben.zstd.ZstdInputStream");
+
+        private final String encoding;
+        private final Constructor<?> encoderConstructor;
+        private final Constructor<?> decoderConstructor;
+
+        Codec(String encoding, String encoderClass, String... decoderClasses) {
+            this.encoding = encoding;
+            this.encoderConstructor = constructor(encoderClass, OutputStream.class);
+            Constructor<?> decoder = null;
+            for (String decoderClass : decoderClasses) {
+                if ((decoder = constructor(decoderClass, InputStream.class)) != null) {
+                    break;
+                }
+            }
+            this.decoderConstructor = decoder;
+        }
+
+        static Codec of(String encoding) {
+            if (encoding == null) {
+                return null;
+            }
+            String e = encoding.trim().toLowerCase(Locale.ROOT);
+            for (Codec c : values()) {
+                if (c.encoding.equals(e)) {
+                    return c;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * @return 所有可解码的编码, 用于Accept-Encoding
+         */
+        static String acceptEncoding() {
+            List<String> list = new ArrayList<>(3);
+            for (Codec c : values()) {
+                if (c.isDecodable()) {
+                    list.add(c.encoding);
+                }
+            }
+            return String.join(", ", list);
+        }
+
+        boolean isAvailable() {
+            return this == GZIP || encoderConstructor != null;
+        }
+
+        boolean isDecodable() {
+            return this == GZIP || decoderConstructor != null;
+        }
+
+        Sink encoder(Sink sink) throws IOException {
+            if (this == GZIP) {
+                return new GzipSink(sink);
+            }
+            return Okio.sink((OutputStream) newInstance(encoderConstructor, Okio.buffer(sink).outputStream()));
+        }
+
+        Source decoder(Source source) throws IOException {
+            if (this == GZIP) {
+                return new GzipSource(source);
+            }
+            return Okio.source((InputStream) newInstance(decoderConstructor, Okio.buffer(source).inputStream()));
+        }
+
+        private static Object newInstance(Constructor<?> constructor, Object stream) throws IOException {
+            try {
+                return constructor.newInstance(stream);
+            } catch (InvocationTargetException e) {
+                Throwable cause = e.getCause();
+                throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+            } catch (ReflectiveOperationException e) {
+                throw new IOException(e);
+            }
+        }
+
+        private static Constructor<?> constructor(String className, Class<?> paramType) {
+            if (className == null) {
+                return null;
+            }
+            if (className.startsWith("com.aayushatharva.brotli4j.") && !brotliNativeAvailable()) {
+                return null;
+            }
+            try {
+                return Class.forName(className).getConstructor(paramType);
+            } catch (ReflectiveOperationException | LinkageError e) {
+                return null;
+            }
+        }
+
+        /**
+         * brotli4j需要先加载本地库
+         */
+        private static boolean brotliNativeAvailable() {
+            try {
+                Class<?> loader = Class.forName("com.aayushatharva.brotli4j.Brotli4jLoader");
+                Method isAvailable = loader.getMethod("isAvailable");
+                return (Boolean) isAvailable.invoke(null);
+            } catch (ReflectiveOperationException | LinkageError e) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * 统计写入的字节数
+     */
+    private static class CountingSink extends ForwardingSink {
+        long count;
+
+        CountingSink(Sink delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public void write(Buffer source, long byteCount) throws IOException {
+            super.write(source, byteCount);
+            count += byteCount;
+        }
+    }
+
+    /**
+     * 统计读取的字节数, 读取完毕时记录解压前后的字节数
+     */
+    private static class CountingSource extends ForwardingSource {
+        private final HttpMetrics.RouteMetrics route;
+        private final CountingSource raw;
+        long count;
+        private boolean recorded;
+
+        CountingSource(Source delegate, HttpMetrics.RouteMetrics route, CountingSource raw) {
+            super(delegate);
+            this.route = route;
+            this.raw = raw;
+        }
+
+        @Override
+        public long read(Buffer sink, long byteCount) throws IOException {
+            long read = super.read(sink, byteCount);
+            if (read == -1) {
+                if (route != null && !recorded) {
+                    recorded = true;
+                    route.add(HttpMetrics.RESPONSE_UNCOMPRESSED_BYTES, count);
+                    route.add(HttpMetrics.RESPONSE_COMPRESSED_BYTES, raw.count);
+                }
+            } else {
+                count += read;
+            }
+            return read;
+        }
+    }
+}
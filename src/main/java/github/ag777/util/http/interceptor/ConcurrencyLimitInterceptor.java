@@ -0,0 +1,238 @@
+package github.ag777.util.http.interceptor;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Serial;
+import java.net.SocketTimeoutException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 按host隔离的自适应并发限制拦截器(AIMD)
+ * <p>
+ * 每个host维护一个并发上限limit, 同时进行中的请求数达到上限时, 新请求等待空位(最多等待maxWait), 超时则抛出{@link LimitException}。
+ * 上限根据请求结果自动调整:
+ * <ul>
+ *     <li>请求成功且耗时未超过rttThreshold: 加性增加, 每成功limit次上限+1</li>
+ *     <li>请求超时、返回429/503或耗时超过rttThreshold: 乘性减少, limit = limit * backoffRatio</li>
+ * </ul>
+ * 下游变慢时并发会迅速收缩, 调用方不会因为线程全部卡在等待响应上而堆积。
+ * </p>
+ * <p>
+ * 名额在响应体读完、关闭或读取失败时才归还, 耗时也计算到此时为止, 因此调用方必须关闭响应。
+ * </p>
+ *
+ * <pre>{@code
+ * ConcurrencyLimitInterceptor limiter = new ConcurrencyLimitInterceptor(20, 1, 200)
+ *         .rttThreshold(1000)
+ *         .maxWait(500, TimeUnit.MILLISECONDS);
+ * OkHttpClient client = HttpUtils.builderWithInterceptor(null, limiter).build();
+ * }</pre>
+ *
+ * @author ag777 <837915770@vip.qq.com>
+ * @version 2026/10/19
+ */
+public class ConcurrencyLimitInterceptor implements Interceptor {
+
+    private final Map<String, Limiter> limiters = new ConcurrentHashMap<>();
+    private final int initialLimit;
+    private final int minLimit;
+    private final int maxLimit;
+
+    private double backoffRatio = 0.9;
+    private long rttThresholdMillis = Long.MAX_VALUE;
+    private long maxWaitNanos = 0;
+
+    public ConcurrencyLimitInterceptor() {
+        this(20, 1, 200);
+    }
+
+    /**
+     * @param initialLimit 初始并发上限
+     * @param minLimit 并发上限的最小值
+     * @param maxLimit 并发上限的最大值
+     */
+    public ConcurrencyLimitInterceptor(int initialLimit, int minLimit, int maxLimit) {
+        if (minLimit <= 0 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("并发上限范围错误:[" + minLimit + "," + maxLimit + "]");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.initialLimit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    /**
+     * @param backoffRatio 乘性减少的系数, 默认0.9
+     * @return self
+     */
+    public ConcurrencyLimitInterceptor backoffRatio(double backoffRatio) {
+        if (backoffRatio <= 0 || backoffRatio >= 1) {
+            throw new IllegalArgumentException("backoffRatio必须在(0, 1)之间");
+        }
+        this.backoffRatio = backoffRatio;
+        return this;
+    }
+
+    /**
+     * @param rttThresholdMillis 耗时超过该值视为下游过载, 默认不限制
+     * @return self
+     */
+    public ConcurrencyLimitInterceptor rttThreshold(long rttThresholdMillis) {
+        this.rttThresholdMillis = rttThresholdMillis;
+        return this;
+    }
+
+    /**
+     * @param maxWait 并发已满时最多等待多久, 默认不等待直接失败
+     * @param unit 时间单位
+     * @return self
+     */
+    public ConcurrencyLimitInterceptor maxWait(long maxWait, TimeUnit unit) {
+        this.maxWaitNanos = Math.max(0, unit.toNanos(maxWait));
+        return this;
+    }
+
+    /**
+     * @return 各host的统计信息, 用于监控
+     */
+    public Map<String, Stats> stats() {
+        if (limiters.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<String, Stats> map = new LinkedHashMap<>(limiters.size());
+        limiters.forEach((host, limiter) -> map.put(host, limiter.stats()));
+        return map;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        String host = request.url().host();
+        Limiter limiter = limiters.computeIfAbsent(host, k -> new Limiter());
+        limiter.acquire(host);
+
+        long start = System.nanoTime();
+        Response response;
+        try {
+            response = chain.proceed(request);
+        } catch (IOException | RuntimeException e) {
+            release(limiter, start, e, false);
+            throw e;
+        }
+        int code = response.code();
+        boolean dropped = code == 429 || code == 503;
+        // 名额占用到响应体读完或关闭为止, 响应体下载缓慢同样受并发限制, 也计入耗时
+        return BodyCompletion.wrap(response, e -> release(limiter, start, e, dropped));
+    }
+
+    private void release(Limiter limiter, long start, Exception error, boolean dropped) {
+        // 超时说明下游过载; 其余异常(如连接失败、取消)与并发量无关, 不调整上限
+        boolean ignore = error != null && !(error instanceof SocketTimeoutException);
+        long rtt = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        limiter.release(ignore, dropped || error instanceof SocketTimeoutException || rtt > rttThresholdMillis);
+    }
+
+    /**
+     * 单个host的限制器
+     */
+    private class Limiter {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition available = lock.newCondition();
+        /** 使用浮点数记录上限, 实现每次成功增加1/limit */
+        private double limit = initialLimit;
+        private int inflight;
+
+        private final AtomicLong totalCalls = new AtomicLong();
+        private final AtomicLong droppedCalls = new AtomicLong();
+        private final AtomicLong rejectedCalls = new AtomicLong();
+
+        void acquire(String host) throws IOException {
+            lock.lock();
+            try {
+                long nanos = maxWaitNanos;
+                while (inflight >= (int) limit) {
+                    if (nanos <= 0) {
+                        rejectedCalls.incrementAndGet();
+                        throw new LimitException(host, (int) limit);
+                    }
+                    nanos = available.awaitNanos(nanos);
+                }
+                inflight++;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("等待并发名额被中断");
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void release(boolean ignore, boolean dropped) {
+            lock.lock();
+            try {
+                int used = inflight--;
+                if (!ignore) {
+                    totalCalls.incrementAndGet();
+                    if (dropped) {
+                        droppedCalls.incrementAndGet();
+                        limit = Math.max(minLimit, limit * backoffRatio);
+                    } else if (used * 2 >= (int) limit) {
+                        // 只有并发真正用到一定程度时才增加上限, 避免空闲时上限无限增长
+                        limit = Math.min(maxLimit, limit + 1 / limit);
+                    }
+                }
+                available.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        Stats stats() {
+            lock.lock();
+            try {
+                return new Stats((int) limit, inflight, totalCalls.get(), droppedCalls.get(), rejectedCalls.get());
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * 并发限制统计信息
+     * @param limit 当前并发上限
+     * @param inflight 进行中的请求数
+     * @param totalCalls 累计完成的请求数
+     * @param droppedCalls 累计判定为过载的请求数
+     * @param rejectedCalls 累计因并发已满被拒绝的请求数
+     */
+    public record Stats(int limit, int inflight, long totalCalls, long droppedCalls, long rejectedCalls) {
+    }
+
+    /**
+     * 并发已满且等待超时时抛出
+     */
+    public static class LimitException extends IOException {
+        @Serial
+        private static final long serialVersionUID = 5187329040513867415L;
+
+        private final String host;
+
+        public LimitException(String host, int limit) {
+            super("并发已达上限(" + limit + "), 请求被拒绝:" + host);
+            this.host = host;
+        }
+
+        public String getHost() {
+            return host;
+        }
+    }
+}
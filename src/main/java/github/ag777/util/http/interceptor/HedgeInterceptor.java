@@ -0,0 +1,340 @@
+package github.ag777.util.http.interceptor;
+
+import github.ag777.util.http.model.Deadline;
+import okhttp3.Call;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 对冲请求拦截器(hedged request)
+ * <p>
+ * 请求发出后如果在最近请求耗时的p95(可配置)内还没有返回, 就再发出一个相同的请求,
+ * 两个请求谁先成功返回就用谁的结果, 另一个会被取消。用少量额外流量换取更低的长尾延迟。
+ * 只对没有请求体的幂等请求生效(如GET/HEAD), 样本数不足{@link #minSamples(int)}之前不会对冲。
+ * </p>
+ * <p>
+ * 实现方式: 一个请求同时只能有一次网络交换, 因此原请求和对冲请求都通过{@link Call#clone()}克隆出新的请求并在独立线程中执行,
+ * 克隆出的请求会从头经过所有应用拦截器(经过本拦截器时直接放行)。所以<b>必须将该拦截器作为第一个拦截器添加</b>,
+ * 否则排在它前面的拦截器(重试、限流、熔断、缓存等)会对每次尝试重复执行, 它们对请求的修改也会丢失;
+ * 检测到请求已被前面的拦截器修改时不进行对冲。重试等拦截器放在它之后, 每次尝试各自重试。
+ * </p>
+ * <p>
+ * 原请求的截止时间(请求tag中的{@link Deadline}及{@code Call.timeout()}上的截止时间/超时)会复制到克隆的请求上,
+ * 对冲请求不会超过原请求的截止时间。
+ * </p>
+ *
+ * <pre>{@code
+ * OkHttpClient client = HttpUtils.builderWithInterceptor(null,
+ *         new HedgeInterceptor().percentile(0.95).minDelay(20),
+ *         new RetryInterceptor()
+ *         ).build();
+ * }</pre>
+ *
+ * @author ag777 <837915770@vip.qq.com>
+ * @version 2026/10/19
+ */
+public class HedgeInterceptor implements Interceptor {
+
+    private static final ExecutorService DEFAULT_EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
+
+    /** 由本拦截器克隆出的请求, 经过时直接放行 */
+    private final Set<Call> hedgeCalls = ConcurrentHashMap.newKeySet();
+    private final LatencyWindow latencies;
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong hedgeCount = new AtomicLong();
+    private final AtomicLong hedgeWinCount = new AtomicLong();
+
+    private double percentile = 0.95;
+    private long minDelayMillis = 10;
+    private int minSamples = 20;
+    private ExecutorService executor = DEFAULT_EXECUTOR;
+
+    public HedgeInterceptor() {
+        this(1024);
+    }
+
+    /**
+     * @param windowSize 统计耗时的滑动窗口大小(最近多少个请求)
+     */
+    public HedgeInterceptor(int windowSize) {
+        this.latencies = new LatencyWindow(windowSize);
+    }
+
+    /**
+     * @param percentile 触发对冲的耗时分位, 默认0.95
+     * @return self
+     */
+    public HedgeInterceptor percentile(double percentile) {
+        if (percentile <= 0 || percentile >= 1) {
+            throw new IllegalArgumentException("percentile必须在(0, 1)之间");
+        }
+        this.percentile = percentile;
+        return this;
+    }
+
+    /**
+     * @param minDelayMillis 对冲等待时间下限, 避免接口很快时对冲过于频繁, 默认10毫秒
+     * @return self
+     */
+    public HedgeInterceptor minDelay(long minDelayMillis) {
+        this.minDelayMillis = Math.max(0, minDelayMillis);
+        return this;
+    }
+
+    /**
+     * @param minSamples 开始对冲前至少需要统计的请求数, 默认20
+     * @return self
+     */
+    public HedgeInterceptor minSamples(int minSamples) {
+        this.minSamples = Math.max(1, minSamples);
+        return this;
+    }
+
+    /**
+     * @param executor 执行请求的线程池, 默认为虚拟线程池
+     * @return self
+     */
+    public HedgeInterceptor executor(ExecutorService executor) {
+        this.executor = executor != null ? executor : DEFAULT_EXECUTOR;
+        return this;
+    }
+
+    /**
+     * @return 经过本拦截器的请求数
+     */
+    public long requestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * @return 发出的对冲请求数
+     */
+    public long hedgeCount() {
+        return hedgeCount.get();
+    }
+
+    /**
+     * @return 对冲请求先于原请求返回的次数
+     */
+    public long hedgeWinCount() {
+        return hedgeWinCount.get();
+    }
+
+    /**
+     * @return 当前的对冲等待时间(毫秒), 样本不足时返回-1
+     */
+    public long hedgeDelayMillis() {
+        if (latencies.size() < minSamples) {
+            return -1;
+        }
+        return Math.max(minDelayMillis, latencies.percentile(percentile));
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Call call = chain.call();
+        Request request = chain.request();
+        if (hedgeCalls.contains(call)) {
+            return chain.proceed(request);
+        }
+        requestCount.incrementAndGet();
+        long delay = hedgeDelayMillis();
+        // 请求被前面的拦截器修改过时, 克隆的请求会丢失修改, 不进行对冲
+        if (delay < 0 || request != call.request() || request.body() != null || !RetryInterceptor.isIdempotent(request.method())) {
+            long start = System.nanoTime();
+            Response response = chain.proceed(request);
+            latencies.add(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            return response;
+        }
+
+        Race race = new Race();
+        long start = System.nanoTime();
+        Deadline deadline = deadline(chain, start);
+        race.launch(clone(call, deadline), false);
+        try {
+            Attempt winner;
+            try {
+                winner = race.await(call, delay);
+            } catch (TimeoutException e) {
+                hedgeCount.incrementAndGet();
+                race.launch(clone(call, deadline), true);
+                winner = race.await(call, Long.MAX_VALUE);
+            }
+            if (winner.hedge) {
+                hedgeWinCount.incrementAndGet();
+            }
+            latencies.add(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            return winner.response;
+        } catch (TimeoutException e) {
+            // 不会发生
+            throw new IOException(e);
+        } finally {
+            race.cancelLosers();
+        }
+    }
+
+    /**
+     * 原请求的截止时间: 请求tag和Call.timeout()上的截止时间, 以及从开始执行算起的超时时长, 取最早的
+     */
+    private static Deadline deadline(Chain chain, long start) {
+        Deadline deadline = Deadline.of(chain);
+        long timeoutNanos = chain.call().timeout().timeoutNanos();
+        if (timeoutNanos > 0) {
+            deadline = Deadline.earliest(deadline, Deadline.atNanoTime(start + timeoutNanos));
+        }
+        return deadline;
+    }
+
+    /**
+     * 克隆请求, 并将原请求的截止时间设置到克隆的请求上(替换client默认的超时, 避免重新计时)
+     */
+    private static Call clone(Call call, Deadline deadline) {
+        Call clone = call.clone();
+        if (deadline != null) {
+            clone.timeout().timeout(0, TimeUnit.NANOSECONDS);
+            clone.timeout().deadlineNanoTime(deadline.nanoTime());
+        }
+        return clone;
+    }
+
+    /**
+     * 一次请求及其对冲请求之间的竞争
+     */
+    private class Race {
+        private final CompletableFuture<Attempt> first = new CompletableFuture<>();
+        private final AtomicInteger pending = new AtomicInteger();
+        private final Set<Call> calls = ConcurrentHashMap.newKeySet();
+
+        void launch(Call call, boolean hedge) {
+            hedgeCalls.add(call);
+            calls.add(call);
+            pending.incrementAndGet();
+            try {
+                executor.execute(() -> run(call, hedge));
+            } catch (RejectedExecutionException e) {
+                finish(call, hedge, null, new IOException("对冲请求提交失败", e));
+            }
+        }
+
+        private void run(Call call, boolean hedge) {
+            Response response = null;
+            IOException error = null;
+            try {
+                response = call.execute();
+            } catch (IOException e) {
+                error = e;
+            } catch (RuntimeException e) {
+                error = new IOException(e);
+            }
+            finish(call, hedge, response, error);
+        }
+
+        private void finish(Call call, boolean hedge, Response response, IOException error) {
+            hedgeCalls.remove(call);
+            int left = pending.decrementAndGet();
+            if (response != null) {
+                if (first.complete(new Attempt(call, response, hedge))) {
+                    return;
+                }
+                // 竞争失败的响应直接关闭
+                response.close();
+            } else if (left == 0) {
+                first.completeExceptionally(error);
+            }
+        }
+
+        Attempt await(Call origin, long timeoutMillis) throws IOException, TimeoutException {
+            long deadline = timeoutMillis == Long.MAX_VALUE ? Long.MAX_VALUE : System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+            while (true) {
+                if (origin.isCanceled()) {
+                    throw new IOException("Canceled");
+                }
+                long wait = Math.min(100, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()));
+                if (wait <= 0) {
+                    throw new TimeoutException();
+                }
+                try {
+                    return first.get(wait, TimeUnit.MILLISECONDS);
+                } catch (TimeoutException ignored) {
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("等待对冲请求被中断");
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+                }
+            }
+        }
+
+        void cancelLosers() {
+            // 全部失败时getNow会抛出异常, 覆盖掉原本要抛出的IOException
+            Attempt winner = first.isDone() && !first.isCompletedExceptionally() ? first.getNow(null) : null;
+            for (Call call : calls) {
+                if (winner == null || winner.call != call) {
+                    call.cancel();
+                }
+            }
+        }
+    }
+
+    private record Attempt(Call call, Response response, boolean hedge) {
+    }
+
+    /**
+     * 记录最近n次请求耗时的环形缓冲区
+     * <p>
+     * 分位值每新增{@link #REFRESH_INTERVAL}个样本才重新排序计算一次, 避免每个请求都排序
+     * </p>
+     */
+    private static class LatencyWindow {
+        private static final int REFRESH_INTERVAL = 32;
+
+        private final long[] samples;
+        private final AtomicLong index = new AtomicLong();
+        private volatile long cachedAt = -REFRESH_INTERVAL;
+        private volatile double cachedP;
+        private volatile long cachedValue;
+
+        LatencyWindow(int size) {
+            if (size <= 0) {
+                throw new IllegalArgumentException("windowSize必须大于0");
+            }
+            samples = new long[size];
+        }
+
+        void add(long millis) {
+            samples[(int) (index.getAndIncrement() % samples.length)] = millis;
+        }
+
+        int size() {
+            return (int) Math.min(index.get(), samples.length);
+        }
+
+        long percentile(double p) {
+            long cur = index.get();
+            if (cur - cachedAt < REFRESH_INTERVAL && cachedP == p) {
+                return cachedValue;
+            }
+            int size = size();
+            if (size == 0) {
+                return 0;
+            }
+            long[] copy = Arrays.copyOf(samples, size);
+            Arrays.sort(copy);
+            long value = copy[Math.max(0, Math.min(size - 1, (int) Math.ceil(p * size) - 1))];
+            cachedValue = value;
+            cachedP = p;
+            cachedAt = cur;
+            return value;
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package github.ag777.util.http.interceptor;
+
+import github.ag777.util.http.model.Deadline;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Serial;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 出站请求限流拦截器
+ * <p>
+ * 按host以及按请求的tag(即{@code HttpHelper.tag(...)}/{@code Request.Builder.tag(...)}设置的tag)分别限流, 每个key一个{@link TokenBucket}:
+ * <ul>
+ *     <li>{@link #perHost}/{@link #perTag}: 所有host/tag的默认限制</li>
+ *     <li>{@link #host}/{@link #tag}: 单独指定某个host/tag的限制, 优先于默认限制</li>
+ * </ul>
+ * 请求需要同时通过host和tag的限制。拿不到令牌时默认阻塞等待(sleep, 在虚拟线程中不会占用平台线程),
+ * 可以通过{@link #maxWait}限制最长等待时间, 或通过{@link #failFast()}不等待, 超出时抛出{@link RateLimitException}。
+ * 请求设置了截止时间(见{@link Deadline})时, 等待时间不会超过截止时间。
+ * </p>
+ * <p>
+ * 收到429或503且带有Retry-After响应头时, 对应的host和tag的桶会暂停相应的时间(不超过{@link #maxRetryAfter}), 避免继续触发服务端的封禁。
+ * </p>
+ *
+ * <pre>{@code
+ * RateLimitInterceptor limiter = new RateLimitInterceptor()
+ *         .perHost(50, 100)
+ *         .tag("api-key-1", 10, 10)
+ *         .maxWait(5, TimeUnit.SECONDS);
+ * OkHttpClient client = HttpUtils.builderWithInterceptor(null, limiter).build();
+ * new HttpHelper(client, "api-key-1").get(url).executeForStr();
+ * }</pre>
+ *
+ * @author ag777 <837915770@vip.qq.com>
+ * @version 2026/10/19
+ */
+public class RateLimitInterceptor implements Interceptor {
+
+    private final Map<String, TokenBucket> hostBuckets = new ConcurrentHashMap<>();
+    private final Map<Object, TokenBucket> tagBuckets = new ConcurrentHashMap<>();
+    private final Map<String, Limit> hostLimits = new ConcurrentHashMap<>();
+    private final Map<Object, Limit> tagLimits = new ConcurrentHashMap<>();
+    private volatile Limit defaultHostLimit;
+    private volatile Limit defaultTagLimit;
+
+    private long maxWaitNanos = Long.MAX_VALUE;
+    private boolean honorRetryAfter = true;
+    private long maxRetryAfterMillis = TimeUnit.MINUTES.toMillis(5);
+
+    /**
+     * @param permitsPerSecond 每个host每秒的请求数
+     * @param burst 允许的突发请求数
+     * @return self
+     */
+    public RateLimitInterceptor perHost(double permitsPerSecond, int burst) {
+        return perHost(permitsPerSecond, burst, 0, TimeUnit.SECONDS);
+    }
+
+    /**
+     * @param permitsPerSecond 每个host每秒的请求数
+     * @param burst 允许的突发请求数
+     * @param warmup 预热时长
+     * @param unit 时间单位
+     * @return self
+     */
+    public RateLimitInterceptor perHost(double permitsPerSecond, int burst, long warmup, TimeUnit unit) {
+        this.defaultHostLimit = new Limit(permitsPerSecond, burst, unit.toNanos(warmup));
+        return this;
+    }
+
+    /**
+     * @param host host
+     * @param permitsPerSecond 每秒请求数
+     * @param burst 允许的突发请求数
+     * @return self
+     */
+    public RateLimitInterceptor host(String host, double permitsPerSecond, int burst) {
+        hostLimits.put(host.toLowerCase(), new Limit(permitsPerSecond, burst, 0));
+        hostBuckets.remove(host.toLowerCase());
+        return this;
+    }
+
+    /**
+     * @param permitsPerSecond 每个tag每秒的请求数
+     * @param burst 允许的突发请求数
+     * @return self
+     */
+    public RateLimitInterceptor perTag(double permitsPerSecond, int burst) {
+        this.defaultTagLimit = new Limit(permitsPerSecond, burst, 0);
+        return this;
+    }
+
+    /**
+     * @param tag 请求的tag, 如api key
+     * @param permitsPerSecond 每秒请求数
+     * @param burst 允许的突发请求数
+     * @return self
+     */
+    public RateLimitInterceptor tag(Object tag, double permitsPerSecond, int burst) {
+        Objects.requireNonNull(tag, "tag不能为空");
+        tagLimits.put(tag, new Limit(permitsPerSecond, burst, 0));
+        tagBuckets.remove(tag);
+        return this;
+    }
+
+    /**
+     * @param maxWait 拿不到令牌时最多等待的时长, 默认一直等待
+     * @param unit 时间单位
+     * @return self
+     */
+    public RateLimitInterceptor maxWait(long maxWait, TimeUnit unit) {
+        this.maxWaitNanos = unit.toNanos(Math.max(0, maxWait));
+        return this;
+    }
+
+    /**
+     * 拿不到令牌时不等待, 直接抛出{@link RateLimitException}
+     * @return self
+     */
+    public RateLimitInterceptor failFast() {
+        this.maxWaitNanos = 0;
+        return this;
+    }
+
+    /**
+     * @param honorRetryAfter 是否根据429/503响应的Retry-After暂停, 默认是
+     * @return self
+     */
+    public RateLimitInterceptor retryAfter(boolean honorRetryAfter) {
+        this.honorRetryAfter = honorRetryAfter;
+        return this;
+    }
+
+    /**
+     * @param maxRetryAfter 单次暂停的上限, 默认5分钟
+     * @param unit 时间单位
+     * @return self
+     */
+    public RateLimitInterceptor maxRetryAfter(long maxRetryAfter, TimeUnit unit) {
+        this.maxRetryAfterMillis = unit.toMillis(maxRetryAfter);
+        return this;
+    }
+
+    /**
+     * @return 各个桶的统计, key为host:xxx或tag:xxx
+     */
+    public Map<String, TokenBucket.Stats> stats() {
+        Map<String, TokenBucket.Stats> map = new LinkedHashMap<>();
+        hostBuckets.forEach((host, bucket) -> map.put("host:" + host, bucket.stats()));
+        tagBuckets.forEach((tag, bucket) -> map.put("tag:" + tag, bucket.stats()));
+        return map;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        String host = request.url().host();
+        Object tag = request.tag();
+        TokenBucket hostBucket = hostBucket(host);
+        TokenBucket tagBucket = tag == null ? null : tagBucket(tag);
+
+        Deadline deadline = Deadline.of(chain);
+        acquire(chain, hostBucket, "host", host, deadline);
+        acquire(chain, tagBucket, "tag", tag, deadline);
+
+        Response response = chain.proceed(request);
+        if (honorRetryAfter && (response.code() == 429 || response.code() == 503)) {
+            long delay = retryAfterMillis(response);
+            if (delay > 0) {
+                if (hostBucket != null) {
+                    hostBucket.pause(delay, TimeUnit.MILLISECONDS);
+                }
+                if (tagBucket != null) {
+                    tagBucket.pause(delay, TimeUnit.MILLISECONDS);
+                }
+            }
+        }
+        return response;
+    }
+
+    private TokenBucket hostBucket(String host) {
+        Limit limit = hostLimits.getOrDefault(host, defaultHostLimit);
+        return limit == null ? null : hostBuckets.computeIfAbsent(host, k -> limit.newBucket());
+    }
+
+    private TokenBucket tagBucket(Object tag) {
+        Limit limit = tagLimits.getOrDefault(tag, defaultTagLimit);
+        return limit == null ? null : tagBuckets.computeIfAbsent(tag, k -> limit.newBucket());
+    }
+
+    private void acquire(Chain chain, TokenBucket bucket, String type, Object key, Deadline deadline) throws IOException {
+        if (bucket == null) {
+            return;
+        }
+        // 有截止时间时最多等到截止时间, 等不到直接失败, 不占用令牌
+        long maxWait = deadline == null ? maxWaitNanos : Math.min(maxWaitNanos, Math.max(0, deadline.remaining(TimeUnit.NANOSECONDS)));
+        long waitNanos = bucket.reserve(maxWait);
+        if (waitNanos < 0) {
+            throw new RateLimitException(type + "[" + key + "]超出限流(" + bucket.permitsPerSecond() + "/s)");
+        }
+        long until = System.nanoTime() + waitNanos;
+        try {
+            long remaining;
+            while ((remaining = until - System.nanoTime()) > 0) {
+                if (chain.call().isCanceled()) {
+                    throw new IOException("Canceled");
+                }
+                TimeUnit.NANOSECONDS.sleep(Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(100)));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("等待限流令牌被中断");
+        }
+    }
+
+    /**
+     * 解析Retry-After, 支持秒数和http日期两种格式
+     * @return 毫秒, 无法解析时返回0
+     */
+    private long retryAfterMillis(Response response) {
+        String value = response.header("Retry-After");
+        if (value == null) {
+            return 0;
+        }
+        long millis;
+        try {
+            millis = TimeUnit.SECONDS.toMillis(Long.parseLong(value.trim()));
+        } catch (NumberFormatException e) {
+            Date date = response.headers().getDate("Retry-After");
+            if (date == null) {
+                return 0;
+            }
+            millis = date.getTime() - System.currentTimeMillis();
+        }
+        return Math.max(0, Math.min(millis, maxRetryAfterMillis));
+    }
+
+    private record Limit(double permitsPerSecond, int burst, long warmupNanos) {
+        TokenBucket newBucket() {
+            return new TokenBucket(permitsPerSecond, burst, warmupNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * 超出限流且无法在maxWait内获得令牌
+     */
+    public static class RateLimitException extends IOException {
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        public RateLimitException(String message) {
+            super(message);
+        }
+    }
+}
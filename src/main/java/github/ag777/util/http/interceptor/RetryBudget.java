@@ -0,0 +1,85 @@
+package github.ag777.util.http.interceptor;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 重试预算(令牌桶)
+ * <p>
+ * 每个正常请求向桶里存入 ratio 个令牌, 每次重试消耗 1 个令牌, 令牌不足时不再重试。
+ * 这样可以保证重试流量不会超过总流量的 ratio 比例, 避免下游故障时重试放大流量形成雪崩。
+ * 桶内预留 minRetries 个初始令牌, 保证低流量时也能进行少量重试。
+ * </p>
+ *
+ * <pre>{@code
+ * // 重试量最多为请求量的10%, 初始/最大预留20次重试
+ * RetryBudget budget = new RetryBudget(0.1, 20);
+ * }</pre>
+ *
+ * @author ag777 <837915770@vip.qq.com>
+ * @version 2026/10/19
+ */
+public class RetryBudget {
+
+    /** 令牌放大倍数, 用整数运算代替浮点 */
+    private static final long SCALE = 1000;
+
+    private final long depositAmount;
+    private final long maxTokens;
+    private final AtomicLong tokens;
+
+    /**
+     * @param ratio 重试流量占总流量的最大比例, 如0.1表示10%
+     * @param minRetries 桶的初始令牌数, 同时决定桶的容量下限
+     */
+    public RetryBudget(double ratio, int minRetries) {
+        if (ratio < 0) {
+            throw new IllegalArgumentException("ratio不能小于0");
+        }
+        if (minRetries < 0) {
+            throw new IllegalArgumentException("minRetries不能小于0");
+        }
+        this.depositAmount = (long) (ratio * SCALE);
+        this.maxTokens = Math.max(minRetries, 1) * SCALE;
+        this.tokens = new AtomicLong(minRetries * SCALE);
+    }
+
+    /**
+     * 记录一次正常请求, 存入令牌
+     */
+    public void deposit() {
+        if (depositAmount <= 0) {
+            return;
+        }
+        long cur;
+        long next;
+        do {
+            cur = tokens.get();
+            if (cur >= maxTokens) {
+                return;
+            }
+            next = Math.min(maxTokens, cur + depositAmount);
+        } while (!tokens.compareAndSet(cur, next));
+    }
+
+    /**
+     * 尝试取出一次重试所需的令牌
+     * @return 是否允许重试
+     */
+    public boolean tryWithdraw() {
+        long cur;
+        do {
+            cur = tokens.get();
+            if (cur < SCALE) {
+                return false;
+            }
+        } while (!tokens.compareAndSet(cur, cur - SCALE));
+        return true;
+    }
+
+    /**
+     * @return 当前可用的重试次数
+     */
+    public long available() {
+        return tokens.get() / SCALE;
+    }
+}
@@ -0,0 +1,206 @@
+package github.ag777.util.http.interceptor;
+
+import github.ag777.util.http.model.Deadline;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 重试拦截器(指数退避 + 随机抖动)
+ * <p>
+ * 遇到连接失败、socket超时或者502/503/504等临时性错误时自动重试,
+ * 第n次重试前等待 random(0, min(maxDelay, baseDelay * 2^n)) 毫秒(full jitter),
+ * 避免大量客户端同时重试。
+ * 默认只对幂等请求(GET/HEAD/OPTIONS/PUT/DELETE/TRACE)重试, 可通过{@link #idempotentOnly(boolean)}关闭。
+ * 配合{@link RetryBudget}使用可以限制重试流量占总流量的比例。
+ * 请求设置了截止时间(见{@link Deadline})且剩余时间不够退避等待时不再重试, 直接返回最后一次的结果。
+ * </p>
+ *
+ * <pre>{@code
+ * OkHttpClient client = HttpUtils.builderWithInterceptor(null,
+ *         new RetryInterceptor()
+ *                 .maxRetries(3)
+ *                 .backoff(100, 2000)
+ *                 .budget(new RetryBudget(0.1, 10))
+ *         ).build();
+ * }</pre>
+ *
+ * @author ag777 <837915770@vip.qq.com>
+ * @version 2026/10/19
+ */
+public class RetryInterceptor implements Interceptor {
+
+    /** 幂等的请求方法 */
+    private static final Set<String> IDEMPOTENT_METHODS = Set.of("GET", "HEAD", "OPTIONS", "PUT", "DELETE", "TRACE");
+
+    private int maxRetries = 3;
+    private long baseDelayMillis = 100;
+    private long maxDelayMillis = 5000;
+    private Set<Integer> retryCodes = Set.of(502, 503, 504);
+    private boolean retryOnTimeout = true;
+    private boolean idempotentOnly = true;
+    private RetryBudget budget;
+
+    /**
+     * @param maxRetries 最大重试次数(不含首次请求), 默认3次
+     * @return self
+     */
+    public RetryInterceptor maxRetries(int maxRetries) {
+        this.maxRetries = Math.max(0, maxRetries);
+        return this;
+    }
+
+    /**
+     * 设置退避时间
+     * @param baseDelayMillis 基础等待时间, 默认100毫秒
+     * @param maxDelayMillis 单次等待上限, 默认5000毫秒
+     * @return self
+     */
+    public RetryInterceptor backoff(long baseDelayMillis, long maxDelayMillis) {
+        this.baseDelayMillis = Math.max(0, baseDelayMillis);
+        this.maxDelayMillis = Math.max(this.baseDelayMillis, maxDelayMillis);
+        return this;
+    }
+
+    /**
+     * @param codes 需要重试的响应码, 默认502、503、504
+     * @return self
+     */
+    public RetryInterceptor retryCodes(Integer... codes) {
+        this.retryCodes = codes == null ? Set.of() : Set.of(codes);
+        return this;
+    }
+
+    /**
+     * @param retryOnTimeout socket超时时是否重试, 默认是
+     * @return self
+     */
+    public RetryInterceptor retryOnTimeout(boolean retryOnTimeout) {
+        this.retryOnTimeout = retryOnTimeout;
+        return this;
+    }
+
+    /**
+     * @param idempotentOnly 是否只对幂等请求重试, 默认是
+     * @return self
+     */
+    public RetryInterceptor idempotentOnly(boolean idempotentOnly) {
+        this.idempotentOnly = idempotentOnly;
+        return this;
+    }
+
+    /**
+     * @param budget 重试预算, 为null时不限制
+     * @return self
+     */
+    public RetryInterceptor budget(RetryBudget budget) {
+        this.budget = budget;
+        return this;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        if (budget != null) {
+            budget.deposit();
+        }
+        boolean retryable = !idempotentOnly || isIdempotent(request.method());
+        Deadline deadline = Deadline.of(chain);
+
+        for (int attempt = 0; ; attempt++) {
+            Response response;
+            try {
+                response = chain.proceed(request);
+            } catch (IOException e) {
+                if (!retryable || attempt >= maxRetries || chain.call().isCanceled() || !isRetryable(e)) {
+                    throw e;
+                }
+                long delay = delayMillis(attempt);
+                if (!beforeDeadline(deadline, delay) || !withdraw()) {
+                    throw e;
+                }
+                sleep(delay);
+                continue;
+            }
+
+            if (!retryable || attempt >= maxRetries || !retryCodes.contains(response.code())) {
+                return response;
+            }
+            long delay = delayMillis(attempt);
+            if (!beforeDeadline(deadline, delay) || !withdraw()) {
+                return response;
+            }
+            response.close();
+            sleep(delay);
+        }
+    }
+
+    /**
+     * 判断请求方法是否是幂等的
+     * @param method 请求方法
+     * @return 是否幂等
+     */
+    public static boolean isIdempotent(String method) {
+        return method != null && IDEMPOTENT_METHODS.contains(method);
+    }
+
+    /**
+     * 计算第attempt次重试前的等待时间(full jitter)
+     * @param attempt 已失败次数, 从0开始
+     * @return 等待毫秒数
+     */
+    protected long delayMillis(int attempt) {
+        if (baseDelayMillis <= 0) {
+            return 0;
+        }
+        long cap = baseDelayMillis << Math.min(attempt, 30);
+        if (cap <= 0 || cap > maxDelayMillis) {
+            // 左移溢出或超过上限
+            cap = maxDelayMillis;
+        }
+        return ThreadLocalRandom.current().nextLong(cap + 1);
+    }
+
+    private boolean isRetryable(IOException e) {
+        if (e instanceof SocketTimeoutException) {
+            return retryOnTimeout;
+        }
+        if (e instanceof InterruptedIOException || e instanceof UnknownHostException) {
+            // 调用超时/中断以及域名不存在均不重试
+            return false;
+        }
+        // 连接被重置、连接失败等其余IO异常均视为临时性错误
+        return true;
+    }
+
+    /**
+     * @return 等待之后是否还在截止时间之前
+     */
+    private static boolean beforeDeadline(Deadline deadline, long delayMillis) {
+        return deadline == null || deadline.remaining(TimeUnit.MILLISECONDS) > delayMillis;
+    }
+
+    private boolean withdraw() {
+        return budget == null || budget.tryWithdraw();
+    }
+
+    private void sleep(long delay) throws InterruptedIOException {
+        if (delay <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("重试等待被中断");
+        }
+    }
+}
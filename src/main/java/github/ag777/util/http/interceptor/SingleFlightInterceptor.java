@@ -0,0 +1,186 @@
+package github.ag777.util.http.interceptor;
+
+import github.ag777.util.lang.IOUtils;
+import github.ag777.util.net.UriBuilder;
+import okhttp3.*;
+import okio.BufferedSource;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 请求合并拦截器(single-flight)
+ * <p>
+ * 多个相同的GET/HEAD请求(url+参数+请求头均相同)同时进行时, 只有第一个请求(leader)真正发出,
+ * 其余请求等待leader的结果, 并共享同一份响应(响应体会被整体读入内存)。
+ * 用于缓存失效瞬间大量相同请求同时打到上游的场景。
+ * </p>
+ * <p>
+ * 请求的key由请求方法、规范化后的url(通过{@link UriBuilder}按参数名排序)以及请求头组成。
+ * 响应体超过{@link #maxBodyBytes(long)}或者leader被取消时, 等待的请求会各自发出请求。
+ * leader请求失败时, 等待的请求会收到同样的异常。
+ * </p>
+ *
+ * <pre>{@code
+ * OkHttpClient client = HttpUtils.builderWithSingleFlight(null).build();
+ * // 或者直接使用
+ * HttpHelper.singleFlight(null).get(url, params, headers).executeForStr();
+ * }</pre>
+ *
+ * @author ag777 <837915770@vip.qq.com>
+ * @version 2026/10/19
+ */
+public class SingleFlightInterceptor implements Interceptor {
+
+    private final Map<String, CompletableFuture<Shared>> inflight = new ConcurrentHashMap<>();
+    private final AtomicLong leaderCount = new AtomicLong();
+    private final AtomicLong sharedCount = new AtomicLong();
+    private long maxBodyBytes = 8 * 1024 * 1024;
+
+    /**
+     * @param maxBodyBytes 可共享的响应体大小上限, 默认8MB
+     * @return self
+     */
+    public SingleFlightInterceptor maxBodyBytes(long maxBodyBytes) {
+        this.maxBodyBytes = Math.max(0, maxBodyBytes);
+        return this;
+    }
+
+    /**
+     * @return 真正发出的请求数
+     */
+    public long leaderCount() {
+        return leaderCount.get();
+    }
+
+    /**
+     * @return 共享了其它请求结果的请求数
+     */
+    public long sharedCount() {
+        return sharedCount.get();
+    }
+
+    /**
+     * 计算请求的key
+     * @param request 请求
+     * @return key
+     */
+    public static String key(Request request) {
+        StringBuilder sb = new StringBuilder(128)
+                .append(request.method())
+                .append(' ')
+                .append(UriBuilder.of(request.url().uri()).sortParams().fragment(null));
+        Headers headers = request.headers();
+        // names()返回的是忽略大小写排好序的集合
+        for (String name : headers.names()) {
+            sb.append('\n').append(name.toLowerCase()).append(':').append(String.join(",", headers.values(name)));
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        String method = request.method();
+        if (request.body() != null || !("GET".equals(method) || "HEAD".equals(method))) {
+            return chain.proceed(request);
+        }
+
+        String key = key(request);
+        CompletableFuture<Shared> future = new CompletableFuture<>();
+        CompletableFuture<Shared> existing = inflight.putIfAbsent(key, future);
+        if (existing != null) {
+            Shared shared = await(chain.call(), existing);
+            if (shared == null) {
+                // leader的结果无法共享
+                return chain.proceed(request);
+            }
+            sharedCount.incrementAndGet();
+            return shared.toResponse(request);
+        }
+
+        leaderCount.incrementAndGet();
+        try {
+            Response response = chain.proceed(request);
+            Shared shared;
+            try {
+                shared = Shared.of(response, maxBodyBytes);
+            } catch (IOException | RuntimeException e) {
+                // 响应不会返回给调用方, 需要在这里释放连接
+                IOUtils.close(response);
+                throw e;
+            }
+            future.complete(shared);
+            return response;
+        } catch (IOException | RuntimeException e) {
+            if (chain.call().isCanceled()) {
+                future.complete(null);
+            } else {
+                future.completeExceptionally(e);
+            }
+            throw e;
+        } finally {
+            inflight.remove(key, future);
+            // 兜底, 保证等待者不会一直阻塞
+            future.complete(null);
+        }
+    }
+
+    private Shared await(Call call, CompletableFuture<Shared> future) throws IOException {
+        while (true) {
+            if (call.isCanceled()) {
+                throw new IOException("Canceled");
+            }
+            try {
+                return future.get(100, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException ignored) {
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("等待合并请求结果被中断");
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+            }
+        }
+    }
+
+    /**
+     * 可共享的响应
+     */
+    private record Shared(Response response, byte[] body, MediaType mediaType) {
+
+        /**
+         * 将响应体读入内存, 原响应体仍可正常读取
+         * @return 响应体过大时返回null
+         */
+        static Shared of(Response response, long maxBodyBytes) throws IOException {
+            ResponseBody body = response.body();
+            if (body.contentLength() > maxBodyBytes) {
+                return null;
+            }
+            BufferedSource source = body.source();
+            if (source.request(maxBodyBytes + 1)) {
+                return null;
+            }
+            return new Shared(response, source.getBuffer().snapshot().toByteArray(), body.contentType());
+        }
+
+        Response toResponse(Request request) {
+            // 不使用response.newBuilder(), 避免带上leader请求的连接信息
+            return new Response.Builder()
+                    .request(request)
+                    .protocol(response.protocol())
+                    .code(response.code())
+                    .message(response.message())
+                    .handshake(response.handshake())
+                    .headers(response.headers())
+                    .body(ResponseBody.create(body, mediaType))
+                    .sentRequestAtMillis(response.sentRequestAtMillis())
+                    .receivedResponseAtMillis(response.receivedResponseAtMillis())
+                    .build();
+        }
+    }
+}
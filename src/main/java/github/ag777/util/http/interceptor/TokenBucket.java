@@ -0,0 +1,150 @@
+package github.ag777.util.http.interceptor;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 无锁令牌桶(GCRA实现)
+ * <p>
+ * 用一个原子变量记录"下一个令牌的理论可用时间"(tat), 获取令牌时CAS推进tat, 无需后台线程补充令牌:
+ * <ul>
+ *     <li>速率为permitsPerSecond, 空闲时最多积攒burst个令牌, 可以瞬间放行</li>
+ *     <li>{@link #reserve(long)}先预留令牌再等待, 等待中的请求按预留顺序依次放行</li>
+ *     <li>可选预热: 空闲超过预热时长后再次使用时, 速率从1/3逐渐线性恢复到permitsPerSecond, 预热期间不允许突发</li>
+ *     <li>{@link #pause(long, TimeUnit)}让桶暂停一段时间, 用于响应服务端的Retry-After</li>
+ * </ul>
+ * </p>
+ *
+ * <pre>{@code
+ * TokenBucket bucket = new TokenBucket(10, 20);
+ * long waitNanos = bucket.reserve(TimeUnit.SECONDS.toNanos(1));
+ * if (waitNanos < 0) {
+ *     // 1秒内拿不到令牌
+ * }
+ * }</pre>
+ *
+ * @author ag777 <837915770@vip.qq.com>
+ * @version 2026/10/19
+ */
+public class TokenBucket {
+
+    /** 预热开始时速率为正常速率的1/COLD_FACTOR */
+    private static final int COLD_FACTOR = 3;
+
+    private final double permitsPerSecond;
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final long warmupNanos;
+    private final AtomicLong tat;
+    private volatile long warmStart;
+
+    private final AtomicLong permitted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong pauseCount = new AtomicLong();
+
+    /**
+     * @param permitsPerSecond 每秒令牌数
+     * @param burst 最多积攒的令牌数(允许的突发请求数), 最小为1
+     */
+    public TokenBucket(double permitsPerSecond, int burst) {
+        this(permitsPerSecond, burst, 0, TimeUnit.SECONDS);
+    }
+
+    /**
+     * @param permitsPerSecond 每秒令牌数
+     * @param burst 最多积攒的令牌数(允许的突发请求数), 最小为1
+     * @param warmup 预热时长, 0表示不预热
+     * @param unit 时间单位
+     */
+    public TokenBucket(double permitsPerSecond, int burst, long warmup, TimeUnit unit) {
+        if (permitsPerSecond <= 0) {
+            throw new IllegalArgumentException("permitsPerSecond必须大于0");
+        }
+        this.permitsPerSecond = permitsPerSecond;
+        this.intervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond));
+        this.burstNanos = intervalNanos * Math.max(1, burst);
+        this.warmupNanos = unit.toNanos(Math.max(0, warmup));
+        long now = System.nanoTime();
+        // tat不晚于当前时间即表示桶是满的; 需要预热时视为刚从长时间空闲中恢复
+        this.tat = new AtomicLong(warmupNanos > 0 ? now - warmupNanos - 1 : now);
+        this.warmStart = now;
+    }
+
+    /**
+     * 预留一个令牌
+     * @param maxWaitNanos 最多可以接受的等待时长, 0表示不等待
+     * @return 需要等待的纳秒数(调用方自行等待后再发送), 无法在maxWaitNanos内获得令牌时返回-1且不消耗令牌
+     */
+    public long reserve(long maxWaitNanos) {
+        while (true) {
+            long now = System.nanoTime();
+            long cur = tat.get();
+            long interval = intervalNanos;
+            long burst = burstNanos;
+            if (warmupNanos > 0) {
+                if (now - cur > warmupNanos) {
+                    // 空闲超过预热时长, 重新预热
+                    warmStart = now;
+                }
+                long elapsed = now - warmStart;
+                if (elapsed < warmupNanos) {
+                    double factor = COLD_FACTOR - (COLD_FACTOR - 1) * (double) elapsed / warmupNanos;
+                    interval = (long) (intervalNanos * factor);
+                    burst = interval;
+                }
+            }
+            long next = Math.max(cur, now) + interval;
+            long wait = next - now - burst;
+            if (wait > maxWaitNanos) {
+                rejected.incrementAndGet();
+                return -1;
+            }
+            if (tat.compareAndSet(cur, next)) {
+                permitted.incrementAndGet();
+                return Math.max(0, wait);
+            }
+        }
+    }
+
+    /**
+     * 尝试立即获取一个令牌
+     * @return 是否获取成功
+     */
+    public boolean tryAcquire() {
+        return reserve(0) == 0;
+    }
+
+    /**
+     * 暂停发放令牌, 在此之后的请求至少等待到暂停结束, 暂停结束后按正常速率发放(不会积攒突发)
+     * @param delay 暂停时长
+     * @param unit 时间单位
+     */
+    public void pause(long delay, TimeUnit unit) {
+        long target = System.nanoTime() + unit.toNanos(delay) + burstNanos - intervalNanos;
+        tat.accumulateAndGet(target, Math::max);
+        pauseCount.incrementAndGet();
+    }
+
+    /**
+     * @return 每秒令牌数
+     */
+    public double permitsPerSecond() {
+        return permitsPerSecond;
+    }
+
+    /**
+     * @return 统计
+     */
+    public Stats stats() {
+        return new Stats(permitsPerSecond, permitted.get(), rejected.get(), pauseCount.get());
+    }
+
+    /**
+     * @param permitsPerSecond 每秒令牌数
+     * @param permitted 发放的令牌数
+     * @param rejected 拒绝的次数
+     * @param pauseCount 暂停的次数
+     */
+    public record Stats(double permitsPerSecond, long permitted, long rejected, long pauseCount) {
+    }
+}
@@ -0,0 +1,386 @@
+package github.ag777.util.http.metrics;
+
+import github.ag777.util.gson.GsonUtils;
+import okhttp3.*;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 基于{@link EventListener}的http客户端指标采集
+ * <p>
+ * 按路由(host:port)分别统计请求各阶段的耗时直方图, 以及连接复用率、上下行字节数等计数:
+ * <ul>
+ *     <li>queue: 在Dispatcher中排队的时间(仅异步请求)</li>
+ *     <li>dns / connect / secure_connect: 域名解析、建立连接、TLS握手</li>
+ *     <li>request_headers / request_body: 发送请求头、请求体</li>
+ *     <li>server: 请求发送完毕到开始收到响应头, 近似为服务端处理时间</li>
+ *     <li>response_headers / response_body: 接收响应头、响应体</li>
+ *     <li>call: 整个请求从开始到结束(含重定向和重试)</li>
+ * </ul>
+ * 直方图均为无锁实现, 可通过{@link #snapshot()}或{@link #toJson()}随时导出。
+ * 其它组件也可以通过{@link #route(String)}记录自定义的耗时和计数。
+ * 域名解析没有端口, 其指标(见CachingDns)按host单独记录在{@link #dns(String)}中, 不与路由混在一起。
+ * </p>
+ * <p>
+ * 注意: OkHttpClient只能设置一个EventListener.Factory, 安装后会替换之前设置的监听。
+ * </p>
+ *
+ * <pre>{@code
+ * HttpMetrics metrics = new HttpMetrics();
+ * OkHttpClient client = HttpUtils.builderWithMetrics(null, metrics).build();
+ * ...
+ * System.out.println(metrics.toJson());
+ * }</pre>
+ *
+ * @author ag777 <837915770@vip.qq.com>
+ * @version 2026/10/19
+ */
+public class HttpMetrics implements EventListener.Factory {
+
+    public static final String QUEUE = "queue";
+    public static final String DNS = "dns";
+    public static final String CONNECT = "connect";
+    public static final String SECURE_CONNECT = "secure_connect";
+    public static final String REQUEST_HEADERS = "request_headers";
+    public static final String REQUEST_BODY = "request_body";
+    public static final String SERVER = "server";
+    public static final String RESPONSE_HEADERS = "response_headers";
+    public static final String RESPONSE_BODY = "response_body";
+    public static final String CALL = "call";
+    /** 压缩请求体的耗时 */
+    public static final String COMPRESS = "compress";
+    /** 实际发起域名解析的耗时(不含缓存命中), 见CachingDns, 记录在{@link #dns(String)}中 */
+    public static final String DNS_RESOLVE = "dns_resolve";
+
+    public static final String CALLS = "calls";
+    public static final String FAILURES = "failures";
+    public static final String CONNECT_FAILURES = "connect_failures";
+    public static final String CONNECTIONS_ACQUIRED = "connections_acquired";
+    public static final String CONNECTIONS_REUSED = "connections_reused";
+    public static final String BYTES_OUT = "bytes_out";
+    public static final String BYTES_IN = "bytes_in";
+    /** 请求体压缩前后的字节数, 见CompressionInterceptor */
+    public static final String REQUEST_UNCOMPRESSED_BYTES = "request_uncompressed_bytes";
+    public static final String REQUEST_COMPRESSED_BYTES = "request_compressed_bytes";
+    /** 响应体解压前后的字节数, 见CompressionInterceptor */
+    public static final String RESPONSE_UNCOMPRESSED_BYTES = "response_uncompressed_bytes";
+    public static final String RESPONSE_COMPRESSED_BYTES = "response_compressed_bytes";
+    /** 域名解析缓存的命中、未命中、解析失败、后台刷新次数, 见CachingDns, 记录在{@link #dns(String)}中 */
+    public static final String DNS_CACHE_HITS = "dns_cache_hits";
+    public static final String DNS_CACHE_MISSES = "dns_cache_misses";
+    public static final String DNS_FAILURES = "dns_failures";
+    public static final String DNS_REFRESHES = "dns_refreshes";
+
+    private final Map<String, RouteMetrics> routes = new ConcurrentHashMap<>();
+    /** 域名解析的指标, 按host记录 */
+    private final Map<String, RouteMetrics> dnsHosts = new ConcurrentHashMap<>();
+
+    /**
+     * 获取路由对应的指标, 不存在则创建
+     * @param route 路由, 一般通过{@link #routeKey(HttpUrl)}得到
+     * @return 路由指标
+     */
+    public RouteMetrics route(String route) {
+        return routes.computeIfAbsent(route, RouteMetrics::new);
+    }
+
+    /**
+     * 获取域名解析的指标, 不存在则创建
+     * @param host 域名(小写)
+     * @return 该域名的指标
+     */
+    public RouteMetrics dns(String host) {
+        return dnsHosts.computeIfAbsent(host, RouteMetrics::new);
+    }
+
+    /**
+     * @param url url
+     * @return host:port
+     */
+    public static String routeKey(HttpUrl url) {
+        return url.host() + ":" + url.port();
+    }
+
+    /**
+     * @return 所有路由的指标快照, 按路由排序
+     */
+    public Map<String, Snapshot> snapshot() {
+        Map<String, Snapshot> map = new TreeMap<>();
+        routes.forEach((route, metrics) -> map.put(route, metrics.snapshot()));
+        return map;
+    }
+
+    /**
+     * @return 所有域名解析的指标快照, 按host排序
+     */
+    public Map<String, Snapshot> dnsSnapshot() {
+        Map<String, Snapshot> map = new TreeMap<>();
+        dnsHosts.forEach((host, metrics) -> map.put(host, metrics.snapshot()));
+        return map;
+    }
+
+    /**
+     * @return 指标快照的json, 格式为{"routes": {路由: 快照}, "dns": {host: 快照}}
+     */
+    public String toJson() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("routes", snapshot());
+        map.put("dns", dnsSnapshot());
+        return GsonUtils.get().toJson(map);
+    }
+
+    /**
+     * 清空所有指标
+     */
+    public void reset() {
+        routes.clear();
+        dnsHosts.clear();
+    }
+
+    @Override
+    public EventListener create(Call call) {
+        return new CallListener(route(routeKey(call.request().url())));
+    }
+
+    /**
+     * 单个路由的指标
+     */
+    public static class RouteMetrics {
+
+        private final String route;
+        private final Map<String, LatencyHistogram> timings = new ConcurrentHashMap<>();
+        private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+
+        RouteMetrics(String route) {
+            this.route = route;
+        }
+
+        /**
+         * @return 路由(host:port)
+         */
+        public String route() {
+            return route;
+        }
+
+        /**
+         * @param name 阶段名称
+         * @return 对应的直方图, 不存在则创建
+         */
+        public LatencyHistogram timing(String name) {
+            return timings.computeIfAbsent(name, k -> new LatencyHistogram());
+        }
+
+        /**
+         * 记录耗时
+         * @param name 阶段名称
+         * @param nanos 耗时(纳秒)
+         */
+        public void record(String name, long nanos) {
+            timing(name).record(nanos);
+        }
+
+        /**
+         * 累加计数
+         * @param name 计数名称
+         * @param delta 增量
+         */
+        public void add(String name, long delta) {
+            counters.computeIfAbsent(name, k -> new LongAdder()).add(delta);
+        }
+
+        /**
+         * @param name 计数名称
+         * @return 当前计数
+         */
+        public long count(String name) {
+            LongAdder adder = counters.get(name);
+            return adder == null ? 0 : adder.sum();
+        }
+
+        /**
+         * @return 连接复用率, 没有获取过连接时返回0
+         */
+        public double reuseRatio() {
+            long acquired = count(CONNECTIONS_ACQUIRED);
+            return acquired == 0 ? 0 : Math.round(count(CONNECTIONS_REUSED) * 10000d / acquired) / 10000d;
+        }
+
+        /**
+         * @return 快照
+         */
+        public Snapshot snapshot() {
+            Map<String, Long> counterMap = new TreeMap<>();
+            counters.forEach((name, adder) -> counterMap.put(name, adder.sum()));
+            Map<String, LatencyHistogram.Snapshot> timingMap = new TreeMap<>();
+            timings.forEach((name, histogram) -> timingMap.put(name, histogram.snapshot()));
+            return new Snapshot(route, reuseRatio(), counterMap, timingMap);
+        }
+    }
+
+    /**
+     * 路由指标快照, 耗时单位为毫秒
+     */
+    public record Snapshot(String route, double reuseRatio, Map<String, Long> counters, Map<String, LatencyHistogram.Snapshot> timings) {
+    }
+
+    /**
+     * 单个请求的事件监听, 记录各阶段的开始时间
+     * <p>
+     * 同一个请求的事件是顺序回调的, 字段无需同步
+     * </p>
+     */
+    private static class CallListener extends EventListener {
+
+        private final RouteMetrics metrics;
+        private long callStart;
+        private long queueStart;
+        private long dnsStart;
+        private long connectStart;
+        private long secureConnectStart;
+        private long requestHeadersStart;
+        private long requestBodyStart;
+        private long requestEnd;
+        private long responseHeadersStart;
+        private long responseBodyStart;
+        private boolean connected;
+
+        CallListener(RouteMetrics metrics) {
+            this.metrics = metrics;
+        }
+
+        @Override
+        public void callStart(Call call) {
+            callStart = System.nanoTime();
+            metrics.add(CALLS, 1);
+        }
+
+        @Override
+        public void dispatcherQueueStart(Call call, Dispatcher dispatcher) {
+            queueStart = System.nanoTime();
+        }
+
+        @Override
+        public void dispatcherQueueEnd(Call call, Dispatcher dispatcher) {
+            since(QUEUE, queueStart);
+        }
+
+        @Override
+        public void dnsStart(Call call, String domainName) {
+            dnsStart = System.nanoTime();
+        }
+
+        @Override
+        public void dnsEnd(Call call, String domainName, List<InetAddress> inetAddressList) {
+            since(DNS, dnsStart);
+        }
+
+        @Override
+        public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+            connectStart = System.nanoTime();
+            connected = true;
+        }
+
+        @Override
+        public void secureConnectStart(Call call) {
+            secureConnectStart = System.nanoTime();
+        }
+
+        @Override
+        public void secureConnectEnd(Call call, Handshake handshake) {
+            since(SECURE_CONNECT, secureConnectStart);
+        }
+
+        @Override
+        public void connectEnd(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol) {
+            since(CONNECT, connectStart);
+        }
+
+        @Override
+        public void connectFailed(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol, IOException ioe) {
+            metrics.add(CONNECT_FAILURES, 1);
+        }
+
+        @Override
+        public void connectionAcquired(Call call, Connection connection) {
+            metrics.add(CONNECTIONS_ACQUIRED, 1);
+            if (!connected) {
+                metrics.add(CONNECTIONS_REUSED, 1);
+            }
+            connected = false;
+        }
+
+        @Override
+        public void requestHeadersStart(Call call) {
+            requestHeadersStart = System.nanoTime();
+        }
+
+        @Override
+        public void requestHeadersEnd(Call call, Request request) {
+            requestEnd = System.nanoTime();
+            metrics.record(REQUEST_HEADERS, requestEnd - requestHeadersStart);
+        }
+
+        @Override
+        public void requestBodyStart(Call call) {
+            requestBodyStart = System.nanoTime();
+        }
+
+        @Override
+        public void requestBodyEnd(Call call, long byteCount) {
+            requestEnd = System.nanoTime();
+            metrics.record(REQUEST_BODY, requestEnd - requestBodyStart);
+            metrics.add(BYTES_OUT, byteCount);
+        }
+
+        @Override
+        public void responseHeadersStart(Call call) {
+            responseHeadersStart = System.nanoTime();
+            if (requestEnd != 0) {
+                metrics.record(SERVER, responseHeadersStart - requestEnd);
+                requestEnd = 0;
+            }
+        }
+
+        @Override
+        public void responseHeadersEnd(Call call, Response response) {
+            since(RESPONSE_HEADERS, responseHeadersStart);
+        }
+
+        @Override
+        public void responseBodyStart(Call call) {
+            responseBodyStart = System.nanoTime();
+        }
+
+        @Override
+        public void responseBodyEnd(Call call, long byteCount) {
+            since(RESPONSE_BODY, responseBodyStart);
+            metrics.add(BYTES_IN, byteCount);
+        }
+
+        @Override
+        public void callEnd(Call call) {
+            since(CALL, callStart);
+        }
+
+        @Override
+        public void callFailed(Call call, IOException ioe) {
+            metrics.add(FAILURES, 1);
+            since(CALL, callStart);
+        }
+
+        private void since(String name, long start) {
+            if (start != 0) {
+                metrics.record(name, System.nanoTime() - start);
+            }
+        }
+    }
+}
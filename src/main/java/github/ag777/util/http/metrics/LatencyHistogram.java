@@ -0,0 +1,153 @@
+package github.ag777.util.http.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 无锁的延迟直方图
+ * <p>
+ * 以微秒为单位记录, 按2的幂分段, 每段再等分为8个桶(对数线性分桶, 相对误差不超过12.5%)。
+ * 记录只涉及几次原子加法, 适合在请求的热路径上使用; 读取分位数时遍历全部桶, 适合低频的监控采集。
+ * </p>
+ *
+ * <pre>{@code
+ * LatencyHistogram histogram = new LatencyHistogram();
+ * histogram.record(System.nanoTime() - start);
+ * double p99 = histogram.percentile(99);   // 毫秒
+ * }</pre>
+ *
+ * @author ag777 <837915770@vip.qq.com>
+ * @version 2026/10/19
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BITS = 3;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int BUCKET_COUNT = (64 - SUB_BITS) * SUB_COUNT;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sumMicros = new LongAdder();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    /**
+     * 记录一次耗时
+     * @param nanos 耗时(纳秒), 小于0时忽略
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            return;
+        }
+        long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+        buckets.incrementAndGet(indexOf(micros));
+        count.increment();
+        sumMicros.add(micros);
+        if (micros > maxMicros.get()) {
+            maxMicros.accumulateAndGet(micros, Math::max);
+        }
+    }
+
+    /**
+     * @return 记录次数
+     */
+    public long count() {
+        return count.sum();
+    }
+
+    /**
+     * 获取分位数
+     * @param percentile 百分位, 如99表示p99
+     * @return 耗时(毫秒), 没有记录时返回0
+     */
+    public double percentile(double percentile) {
+        long total = 0;
+        long[] counts = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+        return percentile(counts, total, percentile, maxMicros.get());
+    }
+
+    /**
+     * 获取当前快照, 各分位数基于同一份桶数据计算
+     * @return 快照
+     */
+    public Snapshot snapshot() {
+        long total = 0;
+        long[] counts = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+        long max = maxMicros.get();
+        double mean = total == 0 ? 0 : sumMicros.sum() / 1000d / total;
+        return new Snapshot(
+                total,
+                round(mean),
+                percentile(counts, total, 50, max),
+                percentile(counts, total, 90, max),
+                percentile(counts, total, 99, max),
+                percentile(counts, total, 99.9, max),
+                round(max / 1000d));
+    }
+
+    /**
+     * 清空所有记录
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets.set(i, 0);
+        }
+        count.reset();
+        sumMicros.reset();
+        maxMicros.set(0);
+    }
+
+    private static double percentile(long[] counts, long total, double percentile, long maxMicros) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(total * Math.min(100, Math.max(0, percentile)) / 100d);
+        rank = Math.max(1, rank);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return round(Math.min(upperBound(i), maxMicros) / 1000d);
+            }
+        }
+        return round(maxMicros / 1000d);
+    }
+
+    static int indexOf(long micros) {
+        if (micros < SUB_COUNT) {
+            return (int) micros;
+        }
+        int exp = 63 - Long.numberOfLeadingZeros(micros);
+        int sub = (int) (micros >>> (exp - SUB_BITS)) & (SUB_COUNT - 1);
+        return (exp - SUB_BITS + 1) * SUB_COUNT + sub;
+    }
+
+    static long upperBound(int index) {
+        if (index < SUB_COUNT) {
+            return index;
+        }
+        int exp = index / SUB_COUNT + SUB_BITS - 1;
+        int sub = index % SUB_COUNT;
+        long width = 1L << (exp - SUB_BITS);
+        return ((SUB_COUNT + sub) * width) + width - 1;
+    }
+
+    private static double round(double millis) {
+        return Math.round(millis * 1000) / 1000d;
+    }
+
+    /**
+     * 直方图快照, 耗时单位均为毫秒
+     */
+    public record Snapshot(long count, double mean, double p50, double p90, double p99, double p999, double max) {
+    }
+}
@@ -0,0 +1,222 @@
+package github.ag777.util.http.model;
+
+import okhttp3.Call;
+import okhttp3.Interceptor;
+
+import java.io.InterruptedIOException;
+import java.io.Serial;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 请求的截止时间
+ * <p>
+ * 基于System.nanoTime()的绝对时间点, 与相对的超时时长不同, 截止时间在重试、重定向以及嵌套调用之间传递时不会被"重新计时":
+ * <ul>
+ *     <li>{@link MyCall#deadline(Deadline)}/{@link MyCall#timeout(long, TimeUnit)}: 单个请求的截止时间, 设置到{@code Call.timeout()}上,
+ *     覆盖整个调用过程(含拦截器中的重试和等待), 不需要为不同的超时新建OkHttpClient</li>
+ *     <li>{@link #bind()}: 在当前线程上绑定截止时间, 作用域内通过MyCall或HttpUtils发出的请求都会继承该截止时间, 嵌套绑定时取更早的那个</li>
+ *     <li>{@code Request.Builder.tag(Deadline.class, deadline)}: 通过请求的tag携带截止时间</li>
+ * </ul>
+ * 多个来源同时存在时取最早的。拦截器可以通过{@link #of(Interceptor.Chain)}获取当前请求的截止时间,
+ * 比如重试拦截器在剩余时间不够退避等待时不再重试。
+ * </p>
+ * <p>
+ * 截止时间只在发送请求时通过{@link #applyTo(Call, Deadline)}设置到{@code Call.timeout()}上, 以下途径会自动设置:
+ * <ul>
+ *     <li>MyCall的executeXxx系列方法, 包括SSE断线重连时新建的请求(截止时间覆盖整个读取过程)</li>
+ *     <li>{@code HttpUtils.execute(Call)}, 即HttpEasy等工具方法发出的请求</li>
+ *     <li>{@code HttpUtils.enqueue(Call, Callback)}, 在提交时确定截止时间</li>
+ *     <li>HedgeInterceptor克隆出的请求, 沿用原请求的截止时间</li>
+ * </ul>
+ * 直接调用OkHttp的{@code Call.execute()/enqueue()}时不会读取请求tag和当前线程绑定的截止时间, 只有事先设置到{@code Call.timeout()}上的才会生效。
+ * </p>
+ *
+ * <pre>{@code
+ * try (Deadline.Scope scope = Deadline.after(3, TimeUnit.SECONDS).bind()) {
+ *     // 两个请求加起来不超过3秒
+ *     String token = helper.get(tokenUrl).executeForStr().orElseThrow();
+ *     helper.get(dataUrl).timeout(1, TimeUnit.SECONDS).executeForStr();
+ * }
+ * }</pre>
+ *
+ * @author ag777 <837915770@vip.qq.com>
+ * @version 2026/10/19
+ */
+public final class Deadline implements Comparable<Deadline> {
+
+    private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<>();
+
+    private final long nanoTime;
+
+    private Deadline(long nanoTime) {
+        this.nanoTime = nanoTime;
+    }
+
+    /**
+     * @param timeout 从现在开始的时长
+     * @param unit 时间单位
+     * @return 截止时间
+     */
+    public static Deadline after(long timeout, TimeUnit unit) {
+        return new Deadline(System.nanoTime() + unit.toNanos(Math.max(0, timeout)));
+    }
+
+    /**
+     * @param nanoTime 以System.nanoTime()表示的截止时间
+     * @return 截止时间
+     */
+    public static Deadline atNanoTime(long nanoTime) {
+        return new Deadline(nanoTime);
+    }
+
+    /**
+     * @return 当前线程绑定的截止时间, 没有时返回null
+     */
+    public static Deadline current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * 获取拦截器中当前请求的截止时间
+     * <p>
+     * 取请求tag中的截止时间和{@code Call.timeout()}上设置的截止时间中较早的一个
+     * </p>
+     * @param chain chain
+     * @return 截止时间, 没有时返回null
+     */
+    public static Deadline of(Interceptor.Chain chain) {
+        Deadline deadline = chain.request().tag(Deadline.class);
+        okio.Timeout timeout = chain.call().timeout();
+        if (timeout.hasDeadline()) {
+            deadline = earliest(deadline, new Deadline(timeout.deadlineNanoTime()));
+        }
+        return deadline;
+    }
+
+    /**
+     * @param a 截止时间, 可以为null
+     * @param b 截止时间, 可以为null
+     * @return 较早的一个, 都为null时返回null
+     */
+    public static Deadline earliest(Deadline a, Deadline b) {
+        if (a == null) {
+            return b;
+        }
+        if (b == null) {
+            return a;
+        }
+        return a.compareTo(b) <= 0 ? a : b;
+    }
+
+    /**
+     * 将请求tag、当前线程绑定的截止时间以及额外指定的截止时间中最早的一个设置到call上
+     * <p>
+     * 需要在call执行之前调用
+     * </p>
+     * @param call call
+     * @param deadline 额外指定的截止时间, 可以为null
+     * @throws DeadlineExceededException 已经超过截止时间
+     */
+    public static void applyTo(Call call, Deadline deadline) throws DeadlineExceededException {
+        Deadline effective = earliest(earliest(deadline, current()), call.request().tag(Deadline.class));
+        if (effective == null) {
+            return;
+        }
+        okio.Timeout timeout = call.timeout();
+        if (timeout.hasDeadline() && timeout.deadlineNanoTime() - effective.nanoTime <= 0) {
+            return;
+        }
+        if (effective.isExpired()) {
+            throw new DeadlineExceededException("请求在发出前已超过截止时间: " + call.request().url());
+        }
+        timeout.deadlineNanoTime(effective.nanoTime);
+    }
+
+    /**
+     * 在当前线程上绑定截止时间, 已经绑定了更早的截止时间时保持不变
+     * <p>
+     * 必须在同一个线程中关闭返回的作用域(建议使用try-with-resources), 关闭后恢复之前的截止时间。
+     * 新开的线程不会继承, 需要在新线程中再次绑定
+     * </p>
+     * @return 作用域
+     */
+    public Scope bind() {
+        Deadline previous = CURRENT.get();
+        CURRENT.set(earliest(previous, this));
+        return new Scope(previous);
+    }
+
+    /**
+     * @param unit 时间单位
+     * @return 剩余时间, 已过期时为负数
+     */
+    public long remaining(TimeUnit unit) {
+        return unit.convert(nanoTime - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return 是否已过期
+     */
+    public boolean isExpired() {
+        return nanoTime - System.nanoTime() <= 0;
+    }
+
+    /**
+     * @return 以System.nanoTime()表示的截止时间
+     */
+    public long nanoTime() {
+        return nanoTime;
+    }
+
+    @Override
+    public int compareTo(Deadline o) {
+        return Long.compare(nanoTime - o.nanoTime, 0);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Deadline && ((Deadline) o).nanoTime == nanoTime;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(nanoTime);
+    }
+
+    @Override
+    public String toString() {
+        return "Deadline[" + remaining(TimeUnit.MILLISECONDS) + "ms]";
+    }
+
+    /**
+     * 截止时间的作用域, 关闭时恢复之前的截止时间
+     */
+    public static final class Scope implements AutoCloseable {
+        private final Deadline previous;
+
+        private Scope(Deadline previous) {
+            this.previous = previous;
+        }
+
+        @Override
+        public void close() {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    /**
+     * 已经超过截止时间
+     */
+    public static class DeadlineExceededException extends InterruptedIOException {
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        public DeadlineExceededException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package github.ag777.util.http.model;
+
+import github.ag777.util.gson.GsonUtils;
+import github.ag777.util.lang.exception.model.GsonSyntaxException;
+import okio.BufferedSource;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.function.Consumer;
+
+/**
+ * 流式响应体解析
+ * <p>
+ * 直接从OkHttp的{@link BufferedSource}中逐行读取, 每解析出一条数据就回调一次, 不会把整个响应体读入内存:
+ * <ul>
+ *     <li>NDJSON(application/x-ndjson): 每行一个json, 空行忽略</li>
+ *     <li>Server-Sent Events(text/event-stream): 按规范解析event/data/id/retry字段, 空行分隔事件, 冒号开头的行为注释</li>
+ * </ul>
+ * SSE解析器会记录最近一次的事件id和服务端指定的重连间隔, 同一个实例可以在断线重连后继续使用。
+ * </p>
+ *
+ * <pre>{@code
+ * try (Response response = call.execute()) {
+ *     EventStreamReader.readNdjson(response.body().source(), Item.class, item -> ...);
+ * }
+ * }</pre>
+ *
+ * @author ag777 <837915770@vip.qq.com>
+ * @version 2026/10/19
+ */
+public class EventStreamReader {
+
+    private String lastEventId;
+    private long retry = -1;
+
+    /**
+     * 逐行读取NDJSON
+     * @param source 数据源
+     * @param type 每行对应的类型
+     * @param consumer 回调
+     * @param <T> 每行对应的类型
+     * @throws IOException 读取失败
+     * @throws GsonSyntaxException json转换失败
+     */
+    public static <T> void readNdjson(BufferedSource source, Type type, Consumer<T> consumer) throws IOException, GsonSyntaxException {
+        GsonUtils gson = GsonUtils.get();
+        String line;
+        while ((line = source.readUtf8Line()) != null) {
+            if (line.isBlank()) {
+                continue;
+            }
+            T item = gson.fromJsonWithException(line, type);
+            consumer.accept(item);
+        }
+    }
+
+    /**
+     * @return 最近一次收到的事件id
+     */
+    public String lastEventId() {
+        return lastEventId;
+    }
+
+    /**
+     * @return 服务端指定的重连间隔(毫秒), 未指定时为-1
+     */
+    public long retry() {
+        return retry;
+    }
+
+    /**
+     * 读取Server-Sent Events, 直到流结束
+     * @param source 数据源
+     * @param consumer 回调
+     * @throws IOException 读取失败
+     */
+    public void readEvents(BufferedSource source, Consumer<ServerSentEvent> consumer) throws IOException {
+        StringBuilder data = new StringBuilder();
+        boolean hasData = false;
+        String event = null;
+        String line;
+        while ((line = source.readUtf8Line()) != null) {
+            if (line.isEmpty()) {
+                // 分发事件
+                if (hasData) {
+                    consumer.accept(new ServerSentEvent(lastEventId, event == null ? "message" : event, data.toString(), retry));
+                }
+                data.setLength(0);
+                hasData = false;
+                event = null;
+                continue;
+            }
+            if (line.charAt(0) == ':') {
+                // 注释, 一般用于心跳
+                continue;
+            }
+            int colon = line.indexOf(':');
+            String field = colon == -1 ? line : line.substring(0, colon);
+            String value = "";
+            if (colon != -1) {
+                int start = colon + 1;
+                if (start < line.length() && line.charAt(start) == ' ') {
+                    start++;
+                }
+                value = line.substring(start);
+            }
+            switch (field) {
+                case "data" -> {
+                    if (hasData) {
+                        data.append('\n');
+                    }
+                    data.append(value);
+                    hasData = true;
+                }
+                case "event" -> event = value;
+                case "id" -> {
+                    if (value.indexOf('\0') == -1) {
+                        lastEventId = value;
+                    }
+                }
+                case "retry" -> {
+                    if (!value.isEmpty() && value.chars().allMatch(Character::isDigit)) {
+                        try {
+                            retry = Long.parseLong(value);
+                        } catch (NumberFormatException ignored) {
+                        }
+                    }
+                }
+                default -> {
+                    // 未知字段, 忽略
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,397 @@
+package github.ag777.util.http.model;
+
+import okio.BufferedSink;
+import okio.Utf8;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * 查询参数/表单参数编码工具
+ * <p>
+ * 编码结果与{@code URLEncoder.encode(value, UTF_8)}一致(空格编码为+), 但直接写入调用方提供的{@link StringBuilder}或{@link BufferedSink},
+ * 通过预先计算的安全字符表逐字符判断, 不会为每个值创建中间字符串; 基本类型数组直接按类型处理, 不走反射。
+ * </p>
+ * <p>
+ * 参数拼接规则与{@code HttpUtils}保持一致:
+ * <ul>
+ *     <li>key不做编码</li>
+ *     <li>值为null时输出{@code key=}</li>
+ *     <li>数组和集合展开为多个{@code key=value}, 为空时整个参数不输出</li>
+ * </ul>
+ * </p>
+ *
+ * <pre>{@code
+ * StringBuilder sb = new StringBuilder(url).append('?');
+ * FormEncoder.appendParams(sb, params, true);
+ * }</pre>
+ *
+ * @author ag777 <837915770@vip.qq.com>
+ * @version 2026/10/19
+ */
+public final class FormEncoder {
+
+    private static final boolean[] SAFE = new boolean[128];
+    private static final byte[] HEX = "0123456789ABCDEF".getBytes();
+
+    static {
+        for (char c = 'a'; c <= 'z'; c++) {
+            SAFE[c] = true;
+        }
+        for (char c = 'A'; c <= 'Z'; c++) {
+            SAFE[c] = true;
+        }
+        for (char c = '0'; c <= '9'; c++) {
+            SAFE[c] = true;
+        }
+        SAFE['.'] = true;
+        SAFE['-'] = true;
+        SAFE['*'] = true;
+        SAFE['_'] = true;
+    }
+
+    private FormEncoder() {
+    }
+
+    /**
+     * 拼接参数
+     * @param params 参数表
+     * @param encode 是否对值进行编码
+     * @return 参数串, params为null时返回空字符串
+     */
+    public static String toParamStr(Map<?, ?> params, boolean encode) {
+        if (params == null || params.isEmpty()) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder(params.size() * 16);
+        appendParams(sb, params, encode);
+        return sb.toString();
+    }
+
+    /**
+     * 将参数追加到sb中
+     * @param sb 目标
+     * @param params 参数表
+     * @param encode 是否对值进行编码
+     * @return 是否追加了内容
+     */
+    public static boolean appendParams(StringBuilder sb, Map<?, ?> params, boolean encode) {
+        if (params == null) {
+            return false;
+        }
+        try {
+            return writeParams(new BuilderOut(sb), params, encode);
+        } catch (IOException e) {
+            // StringBuilder不会抛出IO异常
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 将编码后的参数直接写入sink
+     * @param sink 目标
+     * @param params 参数表
+     * @throws IOException 写出失败
+     */
+    public static void writeParams(BufferedSink sink, Map<?, ?> params) throws IOException {
+        if (params != null) {
+            writeParams(new SinkOut(sink), params, true);
+        }
+    }
+
+    /**
+     * @param params 参数表
+     * @return 编码后参数串的字节数(utf-8)
+     */
+    public static long encodedLength(Map<?, ?> params) {
+        if (params == null) {
+            return 0;
+        }
+        CountOut out = new CountOut();
+        try {
+            writeParams(out, params, true);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return out.count;
+    }
+
+    /**
+     * 对单个值进行编码并追加到sb中
+     * @param sb 目标
+     * @param value 值
+     */
+    public static void appendEncoded(StringBuilder sb, CharSequence value) {
+        if (value == null) {
+            return;
+        }
+        try {
+            encode(new BuilderOut(sb), value);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @param value 值
+     * @return 编码后的值, 不需要编码时直接返回原字符串
+     */
+    public static String encode(String value) {
+        if (value == null || value.isEmpty()) {
+            return "";
+        }
+        int len = value.length();
+        for (int i = 0; i < len; i++) {
+            char c = value.charAt(i);
+            if (c >= 128 || !SAFE[c]) {
+                StringBuilder sb = new StringBuilder(len + 16).append(value, 0, i);
+                appendEncoded(sb, value.subSequence(i, len));
+                return sb.toString();
+            }
+        }
+        return value;
+    }
+
+    /*===================内部方法===========================*/
+
+    private static boolean writeParams(Out out, Map<?, ?> params, boolean encode) throws IOException {
+        boolean first = true;
+        for (Map.Entry<?, ?> entry : params.entrySet()) {
+            String key = String.valueOf(entry.getKey());
+            Object value = entry.getValue();
+            if (value == null) {
+                first = pair(out, key, first);
+            } else if (value instanceof Collection<?> collection) {
+                for (Object item : collection) {
+                    first = pair(out, key, first);
+                    value(out, item, encode);
+                }
+            } else if (value.getClass().isArray()) {
+                first = array(out, key, value, encode, first);
+            } else {
+                first = pair(out, key, first);
+                value(out, value, encode);
+            }
+        }
+        return !first;
+    }
+
+    /**
+     * 写出"key=", 非第一个参数时先写出&
+     * @return false
+     */
+    private static boolean pair(Out out, String key, boolean first) throws IOException {
+        if (!first) {
+            out.ascii('&');
+        }
+        out.raw(key);
+        out.ascii('=');
+        return false;
+    }
+
+    private static boolean array(Out out, String key, Object array, boolean encode, boolean first) throws IOException {
+        if (array instanceof Object[] items) {
+            for (Object item : items) {
+                first = pair(out, key, first);
+                value(out, item, encode);
+            }
+        } else if (array instanceof int[] items) {
+            for (int item : items) {
+                first = pair(out, key, first);
+                out.decimal(item);
+            }
+        } else if (array instanceof long[] items) {
+            for (long item : items) {
+                first = pair(out, key, first);
+                out.decimal(item);
+            }
+        } else if (array instanceof short[] items) {
+            for (short item : items) {
+                first = pair(out, key, first);
+                out.decimal(item);
+            }
+        } else if (array instanceof byte[] items) {
+            for (byte item : items) {
+                first = pair(out, key, first);
+                out.decimal(item);
+            }
+        } else if (array instanceof boolean[] items) {
+            for (boolean item : items) {
+                first = pair(out, key, first);
+                out.raw(item ? "true" : "false");
+            }
+        } else if (array instanceof char[] items) {
+            for (char item : items) {
+                first = pair(out, key, first);
+                if (encode) {
+                    encodeChar(out, item);
+                } else {
+                    out.raw(String.valueOf(item));
+                }
+            }
+        } else if (array instanceof double[] items) {
+            for (double item : items) {
+                first = pair(out, key, first);
+                out.raw(Double.toString(item));
+            }
+        } else if (array instanceof float[] items) {
+            for (float item : items) {
+                first = pair(out, key, first);
+                out.raw(Float.toString(item));
+            }
+        }
+        return first;
+    }
+
+    private static void value(Out out, Object value, boolean encode) throws IOException {
+        if (value == null) {
+            return;
+        }
+        if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            out.decimal(((Number) value).longValue());
+            return;
+        }
+        CharSequence s = value instanceof CharSequence cs ? cs : value.toString();
+        if (encode) {
+            encode(out, s);
+        } else {
+            out.raw(s);
+        }
+    }
+
+    private static void encode(Out out, CharSequence s) throws IOException {
+        int len = s.length();
+        for (int i = 0; i < len; i++) {
+            char c = s.charAt(i);
+            if (c < 128) {
+                if (SAFE[c]) {
+                    out.ascii(c);
+                } else if (c == ' ') {
+                    out.ascii('+');
+                } else {
+                    escape(out, c);
+                }
+            } else if (c < 0x800) {
+                escape(out, 0xC0 | (c >> 6));
+                escape(out, 0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                escape(out, 0xF0 | (cp >> 18));
+                escape(out, 0x80 | ((cp >> 12) & 0x3F));
+                escape(out, 0x80 | ((cp >> 6) & 0x3F));
+                escape(out, 0x80 | (cp & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                // 不成对的代理字符, 与String.getBytes的处理一致替换为?
+                escape(out, '?');
+            } else {
+                escape(out, 0xE0 | (c >> 12));
+                escape(out, 0x80 | ((c >> 6) & 0x3F));
+                escape(out, 0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+    private static void encodeChar(Out out, char c) throws IOException {
+        if (Character.isSurrogate(c)) {
+            escape(out, '?');
+        } else {
+            encode(out, String.valueOf(c));
+        }
+    }
+
+    private static void escape(Out out, int b) throws IOException {
+        out.ascii('%');
+        out.ascii(HEX[(b >> 4) & 0xF]);
+        out.ascii(HEX[b & 0xF]);
+    }
+
+    /**
+     * 输出目标
+     */
+    private abstract static class Out {
+        abstract void ascii(int c) throws IOException;
+
+        abstract void raw(CharSequence s) throws IOException;
+
+        abstract void decimal(long v) throws IOException;
+    }
+
+    private static class BuilderOut extends Out {
+        private final StringBuilder sb;
+
+        BuilderOut(StringBuilder sb) {
+            this.sb = sb;
+        }
+
+        @Override
+        void ascii(int c) {
+            sb.append((char) c);
+        }
+
+        @Override
+        void raw(CharSequence s) {
+            sb.append(s);
+        }
+
+        @Override
+        void decimal(long v) {
+            sb.append(v);
+        }
+    }
+
+    private static class SinkOut extends Out {
+        private final BufferedSink sink;
+
+        SinkOut(BufferedSink sink) {
+            this.sink = sink;
+        }
+
+        @Override
+        void ascii(int c) throws IOException {
+            sink.writeByte(c);
+        }
+
+        @Override
+        void raw(CharSequence s) throws IOException {
+            sink.writeUtf8(s.toString());
+        }
+
+        @Override
+        void decimal(long v) throws IOException {
+            sink.writeDecimalLong(v);
+        }
+    }
+
+    private static class CountOut extends Out {
+        private long count;
+
+        @Override
+        void ascii(int c) {
+            count++;
+        }
+
+        @Override
+        void raw(CharSequence s) {
+            count += Utf8.size(s.toString());
+        }
+
+        @Override
+        void decimal(long v) {
+            if (v < 0) {
+                count++;
+                if (v == Long.MIN_VALUE) {
+                    count += 19;
+                    return;
+                }
+                v = -v;
+            }
+            int digits = 1;
+            while (v >= 10) {
+                v /= 10;
+                digits++;
+            }
+            count += digits;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package github.ag777.util.http.model;
+
+import github.ag777.util.http.HttpUtils;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * application/x-www-form-urlencoded请求体
+ * <p>
+ * 不预先拼接参数字符串, 写出时由{@link FormEncoder}将编码后的字节直接写入sink。
+ * 创建时会复制一份参数表, 之后修改原参数表不影响请求体; 作为值的集合/数组不会复制, 发送完成前请勿修改。
+ * </p>
+ *
+ * <pre>{@code
+ * RequestBody body = new FormRequestBody(params);
+ * }</pre>
+ *
+ * @author ag777 <837915770@vip.qq.com>
+ * @version 2026/10/19
+ */
+public class FormRequestBody extends RequestBody {
+
+    private final Map<?, ?> params;
+    private long contentLength = -1;
+
+    public FormRequestBody(Map<?, ?> params) {
+        this.params = params == null ? Map.of() : new LinkedHashMap<>(params);
+    }
+
+    @Override
+    public MediaType contentType() {
+        return HttpUtils.FORM_CONTENT_TYPE;
+    }
+
+    @Override
+    public long contentLength() {
+        if (contentLength == -1) {
+            contentLength = FormEncoder.encodedLength(params);
+        }
+        return contentLength;
+    }
+
+    @Override
+    public void writeTo(BufferedSink sink) throws IOException {
+        FormEncoder.writeParams(sink, params);
+    }
+}
@@ -0,0 +1,117 @@
+package github.ag777.util.http.model;
+
+import github.ag777.util.gson.GsonUtils;
+import github.ag777.util.http.HttpUtils;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.ByteString;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * application/json请求体
+ * <p>
+ * 不预先生成json串, 写出时通过gson的JsonWriter将对象直接序列化到sink中, 省去了json串本身以及转utf-8字节的两次拷贝。
+ * 此时长度未知, 以chunked方式发送。
+ * 通过{@link #buffered}创建时会先序列化一次并缓存字节, 可以得到Content-Length, 适用于较小的请求体或者服务端不支持chunked的情况。
+ * </p>
+ * <p>
+ * 流式写出时每次发送(包括重试)都会重新序列化, 发送完成前请勿修改对象。
+ * </p>
+ *
+ * <pre>{@code
+ * RequestBody body = new JsonRequestBody(user);
+ * RequestBody small = JsonRequestBody.buffered(Map.of("id", 1));
+ * }</pre>
+ *
+ * @author ag777 <837915770@vip.qq.com>
+ * @version 2026/10/19
+ */
+public class JsonRequestBody extends RequestBody {
+
+    private final Object value;
+    private final Type type;
+    private final GsonUtils gson;
+    private final ByteString bytes;
+
+    /**
+     * @param value 需要序列化的对象
+     */
+    public JsonRequestBody(Object value) {
+        this(value, null, null);
+    }
+
+    /**
+     * @param value 需要序列化的对象
+     * @param type 对象类型, 泛型对象需要传入, 为null时取value.getClass()
+     * @param gson 序列化使用的GsonUtils, 为null时使用{@link GsonUtils#get()}
+     */
+    public JsonRequestBody(Object value, Type type, GsonUtils gson) {
+        this.value = value;
+        this.type = type;
+        this.gson = gson != null ? gson : GsonUtils.get();
+        this.bytes = null;
+    }
+
+    private JsonRequestBody(ByteString bytes) {
+        this.value = null;
+        this.type = null;
+        this.gson = null;
+        this.bytes = bytes;
+    }
+
+    /**
+     * 立即序列化并缓存, 请求体带有Content-Length
+     * @param value 需要序列化的对象
+     * @return 请求体
+     */
+    public static RequestBody buffered(Object value) {
+        return buffered(value, null, null);
+    }
+
+    /**
+     * 立即序列化并缓存, 请求体带有Content-Length
+     * @param value 需要序列化的对象
+     * @param type 对象类型, 为null时取value.getClass()
+     * @param gson 序列化使用的GsonUtils, 为null时使用{@link GsonUtils#get()}
+     * @return 请求体
+     */
+    public static RequestBody buffered(Object value, Type type, GsonUtils gson) {
+        Buffer buffer = new Buffer();
+        try {
+            new JsonRequestBody(value, type, gson).writeTo(buffer);
+        } catch (IOException e) {
+            // 写入内存不会有io异常, 只可能是序列化本身出错
+            throw new IllegalStateException("序列化请求体失败", e);
+        }
+        return new JsonRequestBody(buffer.readByteString());
+    }
+
+    @Override
+    public MediaType contentType() {
+        return HttpUtils.JSON_CONTENT_TYPE;
+    }
+
+    @Override
+    public long contentLength() {
+        return bytes != null ? bytes.size() : -1;
+    }
+
+    @Override
+    public void writeTo(BufferedSink sink) throws IOException {
+        if (bytes != null) {
+            sink.write(bytes);
+            return;
+        }
+        // 不能关闭writer, 否则会关闭sink
+        Writer writer = new OutputStreamWriter(sink.outputStream(), StandardCharsets.UTF_8);
+        gson.toJson(value, type, writer);
+        writer.flush();
+    }
+}
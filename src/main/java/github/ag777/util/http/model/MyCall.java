@@ -2,18 +2,21 @@ package github.ag777.util.http.model;
 
 import github.ag777.util.http.HttpUtils;
 import github.ag777.util.lang.exception.model.GsonSyntaxException;
-import okhttp3.Call;
-import okhttp3.Headers;
-import okhttp3.Response;
+import okhttp3.*;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.Serial;
 import java.lang.reflect.Type;
 import java.net.SocketTimeoutException;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 /**
  * 有关Call的工具类(二次封装okhttp3)
@@ -23,12 +26,16 @@ import java.util.Optional;
  * </p>
  * 
  * @author ag777
- * @version create on 2018年03月30日,last modify at 2023年04月03日
+ * @version create on 2018年03月30日,last modify at 2026年10月19日
  */
 public class MyCall {
 	
 	private final Call call;
 	private Headers headers;
+	/** 流式读取断线重连时新建的请求 */
+	private volatile Call streamCall;
+	private Deadline deadline;
+	private long timeoutNanos;
 	
 	public MyCall(Call call) {
 		this.call = call;
@@ -38,7 +45,40 @@ public class MyCall {
 		return call;
 	}
 
+	/**
+	 * 设置本次请求的超时时间
+	 * <p>
+	 * 从发出请求开始计时,覆盖整个调用过程(连接、重试、读取响应体),超时后请求被取消并抛出InterruptedIOException。
+	 * 与当前线程绑定的截止时间(见{@link Deadline#bind()})同时存在时取较早的一个
+	 * </p>
+	 * @param timeout 超时时长,小于等于0表示不设置
+	 * @param unit 时间单位
+	 * @return self
+	 */
+	public MyCall timeout(long timeout, TimeUnit unit) {
+		this.timeoutNanos = unit.toNanos(Math.max(0, timeout));
+		return this;
+	}
+
+	/**
+	 * 设置本次请求的截止时间
+	 * @param deadline 截止时间,可以为null
+	 * @return self
+	 * @see Deadline
+	 */
+	public MyCall deadline(Deadline deadline) {
+		this.deadline = deadline;
+		return this;
+	}
+
 	
+	/**
+	 * @return 通过{@link #deadline(Deadline)}和{@link #timeout(long, TimeUnit)}指定的截止时间中较早的一个,从调用时开始计算超时
+	 */
+	private Deadline requestedDeadline() {
+		return timeoutNanos > 0 ? Deadline.earliest(deadline, Deadline.after(timeoutNanos, TimeUnit.NANOSECONDS)) : deadline;
+	}
+
 	/**
 	 * 取消请求
 	 */
@@ -46,6 +86,10 @@ public class MyCall {
 		if(call != null) {
 			call.cancel();
 		}
+		Call current = streamCall;
+		if(current != null) {
+			current.cancel();
+		}
 	}
 	
 	/**
@@ -68,6 +112,7 @@ public class MyCall {
 	 * @throws IOException IOException
 	 */
 	public Response executeForResponse() throws SocketTimeoutException, IOException {
+		Deadline.applyTo(call, requestedDeadline());
 		Response response = HttpUtils.execute(call);
 		this.headers = response.headers();
 		return response;
@@ -269,4 +314,168 @@ public class MyCall {
 		}
 	}
 
-}
\ No newline at end of file
+	/**
+	 * 发送请求并逐行读取NDJSON(每行一个json)
+	 * <p>
+	 * 	只有response.isSuccessful()时才会读取,否则抛出异常
+	 * 	每读到一行就转换并回调一次,不会将整个响应体读入内存
+	 * </p>
+	 *
+	 * @param type 每行对应的类型
+	 * @param consumer 回调,在当前线程中执行
+	 * @throws SocketTimeoutException 一般为连不上接口
+	 * @throws IOException 其他异常
+	 * @throws GsonSyntaxException json转化异常
+	 */
+	public <T>void executeForNdjson(Type type, Consumer<T> consumer) throws SocketTimeoutException, IOException, GsonSyntaxException {
+		try (Response response = executeForResponse()) {
+			EventStreamReader.readNdjson(successBody(response).source(), type, consumer);
+		}
+	}
+
+	/**
+	 * 以{@link Flow.Publisher}的形式逐行读取NDJSON
+	 * <p>
+	 * 	订阅后才发送请求,订阅方未request时暂停读取(背压),取消订阅时取消请求
+	 * </p>
+	 *
+	 * @param type 每行对应的类型
+	 * @return Publisher,只能订阅一次
+	 */
+	public <T>Flow.Publisher<T> publishNdjson(Type type) {
+		return new StreamPublisher<T>(emitter -> executeForNdjson(type, emitter), this::cancel);
+	}
+
+	/**
+	 * 发送请求并读取Server-Sent Events,连接断开后不重连
+	 *
+	 * @param consumer 回调,在当前线程中执行
+	 * @throws SocketTimeoutException 一般为连不上接口
+	 * @throws IOException 其他异常
+	 */
+	public void executeForSse(Consumer<ServerSentEvent> consumer) throws SocketTimeoutException, IOException {
+		executeForSse(consumer, null, 0);
+	}
+
+	/**
+	 * 发送请求并读取Server-Sent Events,连接断开后自动重连
+	 * <p>
+	 * 	重连时携带Last-Event-ID请求头,间隔优先使用服务端通过retry字段指定的值,默认3秒
+	 * 	连续maxReconnects次重连都没有收到事件时,抛出最后一次的异常(正常断开则直接返回)
+	 * 	返回码非2xx时直接抛出异常,返回204时表示服务端要求停止,直接返回
+	 * 	调用{@link #cancel()}可以随时停止
+	 * </p>
+	 *
+	 * @param consumer 回调,在当前线程中执行
+	 * @param factory 用于创建重连请求,一般传入发送原请求的OkHttpClient,为null时不重连
+	 * @param maxReconnects 连续重连的最大次数
+	 * @throws SocketTimeoutException 一般为连不上接口
+	 * @throws IOException 其他异常
+	 */
+	public void executeForSse(Consumer<ServerSentEvent> consumer, Call.Factory factory, int maxReconnects) throws SocketTimeoutException, IOException {
+		EventStreamReader reader = new EventStreamReader();
+		boolean[] received = new boolean[1];
+		Consumer<ServerSentEvent> wrapper = event -> {
+			received[0] = true;
+			consumer.accept(event);
+		};
+		Call current = call;
+		// 截止时间覆盖整个读取过程(含重连),重连的请求同样受其限制
+		Deadline requested = requestedDeadline();
+		int failures = 0;
+		while (true) {
+			IOException error = null;
+			received[0] = false;
+			try (Response response = current == call ? executeForResponse() : HttpUtils.execute(current)) {
+				if(response.code() == 204) {
+					return;
+				}
+				reader.readEvents(successBody(response).source(), wrapper);
+			} catch (HttpStatusException e) {
+				throw e;
+			} catch (IOException e) {
+				error = e;
+			}
+			if(call.isCanceled() || factory == null) {
+				if(error != null) {
+					throw error;
+				}
+				return;
+			}
+			failures = received[0] ? 0 : failures + 1;
+			if(failures > maxReconnects) {
+				if(error != null) {
+					throw error;
+				}
+				return;
+			}
+			sleep(reader.retry() >= 0 ? reader.retry() : 3000);
+
+			Request.Builder builder = call.request().newBuilder();
+			if(reader.lastEventId() != null) {
+				builder.header("Last-Event-ID", reader.lastEventId());
+			}
+			current = factory.newCall(builder.build());
+			Deadline.applyTo(current, requested);
+			streamCall = current;
+			if(call.isCanceled()) {
+				current.cancel();
+			}
+		}
+	}
+
+	/**
+	 * 以{@link Flow.Publisher}的形式读取Server-Sent Events
+	 *
+	 * @param factory 用于创建重连请求,为null时不重连
+	 * @param maxReconnects 连续重连的最大次数
+	 * @return Publisher,只能订阅一次
+	 * @see #executeForSse(Consumer, Call.Factory, int)
+	 */
+	public Flow.Publisher<ServerSentEvent> publishSse(Call.Factory factory, int maxReconnects) {
+		return new StreamPublisher<>(emitter -> executeForSse(emitter, factory, maxReconnects), this::cancel);
+	}
+
+	/**
+	 * 等待重连,请求被取消时提前结束
+	 * @param millis 等待时间
+	 * @throws InterruptedIOException 等待被中断
+	 */
+	private void sleep(long millis) throws InterruptedIOException {
+		long deadline = System.currentTimeMillis() + millis;
+		try {
+			long remaining;
+			while (!call.isCanceled() && (remaining = deadline - System.currentTimeMillis()) > 0) {
+				Thread.sleep(Math.min(remaining, 100));
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("等待重连被中断");
+		}
+	}
+
+	/**
+	 * @param response response
+	 * @return 响应体
+	 * @throws HttpStatusException 返回码非2xx
+	 */
+	private static ResponseBody successBody(Response response) throws HttpStatusException {
+		if(!response.isSuccessful()) {
+			throw new HttpStatusException(response.code()+"||"+response.message());
+		}
+		return response.body();
+	}
+
+	/**
+	 * 返回码非2xx,流式读取时不重连
+	 */
+	private static class HttpStatusException extends IOException {
+		@Serial
+		private static final long serialVersionUID = 1L;
+
+		HttpStatusException(String message) {
+			super(message);
+		}
+	}
+
+}
@@ -10,18 +10,31 @@ import java.io.IOException;
  * okhttp上传进度监听辅助类
  *
  * 通过包装原始的 RequestBody，在写出过程中统计已写入字节数并回调进度。
+ * 默认每次写出都回调，可以通过maxPerSecond限制回调频率(如{@link ThrottledProgressListener#DEFAULT_MAX_PER_SECOND}，开始和完成总会回调)。
+ * 请求体可能被写出多次(重试、压缩前预先写出等)，每次写出都会重新开始回调进度。
  *
  * @author ag777
- * @version last modify at 2025年08月08日
+ * @version last modify at 2026年10月19日
  */
 public class ProgressRequestBody extends RequestBody {
 
     private final RequestBody delegate;
     private final ProgressListener progressListener;
+    private final int maxPerSecond;
 
     public ProgressRequestBody(RequestBody delegate, ProgressListener progressListener) {
+        this(delegate, progressListener, 0);
+    }
+
+    /**
+     * @param delegate 原始请求体
+     * @param progressListener 进度监听
+     * @param maxPerSecond 每秒最多回调次数，小于等于0表示每次写出都回调
+     */
+    public ProgressRequestBody(RequestBody delegate, ProgressListener progressListener, int maxPerSecond) {
         this.delegate = delegate;
         this.progressListener = progressListener;
+        this.maxPerSecond = maxPerSecond;
     }
 
     @Override
@@ -43,17 +56,21 @@ public class ProgressRequestBody extends RequestBody {
 
         long contentLength = contentLength();
 
-        CountingSink countingSink = new CountingSink(sink, contentLength, progressListener);
+        // 限流的监听有状态(完成后不再回调)，每次写出使用新的实例
+        ProgressListener listener = ThrottledProgressListener.of(progressListener, 0, maxPerSecond);
+        CountingSink countingSink = new CountingSink(sink, contentLength, listener);
         BufferedSink bufferedSink = Okio.buffer(countingSink);
         try {
             delegate.writeTo(bufferedSink);
         } finally {
             bufferedSink.flush();
         }
+        countingSink.finish();
     }
 
     private static final class CountingSink extends ForwardingSink {
         private long bytesWritten = 0L;
+        private boolean done;
         private final long contentLength;
         private final ProgressListener progressListener;
 
@@ -68,9 +85,19 @@ public class ProgressRequestBody extends RequestBody {
         public void write(Buffer source, long byteCount) throws IOException {
             super.write(source, byteCount);
             bytesWritten += byteCount;
-            boolean done = contentLength != -1 && bytesWritten >= contentLength;
+            done = contentLength != -1 && bytesWritten >= contentLength;
             progressListener.update(bytesWritten, contentLength, byteCount, done);
         }
+
+        /**
+         * 长度未知时，写完后补发完成回调
+         */
+        void finish() {
+            if (!done) {
+                done = true;
+                progressListener.update(bytesWritten, contentLength, 0, true);
+            }
+        }
     }
 }
 
@@ -8,19 +8,33 @@ import java.io.IOException;
 
 /**
  * okhttp下载文件进度监听辅助类
+ * <p>
+ * 默认每次读取都回调，可以通过maxPerSecond限制回调频率(如{@link ThrottledProgressListener#DEFAULT_MAX_PER_SECOND}，开始和完成总会回调)。
+ * </p>
  * 
  * @author ag777
- * @version last modify at 2025年08月08日
+ * @version last modify at 2026年10月19日
  */
 public class ProgressResponseBody extends ResponseBody {
 
     private final ResponseBody responseBody;
     private final ProgressListener progressListener;
+    private final int maxPerSecond;
     private BufferedSource bufferedSource;
 
     public ProgressResponseBody(ResponseBody responseBody,ProgressListener progressListener){
+        this(responseBody, progressListener, 0);
+    }
+
+    /**
+     * @param responseBody 原始响应体
+     * @param progressListener 进度监听
+     * @param maxPerSecond 每秒最多回调次数，小于等于0表示每次读取都回调
+     */
+    public ProgressResponseBody(ResponseBody responseBody, ProgressListener progressListener, int maxPerSecond){
         this.responseBody = responseBody;
         this.progressListener = progressListener;
+        this.maxPerSecond = maxPerSecond;
     }
 
     @Override
@@ -42,16 +56,22 @@ public class ProgressResponseBody extends ResponseBody {
     }
 
     private Source source(Source source){
+        long contentLength = responseBody.contentLength();
+        ProgressListener progressListener = ThrottledProgressListener.of(this.progressListener, 0, maxPerSecond);
         return new ForwardingSource(source) {
             long totalBytesRead = 0L;
+            boolean done;
             @Override
             public long read(Buffer sink, long byteCount) throws IOException {
                 long bytesRead = super.read(sink,byteCount);
+                if (done) {
+                    return bytesRead;
+                }
                 totalBytesRead += bytesRead != -1 ? bytesRead : 0;   //不断统计当前下载好的数据
-                long contentLength = responseBody.contentLength();
+                done = bytesRead == -1;
                 
                 //接口回调
-                progressListener.update(totalBytesRead, contentLength, bytesRead != -1?bytesRead:0, bytesRead == -1);
+                progressListener.update(totalBytesRead, contentLength, bytesRead != -1?bytesRead:0, done);
                 return bytesRead;
             }
         };
@@ -0,0 +1,30 @@
+package github.ag777.util.http.model;
+
+import github.ag777.util.gson.GsonUtils;
+import github.ag777.util.lang.exception.model.GsonSyntaxException;
+
+import java.lang.reflect.Type;
+
+/**
+ * Server-Sent Events(text/event-stream)中的一个事件
+ *
+ * @param id 事件id, 即最近一次收到的id字段(没有时为null), 断线重连时作为Last-Event-ID发送
+ * @param event 事件类型, 未指定时为message
+ * @param data 事件数据, 多个data字段以换行拼接
+ * @param retry 服务端指定的重连间隔(毫秒), 未指定时为-1
+ * @author ag777 <837915770@vip.qq.com>
+ * @version 2026/10/19
+ */
+public record ServerSentEvent(String id, String event, String data, long retry) {
+
+    /**
+     * 将事件数据作为json转换为对象
+     * @param type 目标类型
+     * @return 对象
+     * @param <T> 目标类型
+     * @throws GsonSyntaxException 转换失败
+     */
+    public <T> T data(Type type) throws GsonSyntaxException {
+        return GsonUtils.get().fromJsonWithException(data, type);
+    }
+}
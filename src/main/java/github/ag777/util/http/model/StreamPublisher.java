@@ -0,0 +1,149 @@
+package github.ag777.util.http.model;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * 将阻塞式的流读取包装为{@link Flow.Publisher}
+ * <p>
+ * 订阅后在虚拟线程中执行读取, 每读到一条数据, 若订阅方没有剩余的请求数(request(n))则阻塞读取线程,
+ * 此时不再从网络读取数据, 由TCP流控把压力传回服务端。取消订阅时执行canceler(一般为取消http请求)。
+ * </p>
+ * <p>
+ * 只允许订阅一次, 再次订阅会收到{@link IllegalStateException}。
+ * </p>
+ *
+ * @param <T> 数据类型
+ * @author ag777 <837915770@vip.qq.com>
+ * @version 2026/10/19
+ */
+public class StreamPublisher<T> implements Flow.Publisher<T> {
+
+    private final Producer<T> producer;
+    private final Runnable canceler;
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+
+    /**
+     * @param producer 读取数据并逐条交给emitter
+     * @param canceler 取消订阅时执行, 可以为null
+     */
+    public StreamPublisher(Producer<T> producer, Runnable canceler) {
+        this.producer = producer;
+        this.canceler = canceler;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super T> subscriber) {
+        if (!subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("只允许订阅一次"));
+            return;
+        }
+        StreamSubscription subscription = new StreamSubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+        Thread.ofVirtual().name("stream-publisher").start(subscription::run);
+    }
+
+    /**
+     * 数据读取
+     * @param <T> 数据类型
+     */
+    @FunctionalInterface
+    public interface Producer<T> {
+        void produce(Consumer<T> emitter) throws Exception;
+    }
+
+    private class StreamSubscription implements Flow.Subscription {
+
+        private final Flow.Subscriber<? super T> subscriber;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition hasDemand = lock.newCondition();
+        private long demand;
+        private volatile boolean cancelled;
+        private volatile Throwable requestError;
+
+        StreamSubscription(Flow.Subscriber<? super T> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        void run() {
+            Throwable error = null;
+            try {
+                producer.produce(this::emit);
+            } catch (Throwable t) {
+                error = t;
+            }
+            if (requestError != null) {
+                subscriber.onError(requestError);
+            } else if (!cancelled) {
+                // 已取消的订阅不再发送任何信号
+                if (error == null) {
+                    subscriber.onComplete();
+                } else {
+                    subscriber.onError(error);
+                }
+            }
+        }
+
+        private void emit(T item) {
+            lock.lock();
+            try {
+                while (demand == 0 && !cancelled) {
+                    hasDemand.awaitUninterruptibly();
+                }
+                if (cancelled) {
+                    throw new CancellationException();
+                }
+                demand--;
+            } finally {
+                lock.unlock();
+            }
+            subscriber.onNext(item);
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                requestError = new IllegalArgumentException("request的数量必须大于0: " + n);
+                cancel();
+                return;
+            }
+            lock.lock();
+            try {
+                demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+                hasDemand.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void cancel() {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            lock.lock();
+            try {
+                hasDemand.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            if (canceler != null) {
+                canceler.run();
+            }
+        }
+    }
+}
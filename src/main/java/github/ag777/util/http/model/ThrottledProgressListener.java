@@ -0,0 +1,85 @@
+package github.ag777.util.http.model;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 限制回调频率的进度监听
+ * <p>
+ * 包装一个{@link ProgressListener}, 只有距离上次回调的字节数达到minBytes, 并且时间间隔达到1/maxPerSecond秒时才回调,
+ * 期间的step会累加到下一次回调中。第一次回调和完成(done=true)的回调总是会触发, 且完成只回调一次。
+ * 非线程安全, 一个实例只能用于一次上传/下载。
+ * </p>
+ *
+ * <pre>{@code
+ * ProgressListener listener = ThrottledProgressListener.of((cur, total, step, done) -> {
+ *     System.out.println(cur + "/" + total);
+ * }, 64 * 1024, 10);
+ * }</pre>
+ *
+ * @author ag777 <837915770@vip.qq.com>
+ * @version 2026/10/19
+ */
+public class ThrottledProgressListener implements ProgressListener {
+
+    /** 默认每秒最多回调次数 */
+    public static final int DEFAULT_MAX_PER_SECOND = 20;
+
+    private final ProgressListener delegate;
+    private final long minBytes;
+    private final long intervalNanos;
+
+    private long lastCur = -1;
+    private long lastTime;
+    private long pendingStep;
+    private boolean done;
+
+    private ThrottledProgressListener(ProgressListener delegate, long minBytes, int maxPerSecond) {
+        this.delegate = delegate;
+        this.minBytes = Math.max(0, minBytes);
+        this.intervalNanos = maxPerSecond > 0 ? TimeUnit.SECONDS.toNanos(1) / maxPerSecond : 0;
+    }
+
+    /**
+     * @param listener 原始监听, 为null时返回null
+     * @param minBytes 两次回调之间至少处理的字节数, 0表示不限制
+     * @param maxPerSecond 每秒最多回调次数, 小于等于0表示不限制
+     * @return 限流后的监听, 两个限制都关闭时直接返回原监听
+     */
+    public static ProgressListener of(ProgressListener listener, long minBytes, int maxPerSecond) {
+        if (listener == null || listener instanceof ThrottledProgressListener || (minBytes <= 0 && maxPerSecond <= 0)) {
+            return listener;
+        }
+        return new ThrottledProgressListener(listener, minBytes, maxPerSecond);
+    }
+
+    /**
+     * 每秒最多回调{@link #DEFAULT_MAX_PER_SECOND}次
+     * @param listener 原始监听
+     * @return 限流后的监听
+     */
+    public static ProgressListener of(ProgressListener listener) {
+        return of(listener, 0, DEFAULT_MAX_PER_SECOND);
+    }
+
+    @Override
+    public void update(long cur, long total, long step, boolean done) {
+        if (this.done) {
+            return;
+        }
+        pendingStep += step;
+        if (!done && lastCur >= 0) {
+            if (cur - lastCur < minBytes) {
+                return;
+            }
+            if (intervalNanos > 0 && System.nanoTime() - lastTime < intervalNanos) {
+                return;
+            }
+        }
+        long s = pendingStep;
+        pendingStep = 0;
+        lastCur = cur;
+        lastTime = intervalNanos > 0 ? System.nanoTime() : 0;
+        this.done = done;
+        delegate.update(cur, total, s, done);
+    }
+}
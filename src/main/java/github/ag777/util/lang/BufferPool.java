@@ -0,0 +1,125 @@
+package github.ag777.util.lang;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 分段(striped)的字节数组缓冲池
+ * <p>
+ * 用于流拷贝等短时间使用的缓冲区, 避免每次拷贝都new一个byte[]:
+ * <ul>
+ *     <li>按2的幂分为1KB~64KB共7个规格, 申请的大小向上取整到对应规格, 超过64KB的直接new且不回收</li>
+ *     <li>每个规格一个定长的槽位数组, 按线程id选择起始槽位, 通过CAS借出/归还, 无锁</li>
+ *     <li>槽位都被占满时归还的缓冲区直接丢弃, 槽位都为空时直接new, 池本身占用的内存有上限</li>
+ * </ul>
+ * 不使用ThreadLocal, 因为虚拟线程数量很多且生命周期很短, 缓存在线程上的缓冲区几乎无法复用。
+ * 借出的缓冲区内容是上一次使用留下的, 不会清零; 归还之后不能再使用。
+ * </p>
+ *
+ * <pre>{@code
+ * byte[] buffer = BufferPool.shared().acquire(8192);
+ * try {
+ *     int n;
+ *     while ((n = in.read(buffer)) != -1) {
+ *         out.write(buffer, 0, n);
+ *     }
+ * } finally {
+ *     BufferPool.shared().release(buffer);
+ * }
+ * }</pre>
+ *
+ * @author ag777 <837915770@vip.qq.com>
+ * @version 2026/10/19
+ */
+public class BufferPool {
+
+    private static final int MIN_SHIFT = 10;
+    private static final int MAX_SHIFT = 16;
+    /** 每次借出/归还最多探测的槽位数 */
+    private static final int PROBES = 4;
+
+    private static final BufferPool SHARED = new BufferPool(Math.max(4, Runtime.getRuntime().availableProcessors() * 2));
+
+    private final AtomicReferenceArray<byte[]>[] classes;
+    private final int mask;
+
+    /**
+     * @param slotsPerSize 每个规格缓存的缓冲区数量, 会向上取整到2的幂
+     */
+    public BufferPool(int slotsPerSize) {
+        int slots = Integer.highestOneBit(Math.max(1, slotsPerSize - 1)) << 1;
+        this.mask = slots - 1;
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        AtomicReferenceArray<byte[]>[] classes = new AtomicReferenceArray[MAX_SHIFT - MIN_SHIFT + 1];
+        this.classes = classes;
+        for (int i = 0; i < classes.length; i++) {
+            classes[i] = new AtomicReferenceArray<>(slots);
+        }
+    }
+
+    /**
+     * @return 全局共享的缓冲池
+     */
+    public static BufferPool shared() {
+        return SHARED;
+    }
+
+    /**
+     * 借出缓冲区
+     * @param minSize 最小长度
+     * @return 长度不小于minSize的缓冲区
+     */
+    public byte[] acquire(int minSize) {
+        int index = sizeClass(minSize);
+        if (index < 0) {
+            return new byte[minSize];
+        }
+        AtomicReferenceArray<byte[]> slots = classes[index];
+        int start = stripe();
+        for (int i = 0; i < PROBES && i <= mask; i++) {
+            byte[] buffer = slots.getAndSet((start + i) & mask, null);
+            if (buffer != null) {
+                return buffer;
+            }
+        }
+        return new byte[1 << (index + MIN_SHIFT)];
+    }
+
+    /**
+     * 归还缓冲区, 不是从池中借出的规格会被忽略
+     * @param buffer 缓冲区, 可以为null
+     */
+    public void release(byte[] buffer) {
+        if (buffer == null || Integer.bitCount(buffer.length) != 1) {
+            return;
+        }
+        int index = sizeClass(buffer.length);
+        if (index < 0) {
+            return;
+        }
+        AtomicReferenceArray<byte[]> slots = classes[index];
+        int start = stripe();
+        for (int i = 0; i < PROBES && i <= mask; i++) {
+            if (slots.compareAndSet((start + i) & mask, null, buffer)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return 规格下标, 超出范围返回-1
+     */
+    private static int sizeClass(int size) {
+        if (size > 1 << MAX_SHIFT) {
+            return -1;
+        }
+        if (size <= 1 << MIN_SHIFT) {
+            return 0;
+        }
+        return 32 - Integer.numberOfLeadingZeros(size - 1) - MIN_SHIFT;
+    }
+
+    private int stripe() {
+        long id = Thread.currentThread().threadId();
+        return (int) (id ^ (id >>> 16)) * 0x9E3779B9 >>> 16;
+    }
+}
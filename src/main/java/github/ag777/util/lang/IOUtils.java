@@ -15,7 +15,7 @@ import java.util.function.Consumer;
  * </p>
  * <p><a href="https://www.zhihu.com/question/382972191">讲IO的文章</a></>
  * @author ag777
- * @version create on 2017年06月16日,last modify at 2024年11月24日
+ * @version create on 2017年06月16日,last modify at 2026年10月19日
  */
 public class IOUtils {
 
@@ -143,11 +143,15 @@ public class IOUtils {
 		ByteArrayOutputStream bout = null;
 		try{
 			bout = new ByteArrayOutputStream(); 
-	        byte[] buff = new byte[BUFFSIZE];
-	        while(true) { 
-	            int n = in.read(buff); 
-	            if(n == -1) { break; } 
-	            bout.write(buff,0,n); 
+	        byte[] buff = BufferPool.shared().acquire(BUFFSIZE);
+	        try {
+	            while(true) { 
+	                int n = in.read(buff); 
+	                if(n == -1) { break; } 
+	                bout.write(buff,0,n); 
+	            }
+	        } finally {
+	            BufferPool.shared().release(buff);
 	        }
 	        return bout.toByteArray();
 		} finally {
@@ -158,27 +162,34 @@ public class IOUtils {
 	/*--------------写入--------------------*/
 	/**
 	 * 将输入流写入输出流
+	 * <p>
+	 * 缓冲区从{@link BufferPool#shared()}中借用，长度为不小于buffSize的2的幂
+	 * </p>
 	 * @param in in
 	 * @param out out
 	 * @param buffSize buffSize
 	 * @throws IOException IOException
 	 */
 	public static void write(InputStream in, OutputStream out, int buffSize) throws IOException {
+		byte[] bytes = BufferPool.shared().acquire(buffSize);
 		try { 
 			int byteCount;
-			byte[] bytes = new byte[buffSize];
 
 			while ((byteCount = in.read(bytes)) != -1) {
 				out.write(bytes, 0, byteCount);
 			}
          out.flush();
 		} finally {
+			BufferPool.shared().release(bytes);
 			close(in,out);
 		}
 	}
 	
 	/**
 	 * 将输入流写入输出流(带进度监听)
+	 * <p>
+	 * 每次读取都会回调，需要限制回调频率时使用{@link #write(InputStream, OutputStream, int, ProgressListener, int)}
+	 * </p>
 	 * @param in in
 	 * @param out out
 	 * @param buffSize buffSize
@@ -187,27 +198,54 @@ public class IOUtils {
 	 */
 	public static void write(InputStream in, OutputStream out, int buffSize, ProgressListener listener)
 			throws IOException {
+		write(in, out, buffSize, listener, 0);
+	}
+
+	/**
+	 * 将输入流写入输出流(带进度监听，限制回调频率)
+	 * <p>
+	 * 开始和完成时总会回调，一般取{@link github.ag777.util.http.model.ThrottledProgressListener#DEFAULT_MAX_PER_SECOND}
+	 * </p>
+	 * @param in in
+	 * @param out out
+	 * @param buffSize buffSize
+	 * @param listener listener
+	 * @param maxPerSecond 每秒最多回调次数，小于等于0表示每次读取都回调
+	 * @throws IOException IOException
+	 */
+	public static void write(InputStream in, OutputStream out, int buffSize, ProgressListener listener, int maxPerSecond)
+			throws IOException {
 		if (listener == null) {
 			write(in, out, buffSize);
 			return;
 		}
+		byte[] bytes = BufferPool.shared().acquire(buffSize);
 		try {
 			int cur = 0;
 			int total = in.available();
 			listener.update(cur, total, false);
 
+			long interval = maxPerSecond > 0 ? 1_000_000_000L / maxPerSecond : 0;
+			long last = System.nanoTime();
 			int byteCount;
-			byte[] bytes = new byte[buffSize];
 
 			while ((byteCount = in.read(bytes)) != -1) {
 				out.write(bytes, 0, byteCount);
 				cur += byteCount;
+				if (interval > 0) {
+					long now = System.nanoTime();
+					if (now - last < interval) {
+						continue;
+					}
+					last = now;
+				}
 				listener.update(cur, total, false);
 			}
 
 			out.flush();
 			listener.update(cur, total, true);
 		} finally {
+			BufferPool.shared().release(bytes);
 			close(in, out);
 		}
 	}
@@ -13,7 +13,7 @@ import java.util.function.Supplier;
 
 /**
  * @author ag777 <837915770@vip.qq.com>
- * @version 2025/6/15 下午21:19
+ * @version 2026/10/19 上午10:00
  */
 public class ObjectUtils {
     /**
@@ -251,13 +251,27 @@ public class ObjectUtils {
         return getOrDefault(result, defaultValue);
     }
 
+    /**
+     * 将对象转为map, 按gson的规则(字段命名、排除规则、注册的TypeAdapter)直接转换, 不经过json串
+     * @param obj obj
+     * @return map, obj不是对象(如字符串、数字、集合)时返回null
+     * @see GsonUtils#toPlainObject(Object)
+     */
+    @SuppressWarnings("unchecked")
     public static Map<String, Object> toMap(Object obj) {
         if(obj == null) {
             return null;
         }
-        return GsonUtils.get().toMap(GsonUtils.get().toJson(obj));
+        Object result = GsonUtils.get().toPlainObject(obj);
+        return result instanceof Map ? (Map<String, Object>) result : null;
     }
 
+    /**
+     * 将列表中的对象转为map, 转换规则同{@link #toMap(Object)}
+     * @param list list
+     * @return map列表, 存在不是对象的元素时返回null
+     */
+    @SuppressWarnings("unchecked")
     public static <T> List<Map<String, Object>> toListMap(List<T> list) {
         if(list == null) {
             return null;
@@ -265,8 +279,16 @@ public class ObjectUtils {
         if(list.isEmpty()) {
             return Collections.emptyList();
         }
-        GsonUtils u = GsonUtils.get();
-        return u.toListMap(u.toJson(list));
+        Object result = GsonUtils.get().toPlainObject(list);
+        if (!(result instanceof List)) {
+            return null;
+        }
+        for (Object item : (List<Object>) result) {
+            if (item != null && !(item instanceof Map)) {
+                return null;
+            }
+        }
+        return (List<Map<String, Object>>) result;
     }
 
     //其它
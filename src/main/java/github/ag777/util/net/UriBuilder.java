@@ -51,7 +51,7 @@ import java.util.stream.Stream;
  * }</pre>
  *
  * @author ag777
- * @version  2025/08/24 20:46
+ * @version  2025/08/24 20:46, last modify at 2026/10/19
  */
 public class UriBuilder {
 
@@ -481,6 +481,23 @@ public class UriBuilder {
         return this;
     }
 
+    /**
+     * 按键名对查询参数排序，同一个键的多个值保持原有顺序。
+     * <p>
+     * 参数顺序不同但含义相同的 URI 排序后会得到相同的字符串，可用作缓存或请求去重的 key。
+     * </p>
+     *
+     * @return 当前 {@code UriBuilder} 实例，用于链式调用。
+     */
+    public UriBuilder sortParams() {
+        if (this.queryParams.size() > 1) {
+            Map<String, List<String>> sorted = new TreeMap<>(this.queryParams);
+            this.queryParams.clear();
+            this.queryParams.putAll(sorted);
+        }
+        return this;
+    }
+
     // --- Getters --- 
 
     /**
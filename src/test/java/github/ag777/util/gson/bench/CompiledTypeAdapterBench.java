@@ -0,0 +1,116 @@
+package github.ag777.util.gson.bench;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import github.ag777.util.gson.adapter.CompiledTypeAdapterFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 对比{@link CompiledTypeAdapterFactory}生成的适配器与gson反射实现的读写耗时
+ * <p>
+ * 两者交替运行多轮, 每轮先预热, 输出每个对象的平均耗时(纳秒)。运行方式:
+ * </p>
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=github.ag777.util.gson.bench.CompiledTypeAdapterBench -Dexec.args="200000 5"
+ * </pre>
+ *
+ * @author ag777 <837915770@vip.qq.com>
+ * @version 2026/10/19
+ */
+public class CompiledTypeAdapterBench {
+
+    /**
+     * 参数: [每轮次数] [轮数], 默认 200000 5
+     * @param args 参数
+     */
+    public static void main(String[] args) {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        Gson reflective = new GsonBuilder().create();
+        Gson compiled = new GsonBuilder().registerTypeAdapterFactory(new CompiledTypeAdapterFactory(Order.class, Item.class)).create();
+        Order order = Order.sample();
+        String json = reflective.toJson(order);
+        if (!json.equals(compiled.toJson(order)) || !json.equals(compiled.toJson(compiled.fromJson(json, Order.class)))) {
+            throw new IllegalStateException("生成的适配器与反射实现的结果不一致");
+        }
+        for (int round = 1; round <= rounds; round++) {
+            System.out.printf("round %d: read reflective=%.0fns compiled=%.0fns, write reflective=%.0fns compiled=%.0fns%n", round,
+                    read(reflective, json, iterations), read(compiled, json, iterations),
+                    write(reflective, order, iterations), write(compiled, order, iterations));
+        }
+    }
+
+    private static double read(Gson gson, String json, int iterations) {
+        long sink = 0;
+        for (int i = 0; i < iterations / 10; i++) {
+            sink += gson.fromJson(json, Order.class).id;
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink += gson.fromJson(json, Order.class).id;
+        }
+        return elapsed(start, iterations, sink);
+    }
+
+    private static double write(Gson gson, Order order, int iterations) {
+        long sink = 0;
+        for (int i = 0; i < iterations / 10; i++) {
+            sink += gson.toJson(order).length();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink += gson.toJson(order).length();
+        }
+        return elapsed(start, iterations, sink);
+    }
+
+    private static double elapsed(long start, int iterations, long sink) {
+        double nanos = (System.nanoTime() - start) / (double) iterations;
+        // 使用sink, 避免循环被优化掉
+        return sink == Long.MIN_VALUE ? -1 : nanos;
+    }
+
+    static class Order {
+        long id;
+        String orderNo;
+        int status;
+        boolean paid;
+        String buyer;
+        String address;
+        long createTime;
+        int amount;
+        String remark;
+        List<Item> items;
+
+        static Order sample() {
+            Order order = new Order();
+            order.id = 1234567890123L;
+            order.orderNo = "NO-20261019-0001";
+            order.status = 2;
+            order.paid = true;
+            order.buyer = "ag777";
+            order.address = "somewhere 1024";
+            order.createTime = 1760832000000L;
+            order.amount = 19999;
+            order.remark = "";
+            order.items = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                Item item = new Item();
+                item.sku = "SKU-" + i;
+                item.count = i + 1;
+                item.price = 999 * (i + 1);
+                order.items.add(item);
+            }
+            return order;
+        }
+    }
+
+    static final class Item {
+        String sku;
+        int count;
+        long price;
+    }
+}
@@ -0,0 +1,335 @@
+package github.ag777.util.http.bench;
+
+import github.ag777.util.http.HttpHelper;
+import github.ag777.util.http.HttpUtils;
+import github.ag777.util.http.model.MyCall;
+import github.ag777.util.http.metrics.LatencyHistogram;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.OkHttpClient;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Okio;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+/**
+ * 固定速率(open-loop)的http压测工具
+ * <p>
+ * 按照指定的rps匀速发出请求, 不等待前一个请求结束, 因此服务端或客户端变慢时请求会堆积, 能真实反映排队带来的尾延迟。
+ * 延迟从请求"计划发出的时间"开始计算(修正coordinated omission), 包含读取完整响应体的时间。
+ * 支持两种发送方式:
+ * <ul>
+ *     <li>{@link Mode#SYNC}: 每个请求在虚拟线程中同步执行(MyCall.executeForResponse)</li>
+ *     <li>{@link Mode#ASYNC}: 通过HttpUtils.enqueue提交给OkHttp的Dispatcher, 受maxRequests/maxRequestsPerHost限制</li>
+ * </ul>
+ * 进行中的请求数达到maxInFlight时, 新请求直接计为丢弃, 避免压垮本机。
+ * 预热阶段的请求会正常发送, 但不计入结果。
+ * </p>
+ *
+ * <pre>{@code
+ * try (MockHttpServer server = MockHttpServer.start().latency(10, 5)) {
+ *     LoadTester.Report report = new LoadTester(helper -> helper.get(server.url("/")))
+ *             .rps(2000)
+ *             .duration(10, TimeUnit.SECONDS)
+ *             .warmup(2, TimeUnit.SECONDS)
+ *             .mode(LoadTester.Mode.ASYNC)
+ *             .run();
+ *     log.info(report.toString());
+ * }
+ * }</pre>
+ * <p>
+ * 也可以直接运行{@link #main(String[])}, 对本地的{@link MockHttpServer}分别以两种方式压测并输出报告:
+ * </p>
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=github.ag777.util.http.bench.LoadTester -Dexec.args="1000 10 5"
+ * </pre>
+ *
+ * @author ag777 <837915770@vip.qq.com>
+ * @version 2026/10/19
+ */
+public class LoadTester {
+
+    private final Function<HttpHelper, MyCall> requestFactory;
+    private HttpHelper helper;
+    private Mode mode = Mode.SYNC;
+    private int rps = 100;
+    private long durationNanos = TimeUnit.SECONDS.toNanos(10);
+    private long warmupNanos = 0;
+    private int maxInFlight = 10000;
+
+    /**
+     * @param requestFactory 根据HttpHelper构造一次请求, 每次发送都会调用
+     */
+    public LoadTester(Function<HttpHelper, MyCall> requestFactory) {
+        this.requestFactory = requestFactory;
+    }
+
+    /**
+     * @param helper 发送请求使用的HttpHelper, 默认{@link HttpHelper#getInstance()}
+     * @return self
+     */
+    public LoadTester helper(HttpHelper helper) {
+        this.helper = helper;
+        return this;
+    }
+
+    /**
+     * @param mode 发送方式, 默认同步
+     * @return self
+     */
+    public LoadTester mode(Mode mode) {
+        this.mode = mode;
+        return this;
+    }
+
+    /**
+     * @param rps 每秒请求数, 默认100
+     * @return self
+     */
+    public LoadTester rps(int rps) {
+        if (rps <= 0) {
+            throw new IllegalArgumentException("rps必须大于0");
+        }
+        this.rps = rps;
+        return this;
+    }
+
+    /**
+     * @param duration 压测时长(不含预热), 默认10秒
+     * @param unit 时间单位
+     * @return self
+     */
+    public LoadTester duration(long duration, TimeUnit unit) {
+        this.durationNanos = unit.toNanos(duration);
+        return this;
+    }
+
+    /**
+     * @param warmup 预热时长, 默认0
+     * @param unit 时间单位
+     * @return self
+     */
+    public LoadTester warmup(long warmup, TimeUnit unit) {
+        this.warmupNanos = unit.toNanos(warmup);
+        return this;
+    }
+
+    /**
+     * @param maxInFlight 进行中的请求数上限, 默认10000
+     * @return self
+     */
+    public LoadTester maxInFlight(int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+        return this;
+    }
+
+    /**
+     * 执行压测, 阻塞直到所有请求结束
+     * @return 压测报告
+     * @throws InterruptedException 等待被中断
+     */
+    public Report run() throws InterruptedException {
+        HttpHelper h = helper != null ? helper : HttpHelper.getInstance();
+        Stats stats = new Stats();
+        AtomicInteger inflight = new AtomicInteger();
+        long period = TimeUnit.SECONDS.toNanos(1) / rps;
+        long start = System.nanoTime();
+        long measureStart = start + warmupNanos;
+        long end = measureStart + durationNanos;
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (long i = 0; ; i++) {
+                long scheduled = start + i * period;
+                if (scheduled >= end) {
+                    break;
+                }
+                long wait = scheduled - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                Stats target = scheduled >= measureStart ? stats : null;
+                if (target != null) {
+                    target.sent.incrementAndGet();
+                }
+                if (inflight.get() >= maxInFlight) {
+                    if (target != null) {
+                        target.dropped.incrementAndGet();
+                    }
+                    continue;
+                }
+                inflight.incrementAndGet();
+                Runnable done = inflight::decrementAndGet;
+                if (mode == Mode.SYNC) {
+                    executor.execute(() -> {
+                        try {
+                            executeSync(h, scheduled, target);
+                        } finally {
+                            done.run();
+                        }
+                    });
+                } else {
+                    executeAsync(h, scheduled, target, done);
+                }
+            }
+            // 等待异步请求结束, 同步请求由executor.close()等待
+            while (inflight.get() > 0) {
+                Thread.sleep(10);
+            }
+        }
+        return stats.report(mode, rps, durationNanos);
+    }
+
+    private void executeSync(HttpHelper h, long scheduled, Stats stats) {
+        try (Response response = requestFactory.apply(h).executeForResponse()) {
+            consume(response);
+            record(stats, scheduled, response.code());
+        } catch (Exception e) {
+            record(stats, scheduled, -1);
+        }
+    }
+
+    private void executeAsync(HttpHelper h, long scheduled, Stats stats, Runnable done) {
+        Call call;
+        try {
+            call = requestFactory.apply(h).getCall();
+        } catch (Exception e) {
+            record(stats, scheduled, -1);
+            done.run();
+            return;
+        }
+        HttpUtils.enqueue(call, new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                record(stats, scheduled, -1);
+                done.run();
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                try (response) {
+                    consume(response);
+                    record(stats, scheduled, response.code());
+                } catch (Exception e) {
+                    record(stats, scheduled, -1);
+                } finally {
+                    done.run();
+                }
+            }
+        });
+    }
+
+    private static void consume(Response response) throws IOException {
+        ResponseBody body = response.body();
+        body.source().readAll(Okio.blackhole());
+    }
+
+    private static void record(Stats stats, long scheduled, int code) {
+        if (stats == null) {
+            return;
+        }
+        stats.latency.record(System.nanoTime() - scheduled);
+        if (code < 0) {
+            stats.errors.incrementAndGet();
+        }
+        stats.codes.computeIfAbsent(code, k -> new AtomicLong()).incrementAndGet();
+    }
+
+    /**
+     * 发送方式
+     */
+    public enum Mode {
+        /** 虚拟线程中同步执行 */
+        SYNC,
+        /** 通过OkHttp的Dispatcher异步执行 */
+        ASYNC
+    }
+
+    private static class Stats {
+        final AtomicLong sent = new AtomicLong();
+        final AtomicLong dropped = new AtomicLong();
+        final AtomicLong errors = new AtomicLong();
+        final LatencyHistogram latency = new LatencyHistogram();
+        final Map<Integer, AtomicLong> codes = new ConcurrentHashMap<>();
+
+        Report report(Mode mode, int rps, long durationNanos) {
+            Map<Integer, Long> codeMap = new TreeMap<>();
+            codes.forEach((code, count) -> codeMap.put(code, count.get()));
+            LatencyHistogram.Snapshot snapshot = latency.snapshot();
+            double seconds = durationNanos / 1e9;
+            return new Report(mode, rps, sent.get(), snapshot.count(), errors.get(), dropped.get(),
+                    seconds <= 0 ? 0 : Math.round(snapshot.count() / seconds * 10) / 10d, codeMap, snapshot);
+        }
+    }
+
+    /**
+     * 压测报告, 不含预热阶段
+     * @param mode 发送方式
+     * @param targetRps 目标rps
+     * @param sent 计划发送的请求数
+     * @param completed 完成的请求数(含失败)
+     * @param errors 网络异常的请求数, 对应codes中的-1
+     * @param dropped 因进行中的请求过多而丢弃的请求数
+     * @param throughput 实际吞吐(完成数/压测时长)
+     * @param codes 各返回码的数量
+     * @param latency 延迟分布(毫秒)
+     */
+    public record Report(Mode mode, int targetRps, long sent, long completed, long errors, long dropped,
+                         double throughput, Map<Integer, Long> codes, LatencyHistogram.Snapshot latency) {
+
+        @Override
+        public String toString() {
+            return String.format("[%s] target=%d rps, throughput=%.1f rps, sent=%d, completed=%d, errors=%d, dropped=%d, codes=%s%n"
+                            + "latency(ms): mean=%.3f p50=%.3f p90=%.3f p99=%.3f p999=%.3f max=%.3f",
+                    mode, targetRps, throughput, sent, completed, errors, dropped, codes,
+                    latency.mean(), latency.p50(), latency.p90(), latency.p99(), latency.p999(), latency.max());
+        }
+    }
+
+    /**
+     * 对本地的MockHttpServer分别以同步、异步方式压测, 并输出报告
+     * <p>
+     * 参数: [rps] [秒数] [服务端延迟毫秒], 默认 1000 10 5
+     * </p>
+     * @param args 参数
+     * @throws Exception 异常
+     */
+    public static void main(String[] args) throws Exception {
+        int rps = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int latency = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        OkHttpClient client = HttpUtils.defaultBuilder().build();
+        try (MockHttpServer server = MockHttpServer.start().latency(latency, latency)) {
+            String url = server.url("/bench");
+            HttpHelper helper = new HttpHelper(client, null);
+            int warmup = Math.max(1, seconds / 5);
+            // 先完整跑一轮预热JIT和连接池并丢弃结果, 否则冷启动时堆积的请求会计入第一种方式的结果
+            new LoadTester(h -> h.get(url)).helper(helper).rps(rps)
+                    .warmup(warmup, TimeUnit.SECONDS)
+                    .duration(0, TimeUnit.SECONDS)
+                    .run();
+            for (Mode mode : Mode.values()) {
+                Report report = new LoadTester(h -> h.get(url))
+                        .helper(helper)
+                        .mode(mode)
+                        .rps(rps)
+                        .warmup(warmup, TimeUnit.SECONDS)
+                        .duration(seconds, TimeUnit.SECONDS)
+                        .run();
+                System.out.println(report);
+            }
+        } finally {
+            // OkHttp的线程不是守护线程, 不关闭时进程不会退出
+            client.dispatcher().executorService().shutdown();
+            client.connectionPool().evictAll();
+        }
+    }
+}
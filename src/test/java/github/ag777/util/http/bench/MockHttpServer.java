@@ -0,0 +1,225 @@
+package github.ag777.util.http.bench;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 进程内的模拟http服务(基于JDK自带的com.sun.net.httpserver)
+ * <p>
+ * 用于离线压测或调试http工具类, 每个请求在虚拟线程中处理, 可以配置:
+ * <ul>
+ *     <li>响应延迟: 固定延迟 + [0, jitter)的随机延迟</li>
+ *     <li>失败率: 按比例返回500</li>
+ *     <li>断连率: 按比例不返回任何内容直接关闭连接</li>
+ *     <li>响应体大小</li>
+ * </ul>
+ * 所有配置都可以在运行中修改。也可以通过{@link #handle(String, HttpHandler)}注册自定义的处理器。
+ * </p>
+ *
+ * <pre>{@code
+ * try (MockHttpServer server = MockHttpServer.start()
+ *         .latency(20, 10)
+ *         .failureRate(0.01)) {
+ *     HttpHelper.getInstance().get(server.url("/")).executeForStr();
+ * }
+ * }</pre>
+ *
+ * @author ag777 <837915770@vip.qq.com>
+ * @version 2026/10/19
+ */
+public class MockHttpServer implements AutoCloseable {
+
+    static {
+        // 默认未开启TCP_NODELAY, 响应头和响应体分开发送时会被延迟确认拖慢约40ms; 该配置只在首次使用httpserver前读取一次
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong failureCount = new AtomicLong();
+    private final AtomicLong dropCount = new AtomicLong();
+
+    private volatile long latencyMillis;
+    private volatile long jitterMillis;
+    private volatile double failureRate;
+    private volatile double dropRate;
+    private volatile byte[] body = "{\"code\":0,\"msg\":\"ok\"}".getBytes(StandardCharsets.UTF_8);
+
+    private MockHttpServer(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 1024);
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+        server.createContext("/", this::handleDefault);
+        server.start();
+    }
+
+    /**
+     * 在随机端口上启动
+     * @return 服务
+     * @throws IOException 启动失败
+     */
+    public static MockHttpServer start() throws IOException {
+        return new MockHttpServer(0);
+    }
+
+    /**
+     * @param port 端口, 0表示随机
+     * @return 服务
+     * @throws IOException 启动失败
+     */
+    public static MockHttpServer start(int port) throws IOException {
+        return new MockHttpServer(port);
+    }
+
+    /**
+     * @param latencyMillis 固定延迟(毫秒)
+     * @param jitterMillis 额外的随机延迟上限(毫秒)
+     * @return self
+     */
+    public MockHttpServer latency(long latencyMillis, long jitterMillis) {
+        this.latencyMillis = Math.max(0, latencyMillis);
+        this.jitterMillis = Math.max(0, jitterMillis);
+        return this;
+    }
+
+    /**
+     * @param failureRate 返回500的比例, [0, 1]
+     * @return self
+     */
+    public MockHttpServer failureRate(double failureRate) {
+        this.failureRate = failureRate;
+        return this;
+    }
+
+    /**
+     * @param dropRate 直接断开连接的比例, [0, 1]
+     * @return self
+     */
+    public MockHttpServer dropRate(double dropRate) {
+        this.dropRate = dropRate;
+        return this;
+    }
+
+    /**
+     * @param body 响应体
+     * @return self
+     */
+    public MockHttpServer body(String body) {
+        this.body = body.getBytes(StandardCharsets.UTF_8);
+        return this;
+    }
+
+    /**
+     * @param size 响应体字节数, 内容为json
+     * @return self
+     */
+    public MockHttpServer bodySize(int size) {
+        String prefix = "{\"data\":\"";
+        String suffix = "\"}";
+        byte[] bytes = new byte[Math.max(size, prefix.length() + suffix.length())];
+        Arrays.fill(bytes, (byte) 'x');
+        System.arraycopy(prefix.getBytes(StandardCharsets.US_ASCII), 0, bytes, 0, prefix.length());
+        System.arraycopy(suffix.getBytes(StandardCharsets.US_ASCII), 0, bytes, bytes.length - suffix.length(), suffix.length());
+        this.body = bytes;
+        return this;
+    }
+
+    /**
+     * 注册自定义处理器, 不受延迟和失败率配置影响
+     * @param path 路径前缀
+     * @param handler 处理器
+     * @return self
+     */
+    public MockHttpServer handle(String path, HttpHandler handler) {
+        server.createContext(path, handler);
+        return this;
+    }
+
+    /**
+     * @return 端口
+     */
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * @param path 路径
+     * @return 完整url
+     */
+    public String url(String path) {
+        return "http://127.0.0.1:" + port() + (path.startsWith("/") ? path : "/" + path);
+    }
+
+    /**
+     * @return 收到的请求数(默认处理器)
+     */
+    public long requestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * @return 返回500的次数
+     */
+    public long failureCount() {
+        return failureCount.get();
+    }
+
+    /**
+     * @return 主动断开的次数
+     */
+    public long dropCount() {
+        return dropCount.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handleDefault(HttpExchange exchange) throws IOException {
+        requestCount.incrementAndGet();
+        try (exchange) {
+            exchange.getRequestBody().transferTo(OutputStream.nullOutputStream());
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            long delay = latencyMillis + (jitterMillis > 0 ? random.nextLong(jitterMillis) : 0);
+            if (delay > 0) {
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            if (dropRate > 0 && random.nextDouble() < dropRate) {
+                // 不写任何响应直接关闭, 客户端会收到unexpected end of stream
+                dropCount.incrementAndGet();
+                return;
+            }
+            byte[] bytes = body;
+            int code = 200;
+            if (failureRate > 0 && random.nextDouble() < failureRate) {
+                failureCount.incrementAndGet();
+                code = 500;
+            }
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            exchange.sendResponseHeaders(code, bytes.length);
+            exchange.getResponseBody().write(bytes);
+        }
+    }
+}